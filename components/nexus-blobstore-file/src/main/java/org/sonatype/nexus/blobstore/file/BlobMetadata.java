@@ -14,6 +14,9 @@ package org.sonatype.nexus.blobstore.file;
 
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.blobstore.api.BlobId;
 import org.sonatype.nexus.blobstore.api.BlobMetrics;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -31,6 +34,8 @@ public class BlobMetadata
 
   private BlobMetrics metrics;
 
+  private BlobId contentId;
+
   public BlobMetadata(final BlobState blobState, final Map<String, String> headers) {
     this.blobState = checkNotNull(blobState);
     this.headers = checkNotNull(headers);
@@ -60,12 +65,26 @@ public class BlobMetadata
     return metrics;
   }
 
+  /**
+   * Returns the blob whose content file holds the content of this blob, or {@code null} if the content is not
+   * shared (i.e. it is stored in the file of this blob and not reference counted).
+   */
+  @Nullable
+  public BlobId getContentId() {
+    return contentId;
+  }
+
+  public void setContentId(@Nullable final BlobId contentId) {
+    this.contentId = contentId;
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName() + "{" +
         "blobState=" + blobState +
         ", headers=" + headers +
         ", metrics=" + metrics +
+        ", contentId=" + contentId +
         '}';
   }
 }
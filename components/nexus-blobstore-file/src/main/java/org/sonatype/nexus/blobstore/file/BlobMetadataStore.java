@@ -12,6 +12,8 @@
  */
 package org.sonatype.nexus.blobstore.file;
 
+import java.util.List;
+
 import javax.annotation.Nullable;
 
 import org.sonatype.nexus.blobstore.api.BlobId;
@@ -43,6 +45,27 @@ public interface BlobMetadataStore
    */
   AutoClosableIterable<BlobId> findWithState(BlobState state);
 
+  /**
+   * Adds a reference to content with given key (e.g. its hash and size), stored in the content file of given blob.
+   * Returns the blob whose content file already holds that content, or the given blob if it is the first reference.
+   */
+  BlobId addContentReference(String contentKey, BlobId blobId);
+
+  /**
+   * Removes a reference to content with given key.
+   *
+   * @return {@code true} if this was the last reference, so the content file can be deleted
+   */
+  boolean removeContentReference(String contentKey);
+
+  /**
+   * Recounts content references from the metadata of all blobs, correcting counts that drifted (e.g. after a crash
+   * between a blob change and its reference update).
+   *
+   * @return blobs whose content files are no longer referenced and can be deleted
+   */
+  List<BlobId> reconcileContentReferences();
+
   long getBlobCount();
 
   long getTotalSize();
@@ -15,12 +15,16 @@ package org.sonatype.nexus.blobstore.file;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nullable;
 import javax.inject.Named;
@@ -33,8 +37,10 @@ import org.sonatype.nexus.blobstore.api.BlobStoreConfiguration;
 import org.sonatype.nexus.blobstore.api.BlobStoreException;
 import org.sonatype.nexus.blobstore.api.BlobStoreListener;
 import org.sonatype.nexus.blobstore.api.BlobStoreMetrics;
+import org.sonatype.nexus.blobstore.api.FileBackedBlob;
 import org.sonatype.nexus.blobstore.file.FileOperations.StreamMetrics;
 import org.sonatype.nexus.common.collect.AutoClosableIterable;
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
 import org.sonatype.nexus.common.io.DirSupport;
 import org.sonatype.sisu.goodies.lifecycle.LifecycleSupport;
 
@@ -50,6 +56,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 /**
  * A {@link BlobStore} that stores its content on the file system, and metadata in a {@link BlobMetadataStore}.
  *
+ * When deduplication is enabled, blobs with identical content (same SHA1 and size) share one content file. The
+ * references to it are counted in the metadata store, and the file is only deleted along with the last of them.
+ *
  * @since 3.0
  */
 @Named(FileBlobStore.TYPE)
@@ -65,6 +74,10 @@ public class FileBlobStore
   
   private static final String PATH_KEY = "path";
 
+  private static final String JOURNAL_KEY = "journal";
+
+  private static final String DEDUPLICATE_KEY = "deduplicate";
+
   private Path root;
 
   private BlobMetadataStore metadataStore;
@@ -77,6 +90,14 @@ public class FileBlobStore
 
   private BlobStoreConfiguration blobStoreConfiguration;
 
+  private boolean deduplicate;
+
+  /**
+   * Shared by changes to content references and the blob metadata recording them, held exclusively while
+   * reconciling reference counts, so reconciliation never observes one without the other.
+   */
+  private final ReadWriteLock contentReferencesLock = new ReentrantReadWriteLock();
+
   @Inject
   public FileBlobStore(final LocationStrategy locationStrategy,
                        final FileOperations fileOperations)
@@ -96,6 +117,15 @@ public class FileBlobStore
     this.blobStoreConfiguration = checkNotNull(configuration);
   }
 
+  @VisibleForTesting
+  public FileBlobStore(final Path root, final LocationStrategy locationStrategy,
+                       final FileOperations fileOperations, final BlobMetadataStore metadataStore,
+                       final BlobStoreConfiguration configuration, final boolean deduplicate)
+  {
+    this(root, locationStrategy, fileOperations, metadataStore, configuration);
+    this.deduplicate = deduplicate;
+  }
+
   @Override
   protected void doStart() throws Exception {
     metadataStore.start();
@@ -125,6 +155,17 @@ public class FileBlobStore
     return root.resolve(location + BLOB_CONTENT_SUFFIX);
   }
 
+  /**
+   * Returns path of the content file holding content of blob, which may be shared with other blobs.
+   */
+  private Path contentPathFor(final BlobId id, final BlobMetadata metadata) {
+    return pathFor(metadata.getContentId() != null ? metadata.getContentId() : id);
+  }
+
+  private static String contentKey(final BlobMetrics metrics) {
+    return MapdbBlobMetadataStore.contentKey(metrics.getSHA1Hash(), metrics.getContentSize());
+  }
+
   @Override
   public Blob create(final InputStream blobData, final Map<String, String> headers) {
     checkNotNull(blobData);
@@ -140,29 +181,51 @@ public class FileBlobStore
       final BlobMetadata metadata = new BlobMetadata(BlobState.CREATING, headers);
       blobId = metadataStore.add(metadata);
 
-      final Path path = pathFor(blobId);
+      Path path = pathFor(blobId);
       log.debug("Writing blob {} to {}", blobId, path);
 
       final StreamMetrics streamMetrics = fileOperations.create(path, blobData);
       final BlobMetrics metrics = new BlobMetrics(new DateTime(), streamMetrics.getSHA1(), streamMetrics.getSize());
-      final FileBlob blob = new FileBlob(blobId, headers, path, metrics);
+      metadata.setMetrics(metrics);
 
-      if (listener != null) {
-        listener.blobCreated(blob, "Blob: " + blobId + " written to: " + path);
+      if (!deduplicate) {
+        return alive(blobId, metadata, path);
       }
 
-      metadata.setMetrics(metrics);
-      // Storing the content went fine, so we can now unmark this for deletion
-      metadata.setBlobState(BlobState.ALIVE);
-      metadataStore.update(blobId, metadata);
-
-      return blob;
+      contentReferencesLock.readLock().lock();
+      try {
+        BlobId contentId = metadataStore.addContentReference(contentKey(metrics), blobId);
+        if (!contentId.equals(blobId)) {
+          log.debug("Blob {} has same content as {}, sharing its content file", blobId, contentId);
+          fileOperations.delete(path);
+          path = pathFor(contentId);
+        }
+        metadata.setContentId(contentId);
+        return alive(blobId, metadata, path);
+      }
+      finally {
+        contentReferencesLock.readLock().unlock();
+      }
     }
     catch (IOException e) {
       throw new BlobStoreException(e, blobId);
     }
   }
 
+  private Blob alive(final BlobId blobId, final BlobMetadata metadata, final Path path) {
+    final FileBlob blob = new FileBlob(blobId, metadata.getHeaders(), path, metadata.getMetrics());
+
+    if (listener != null) {
+      listener.blobCreated(blob, "Blob: " + blobId + " written to: " + path);
+    }
+
+    // Storing the content went fine, so we can now unmark this for deletion
+    metadata.setBlobState(BlobState.ALIVE);
+    metadataStore.update(blobId, metadata);
+
+    return blob;
+  }
+
   @Nullable
   @Override
   public Blob get(final BlobId blobId) {
@@ -179,7 +242,8 @@ public class FileBlobStore
       return null;
     }
 
-    final FileBlob blob = new FileBlob(blobId, metadata.getHeaders(), pathFor(blobId), metadata.getMetrics());
+    final FileBlob blob = new FileBlob(blobId, metadata.getHeaders(), contentPathFor(blobId, metadata),
+        metadata.getMetrics());
 
     log.debug("Accessing blob {}", blobId);
     if (listener != null) {
@@ -218,9 +282,18 @@ public class FileBlobStore
       return false;
     }
 
+    contentReferencesLock.readLock().lock();
     try {
-      final Path path = pathFor(blobId);
-      final boolean blobDeleted = fileOperations.delete(path);
+      final Path path = contentPathFor(blobId, metadata);
+      final boolean blobDeleted;
+      if (metadata.getContentId() != null && metadata.getMetrics() != null
+          && !metadataStore.removeContentReference(contentKey(metadata.getMetrics()))) {
+        log.debug("Content file {} of blob {} is still referenced by other blobs", path, blobId);
+        blobDeleted = true;
+      }
+      else {
+        blobDeleted = fileOperations.delete(path);
+      }
 
       if (!blobDeleted) {
         log.error("Deleting blob {} : content file was missing", blobId);
@@ -239,6 +312,9 @@ public class FileBlobStore
     catch (IOException e) {
       throw new BlobStoreException(e, blobId);
     }
+    finally {
+      contentReferencesLock.readLock().unlock();
+    }
   }
 
   @Override
@@ -281,6 +357,8 @@ public class FileBlobStore
         }
       }
 
+      reconcileContentReferences();
+
       metadataStore.compact();
 
       log.debug("Deleted {} blobs", count);
@@ -290,6 +368,24 @@ public class FileBlobStore
     }
   }
 
+  /**
+   * Corrects content reference counts and deletes content files no blob references anymore.
+   */
+  private void reconcileContentReferences() throws IOException {
+    List<BlobId> unreferenced;
+    contentReferencesLock.writeLock().lock();
+    try {
+      unreferenced = metadataStore.reconcileContentReferences();
+    }
+    finally {
+      contentReferencesLock.writeLock().unlock();
+    }
+    for (BlobId contentId : unreferenced) {
+      log.debug("Deleting unreferenced content of blob {}", contentId);
+      fileOperations.delete(pathFor(contentId));
+    }
+  }
+
   @Override
   public BlobStoreConfiguration getBlobStoreConfiguration() {
     return this.blobStoreConfiguration;
@@ -298,13 +394,16 @@ public class FileBlobStore
   @Override
   public void init(final BlobStoreConfiguration configuration) throws IOException {
     this.blobStoreConfiguration = configuration;
-    Path blobDir = Paths.get(String.valueOf(configuration.attributes(CONFIG_KEY).require(PATH_KEY)));
+    NestedAttributesMap attributes = configuration.attributes(CONFIG_KEY);
+    Path blobDir = Paths.get(String.valueOf(attributes.require(PATH_KEY)));
     Path content = blobDir.resolve("content");
     File metadataFile = blobDir.resolve("metadata").toFile();
     DirSupport.mkdir(content);
     DirSupport.mkdir(metadataFile);
     this.root = content;
-    this.metadataStore = MapdbBlobMetadataStore.create(metadataFile);
+    boolean journaled = attributes.get(JOURNAL_KEY, Boolean.class, false);
+    this.deduplicate = attributes.get(DEDUPLICATE_KEY, Boolean.class, false);
+    this.metadataStore = MapdbBlobMetadataStore.create(metadataFile, journaled);
   }
 
   private void checkExists(final Path path, final BlobId blobId) throws IOException {
@@ -336,7 +435,7 @@ public class FileBlobStore
   }
 
   class FileBlob
-      implements Blob
+      implements FileBackedBlob
   {
     private final BlobId blobId;
 
@@ -378,6 +477,17 @@ public class FileBlobStore
       }
     }
 
+    @Override
+    public FileChannel openChannel() {
+      try {
+        checkExists(contentPath, blobId);
+        return fileOperations.openChannel(contentPath);
+      }
+      catch (IOException e) {
+        throw new BlobStoreException(e, blobId);
+      }
+    }
+
     @Override
     public BlobMetrics getMetrics() {
       return metrics;
@@ -21,19 +21,32 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
 import org.sonatype.nexus.blobstore.api.BlobId;
 import org.sonatype.nexus.blobstore.api.BlobMetrics;
+import org.sonatype.nexus.blobstore.file.MetadataJournal.Entry;
 import org.sonatype.nexus.common.collect.AutoClosableIterable;
 import org.sonatype.nexus.common.io.DirSupport;
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
 import org.sonatype.sisu.goodies.lifecycle.LifecycleSupport;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.joda.time.DateTime;
 import org.mapdb.Atomic;
 import org.mapdb.DB;
@@ -54,20 +67,52 @@ import static org.sonatype.nexus.blobstore.file.internal.ExternalizationHelper.w
 /**
  * MapDB implementation of {@link BlobMetadataStore}.
  *
+ * By default every change is committed to MapDB in its own transaction. In journaled mode changes are instead
+ * group-committed to an append-only {@link MetadataJournal} and kept in memory, and are checkpointed into MapDB
+ * periodically, once {@link #CHECKPOINT_THRESHOLD} changes are pending, and before operations needing the MapDB
+ * state sets ({@link #findWithState}, {@link #getBlobCount}, {@link #compact}). The journal is replayed on start.
+ *
  * @since 3.0
  */
 public class MapdbBlobMetadataStore
     extends LifecycleSupport
     implements BlobMetadataStore
 {
+  private static final long CHECKPOINT_INTERVAL = SystemPropertiesHelper.getLong(
+      MapdbBlobMetadataStore.class.getName() + ".checkpointInterval", 5000L);
+
+  private static final int CHECKPOINT_THRESHOLD = SystemPropertiesHelper.getInteger(
+      MapdbBlobMetadataStore.class.getName() + ".checkpointThreshold", 10000);
+
+  /**
+   * Marks blobs deleted since the last checkpoint.
+   */
+  private static final MetadataRecord DELETED = new MetadataRecord();
+
   private final File file;
 
+  private final boolean journaled;
+
   private TxMaker database;
 
-  private MapdbBlobMetadataStore(final File directory) {
+  private MetadataJournal journal;
+
+  /**
+   * Journaled changes not yet checkpointed into MapDB.
+   */
+  private final ConcurrentMap<BlobId, MetadataRecord> uncheckpointed = Maps.newConcurrentMap();
+
+  private final AtomicLong lastId = new AtomicLong();
+
+  private final AtomicBoolean checkpointRequested = new AtomicBoolean();
+
+  private ScheduledExecutorService checkpointer;
+
+  private MapdbBlobMetadataStore(final File directory, final boolean journaled) {
     checkNotNull(directory);
     this.file = new File(directory, directory.getName() + ".db");
-    log.debug("File: {}", file);
+    this.journaled = journaled;
+    log.debug("File: {}, journaled: {}", file, journaled);
   }
 
   /**
@@ -76,7 +121,16 @@ public class MapdbBlobMetadataStore
    * is used for mapdb's serializing/deserializing operations.
    */
   public static BlobMetadataStore create(final File directory) {
-    final MapdbBlobMetadataStore inner = new MapdbBlobMetadataStore(directory);
+    return create(directory, false);
+  }
+
+  /**
+   * @see #create(File)
+   *
+   * @param journaled whether to group-commit changes to a journal instead of committing each to MapDB
+   */
+  public static BlobMetadataStore create(final File directory, final boolean journaled) {
+    final MapdbBlobMetadataStore inner = new MapdbBlobMetadataStore(directory, journaled);
 
     return (BlobMetadataStore) Proxy.newProxyInstance(BlobMetadataStore.class.getClassLoader(),
         new Class[]{BlobMetadataStore.class}, new OsgiCompatibleClassloaderAdvice(inner));
@@ -95,14 +149,167 @@ public class MapdbBlobMetadataStore
     this.database = DBMaker.newFileDB(file)
         .checksumEnable()
         .makeTxMaker();
+
+    if (journaled) {
+      startJournal();
+    }
   }
 
   @Override
   protected void doStop() throws Exception {
+    if (journaled) {
+      stopJournal();
+    }
     database.close();
     database = null;
   }
 
+  private void startJournal() throws IOException {
+    DB db = database.makeTx();
+    try {
+      lastId.set(idSequence(db).get());
+    }
+    finally {
+      db.close();
+    }
+
+    journal = new MetadataJournal(new File(file.getParentFile(), file.getName() + ".journal"),
+        new MetadataJournal.Listener()
+        {
+          @Override
+          public void committed(final List<Entry> entries) {
+            apply(entries);
+          }
+        });
+    List<Entry> entries = journal.open();
+    apply(entries);
+    for (Entry entry : entries) {
+      try {
+        long id = Long.parseLong(entry.getId().asUniqueString(), 16);
+        if (id > lastId.get()) {
+          lastId.set(id);
+        }
+      }
+      catch (NumberFormatException e) {
+        // not generated by us, does not affect sequence
+      }
+    }
+    log.debug("Replayed {} journal entries", entries.size());
+
+    checkpointer = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("blob-metadata-checkpoint-" + file.getName()).setDaemon(true)
+            .build());
+    checkpointer.scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run() {
+        checkpointQuietly();
+      }
+    }, CHECKPOINT_INTERVAL, CHECKPOINT_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  private void stopJournal() throws Exception {
+    checkpointer.shutdown();
+    checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+    checkpointer = null;
+    checkpoint();
+    journal.close();
+    journal = null;
+    uncheckpointed.clear();
+  }
+
+  /**
+   * Applies committed journal entries to the in-memory view.
+   */
+  private void apply(final List<Entry> entries) {
+    for (Entry entry : entries) {
+      uncheckpointed.put(entry.getId(), entry.getRecord() == null ? DELETED : entry.getRecord());
+    }
+    if (uncheckpointed.size() >= CHECKPOINT_THRESHOLD && checkpointer != null
+        && checkpointRequested.compareAndSet(false, true)) {
+      checkpointer.execute(new Runnable()
+      {
+        @Override
+        public void run() {
+          checkpointRequested.set(false);
+          checkpointQuietly();
+        }
+      });
+    }
+  }
+
+  private void journal(final Entry entry) {
+    try {
+      journal.append(entry);
+    }
+    catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Writes all journaled changes to MapDB in a single transaction and empties the journal.
+   */
+  private void checkpoint() {
+    try {
+      journal.reset(new Runnable()
+      {
+        @Override
+        public void run() {
+          if (uncheckpointed.isEmpty()) {
+            return;
+          }
+          final Map<BlobId, MetadataRecord> changes = ImmutableMap.copyOf(uncheckpointed);
+          log.debug("Checkpointing {} changes", changes.size());
+          database.execute(new TxBlock()
+          {
+            @Override
+            public void tx(final DB db) throws TxRollbackException {
+              HTreeMap<BlobId, MetadataRecord> entries = entries(db);
+              for (Map.Entry<BlobId, MetadataRecord> change : changes.entrySet()) {
+                BlobId id = change.getKey();
+                MetadataRecord record = change.getValue();
+                // changes may have been checkpointed before, when replaying after a crash
+                MetadataRecord prev = record == DELETED ? entries.remove(id) : entries.put(id, record);
+                if (prev != null) {
+                  states(db, prev.state).remove(id);
+                }
+                if (record != DELETED) {
+                  states(db, record.state).add(id);
+                }
+              }
+              Atomic.Long sequence = idSequence(db);
+              if (sequence.get() < lastId.get()) {
+                sequence.set(lastId.get());
+              }
+            }
+          });
+          uncheckpointed.clear();
+        }
+      });
+    }
+    catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private void checkpointQuietly() {
+    // invoked outside of the classloader proxy
+    ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+    Thread.currentThread().setContextClassLoader(MapdbBlobMetadataStore.class.getClassLoader());
+    try {
+      if (isStarted()) {
+        checkpoint();
+      }
+    }
+    catch (Exception e) {
+      log.warn("Failed to checkpoint blob metadata journal", e);
+    }
+    finally {
+      Thread.currentThread().setContextClassLoader(originalClassLoader);
+    }
+  }
+
   private Atomic.Long idSequence(final DB db) {
     return db.getAtomicLong("id_sequence");
   }
@@ -115,13 +322,27 @@ public class MapdbBlobMetadataStore
     return db.getTreeSet("state_" + state.name());
   }
 
+  /**
+   * Content key to the blob-id whose content file holds the content.
+   */
+  private HTreeMap<String, String> contentOwners(final DB db) {
+    return db.getHashMap("content_owners");
+  }
+
+  /**
+   * Content key to number of blobs referencing the content.
+   */
+  private HTreeMap<String, Long> contentReferences(final DB db) {
+    return db.getHashMap("content_references");
+  }
+
   /**
    * Metadata record for internal storage in MapDB.
    */
   static class MetadataRecord
       implements Externalizable
   {
-    private final static int FORMAT_VERSION = 1;
+    private final static int FORMAT_VERSION = 2;
 
     private BlobState state;
 
@@ -135,6 +356,8 @@ public class MapdbBlobMetadataStore
 
     private Long size;
 
+    private String contentId;
+
     @Override
     public boolean equals(final Object o) {
       if (this == o) {
@@ -161,12 +384,15 @@ public class MapdbBlobMetadataStore
       if (!Objects.equals(sha1, that.sha1)) {
         return false;
       }
+      if (!Objects.equals(contentId, that.contentId)) {
+        return false;
+      }
       return true;
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(state, headers, metrics, created, sha1, size);
+      return Objects.hash(state, headers, metrics, created, sha1, size, contentId);
     }
 
     public MetadataRecord(final BlobMetadata source) {
@@ -185,6 +411,7 @@ public class MapdbBlobMetadataStore
         this.sha1 = null;
         this.size = null;
       }
+      this.contentId = source.getContentId() == null ? null : source.getContentId().asUniqueString();
     }
 
     /**
@@ -204,6 +431,7 @@ public class MapdbBlobMetadataStore
           ", created=" + created +
           ", sha1='" + sha1 + '\'' +
           ", size=" + size +
+          ", contentId=" + contentId +
           '}';
     }
 
@@ -227,12 +455,14 @@ public class MapdbBlobMetadataStore
         writeNullableString(out, sha1);
         writeNullableLong(out, size);
       }
+
+      writeNullableString(out, contentId);
     }
 
     @Override
     public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
       final int version = in.readInt();
-      checkState(version == 1, "Version must be 1.");
+      checkState(version == 1 || version == FORMAT_VERSION, "Version must be 1 or %s.", FORMAT_VERSION);
 
       state = BlobState.values()[in.readInt()];
 
@@ -251,6 +481,10 @@ public class MapdbBlobMetadataStore
         sha1 = readNullableString(in);
         size = readNullableLong(in);
       }
+
+      if (version >= 2) {
+        contentId = readNullableString(in);
+      }
     }
   }
 
@@ -263,6 +497,9 @@ public class MapdbBlobMetadataStore
     if (source.metrics) {
       target.setMetrics(new BlobMetrics(source.created, source.sha1, source.size));
     }
+    if (source.contentId != null) {
+      target.setContentId(new BlobId(source.contentId));
+    }
     return target;
   }
 
@@ -281,6 +518,13 @@ public class MapdbBlobMetadataStore
 
     final MetadataRecord record = convert(metadata);
 
+    if (journaled) {
+      BlobId id = new BlobId(String.format("%016x", lastId.incrementAndGet()));
+      log.trace("Add: {}={}", id, record);
+      journal(new Entry(id, record));
+      return id;
+    }
+
     return database.execute(new Fun.Function1<BlobId, DB>()
     {
       @Override
@@ -307,6 +551,13 @@ public class MapdbBlobMetadataStore
 
     log.trace("Get: {}", id);
 
+    if (journaled) {
+      MetadataRecord record = uncheckpointed.get(id);
+      if (record != null) {
+        return record == DELETED ? null : convert(record);
+      }
+    }
+
     DB db = database.makeTx();
     try {
       MetadataRecord record = entries(db).get(id);
@@ -329,6 +580,12 @@ public class MapdbBlobMetadataStore
     final MetadataRecord record = convert(metadata);
     log.trace("Update: {}={}", id, record);
 
+    if (journaled) {
+      checkState(get(id) != null, "Can not update non-existent blob-id: %s", id);
+      journal(new Entry(id, record));
+      return;
+    }
+
     database.execute(new TxBlock()
     {
       @Override
@@ -350,6 +607,12 @@ public class MapdbBlobMetadataStore
 
     log.trace("Delete: {}", id);
 
+    if (journaled) {
+      checkState(get(id) != null, "Can not delete non-existent blob-id: %s", id);
+      journal(new Entry(id, null));
+      return;
+    }
+
     database.execute(new TxBlock()
     {
       @Override
@@ -370,6 +633,10 @@ public class MapdbBlobMetadataStore
 
     log.trace("Find with state: {}", state);
 
+    if (journaled) {
+      checkpoint();
+    }
+
     final DB db = database.makeTx().snapshot();
 
     return new AutoClosableIterable<BlobId>()
@@ -411,9 +678,113 @@ public class MapdbBlobMetadataStore
     return files;
   }
 
+  @Override
+  public BlobId addContentReference(final String contentKey, final BlobId blobId) {
+    checkNotNull(contentKey);
+    checkNotNull(blobId);
+    ensureStarted();
+
+    log.trace("Add content reference: {} -> {}", contentKey, blobId);
+
+    // reference counts are not journaled, they have to be exact when deciding whether to drop content
+    return database.execute(new Fun.Function1<BlobId, DB>()
+    {
+      @Override
+      public BlobId run(final DB db) {
+        String owner = contentOwners(db).get(contentKey);
+        if (owner == null) {
+          contentOwners(db).put(contentKey, blobId.asUniqueString());
+          contentReferences(db).put(contentKey, 1L);
+          return blobId;
+        }
+        Long count = contentReferences(db).get(contentKey);
+        contentReferences(db).put(contentKey, count == null ? 1L : count + 1);
+        return new BlobId(owner);
+      }
+    });
+  }
+
+  @Override
+  public boolean removeContentReference(final String contentKey) {
+    checkNotNull(contentKey);
+    ensureStarted();
+
+    log.trace("Remove content reference: {}", contentKey);
+
+    return database.execute(new Fun.Function1<Boolean, DB>()
+    {
+      @Override
+      public Boolean run(final DB db) {
+        Long count = contentReferences(db).get(contentKey);
+        if (count == null || count <= 1) {
+          contentReferences(db).remove(contentKey);
+          contentOwners(db).remove(contentKey);
+          return true;
+        }
+        contentReferences(db).put(contentKey, count - 1);
+        return false;
+      }
+    });
+  }
+
+  @Override
+  public List<BlobId> reconcileContentReferences() {
+    ensureStarted();
+    if (journaled) {
+      checkpoint();
+    }
+
+    log.trace("Reconciling content references");
+
+    return database.execute(new Fun.Function1<List<BlobId>, DB>()
+    {
+      @Override
+      public List<BlobId> run(final DB db) {
+        Map<String, Long> counts = Maps.newHashMap();
+        Map<String, String> owners = Maps.newHashMap();
+        for (MetadataRecord record : entries(db).values()) {
+          if (record.contentId != null && record.size != null) {
+            String contentKey = contentKey(record.sha1, record.size);
+            Long count = counts.get(contentKey);
+            counts.put(contentKey, count == null ? 1L : count + 1);
+            owners.put(contentKey, record.contentId);
+          }
+        }
+
+        List<BlobId> unreferenced = Lists.newArrayList();
+        HTreeMap<String, String> contentOwners = contentOwners(db);
+        HTreeMap<String, Long> contentReferences = contentReferences(db);
+        for (String contentKey : Lists.newArrayList(contentOwners.keySet())) {
+          if (!counts.containsKey(contentKey)) {
+            unreferenced.add(new BlobId(contentOwners.remove(contentKey)));
+            contentReferences.remove(contentKey);
+          }
+        }
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+          if (!count.getValue().equals(contentReferences.get(count.getKey()))) {
+            log.debug("Correcting reference count of {} to {}", count.getKey(), count.getValue());
+            contentReferences.put(count.getKey(), count.getValue());
+          }
+          contentOwners.put(count.getKey(), owners.get(count.getKey()));
+        }
+        return unreferenced;
+      }
+    });
+  }
+
+  /**
+   * Returns the key identifying content of given hash and size.
+   */
+  public static String contentKey(final String sha1, final long size) {
+    return sha1 + ":" + size;
+  }
+
   @Override
   public long getBlobCount() {
     ensureStarted();
+    if (journaled) {
+      checkpoint();
+    }
     DB db = database.makeTx();
     try {
       return entries(db).sizeLong();
@@ -438,6 +809,9 @@ public class MapdbBlobMetadataStore
   @Override
   public void compact() {
     ensureStarted();
+    if (journaled) {
+      checkpoint();
+    }
 
     database.execute(new TxBlock()
     {
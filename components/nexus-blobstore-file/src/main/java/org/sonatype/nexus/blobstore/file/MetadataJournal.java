@@ -0,0 +1,352 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.file;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.blobstore.api.BlobId;
+import org.sonatype.nexus.blobstore.file.MapdbBlobMetadataStore.MetadataRecord;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.google.common.collect.Lists;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Append-only journal of blob metadata changes, with group commit.
+ *
+ * Entries are framed as payload length, CRC32 and payload. Concurrent appenders are batched: one of them writes and
+ * forces all entries queued so far while the others wait, so a single fsync makes many changes durable. A torn entry
+ * at the end of the journal (e.g. after a crash mid-write) is dropped when the journal is opened.
+ *
+ * @since 3.0
+ */
+class MetadataJournal
+    extends ComponentSupport
+{
+  /**
+   * A journaled change; a {@code null} record marks a delete.
+   */
+  static class Entry
+  {
+    private final BlobId id;
+
+    @Nullable
+    private final MetadataRecord record;
+
+    Entry(final BlobId id, @Nullable final MetadataRecord record) {
+      this.id = checkNotNull(id);
+      this.record = record;
+    }
+
+    BlobId getId() {
+      return id;
+    }
+
+    @Nullable
+    MetadataRecord getRecord() {
+      return record;
+    }
+  }
+
+  /**
+   * Receives entries once they are durable, in journal order, one batch at a time.
+   */
+  interface Listener
+  {
+    void committed(List<Entry> entries);
+  }
+
+  private static class Batch
+  {
+    private final List<Entry> entries = Lists.newArrayList();
+
+    private boolean done;
+
+    private Exception failure;
+  }
+
+  private final File file;
+
+  private final Listener listener;
+
+  private final Lock lock = new ReentrantLock();
+
+  private final Condition written = lock.newCondition();
+
+  /**
+   * Batch collecting entries to be written next; guarded by {@link #lock}.
+   */
+  private Batch current = new Batch();
+
+  /**
+   * True while a batch is being written or the journal is being reset; guarded by {@link #lock}.
+   */
+  private boolean writing;
+
+  /**
+   * Set when a failed write could not be rolled back, after which no more entries are accepted; guarded by
+   * {@link #lock}.
+   */
+  private IOException failed;
+
+  private RandomAccessFile raf;
+
+  private FileChannel channel;
+
+  MetadataJournal(final File file, final Listener listener) {
+    this.file = checkNotNull(file);
+    this.listener = checkNotNull(listener);
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Opens the journal and returns the entries it contains, dropping a torn tail if there is one.
+   */
+  List<Entry> open() throws IOException {
+    checkState(channel == null, "Already open");
+    List<Entry> entries = Lists.newArrayList();
+    long valid = 0;
+    if (file.exists()) {
+      long size = file.length();
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        while (true) {
+          int length = in.readInt();
+          long checksum = in.readLong();
+          if (length < 0 || valid + 12 + length > size) {
+            log.warn("Torn entry in journal {} at offset {}, dropping remainder", file, valid);
+            break;
+          }
+          byte[] payload = new byte[length];
+          in.readFully(payload);
+          if (checksum(payload) != checksum) {
+            log.warn("Corrupt entry in journal {} at offset {}, dropping remainder", file, valid);
+            break;
+          }
+          entries.add(readEntry(payload));
+          valid += 12 + length;
+        }
+      }
+      catch (EOFException e) {
+        // end of journal, or torn tail
+      }
+    }
+
+    raf = new RandomAccessFile(file, "rw");
+    channel = raf.getChannel();
+    if (channel.size() > valid) {
+      log.warn("Truncating journal {} from {} to {} bytes", file, channel.size(), valid);
+      channel.truncate(valid);
+    }
+    channel.position(valid);
+    log.debug("Opened journal {} with {} entries", file, entries.size());
+    return entries;
+  }
+
+  void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+      raf.close();
+      channel = null;
+      raf = null;
+    }
+  }
+
+  /**
+   * Appends an entry, returning once it is durable and has been passed to the {@link Listener}.
+   */
+  void append(final Entry entry) throws IOException {
+    checkNotNull(entry);
+    lock.lock();
+    try {
+      if (failed != null) {
+        throw new IOException("Journal " + file + " failed", failed);
+      }
+      Batch batch = current;
+      batch.entries.add(entry);
+      while (!batch.done) {
+        if (writing) {
+          written.awaitUninterruptibly();
+          continue;
+        }
+        // no writer active, so our batch is still the current one: write it along with everything queued since
+        writing = true;
+        current = new Batch();
+        lock.unlock();
+        try {
+          write(batch.entries);
+          listener.committed(batch.entries);
+        }
+        catch (IOException | RuntimeException e) {
+          batch.failure = e;
+        }
+        finally {
+          lock.lock();
+          writing = false;
+          batch.done = true;
+          written.signalAll();
+        }
+      }
+      if (batch.failure != null) {
+        throw new IOException("Failed to write journal " + file, batch.failure);
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Runs the given action while no entries are committed and then empties the journal. Used to checkpoint all
+   * committed entries to the backing store.
+   */
+  void reset(final Runnable checkpoint) throws IOException {
+    lock.lock();
+    try {
+      while (writing) {
+        written.awaitUninterruptibly();
+      }
+      writing = true;
+    }
+    finally {
+      lock.unlock();
+    }
+    boolean truncated = false;
+    try {
+      checkpoint.run();
+      channel.truncate(0);
+      channel.position(0);
+      channel.force(true);
+      truncated = true;
+    }
+    finally {
+      lock.lock();
+      try {
+        if (truncated) {
+          // journal is empty again, so whatever a failed write left behind is gone
+          failed = null;
+        }
+        writing = false;
+        written.signalAll();
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Writes the entries as one frame sequence. If the write fails the journal is truncated back to where it started,
+   * as a torn frame in the middle would make {@link #open()} drop every entry appended after it. If even that fails
+   * the journal is marked failed and rejects further appends.
+   */
+  private void write(final List<Entry> entries) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() * 256);
+    DataOutputStream out = new DataOutputStream(bytes);
+    for (Entry entry : entries) {
+      byte[] payload = writeEntry(entry);
+      out.writeInt(payload.length);
+      out.writeLong(checksum(payload));
+      out.write(payload);
+    }
+    out.flush();
+    ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+    long start = channel.position();
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    }
+    catch (IOException e) {
+      rollback(start, e);
+      throw e;
+    }
+  }
+
+  private void rollback(final long start, final IOException cause) {
+    try {
+      channel.truncate(start);
+      channel.position(start);
+      channel.force(false);
+    }
+    catch (IOException e) {
+      log.error("Failed to roll back journal {} to offset {}, rejecting further entries", file, start, e);
+      cause.addSuppressed(e);
+      lock.lock();
+      try {
+        failed = cause;
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private static byte[] writeEntry(final Entry entry) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeUTF(entry.id.asUniqueString());
+      out.writeBoolean(entry.record != null);
+      if (entry.record != null) {
+        entry.record.writeExternal(out);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Entry readEntry(final byte[] payload) throws IOException {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+      BlobId id = new BlobId(in.readUTF());
+      MetadataRecord record = null;
+      if (in.readBoolean()) {
+        record = new MetadataRecord();
+        record.readExternal(in);
+      }
+      return new Entry(id, record);
+    }
+    catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static long checksum(final byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    return crc.getValue();
+  }
+}
@@ -13,6 +13,7 @@
 package org.sonatype.nexus.blobstore.file;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
@@ -21,10 +22,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -45,6 +48,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static com.google.common.io.ByteStreams.nullOutputStream;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.fail;
 import static org.sonatype.nexus.blobstore.api.BlobStore.BLOB_NAME_HEADER;
 import static org.sonatype.nexus.blobstore.api.BlobStore.CREATED_BY_HEADER;
@@ -72,7 +78,7 @@ public class FileBlobStoreConcurrencyIT
     Path content = root.resolve("content");
     Path metadata = root.resolve("metadata");
 
-    this.metadataStore = MapdbBlobMetadataStore.create(metadata.toFile());
+    this.metadataStore = createMetadataStore(metadata.toFile());
     this.underTest = new FileBlobStore(content, new VolumeChapterLocationStrategy(), new SimpleFileOperations(), metadataStore,
         new BlobStoreConfiguration());
     underTest.start();
@@ -83,6 +89,56 @@ public class FileBlobStoreConcurrencyIT
     underTest.stop();
   }
 
+  protected BlobMetadataStore createMetadataStore(final File directory) {
+    return MapdbBlobMetadataStore.create(directory);
+  }
+
+  /**
+   * Measures creation rate of small blobs (think pom and checksum files), where metadata commits dominate.
+   */
+  @Test
+  public void smallBlobThroughput() throws Exception {
+    final int numberOfThreads = 16;
+    final int blobsPerThread = 500;
+    final byte[] data = new byte[1024];
+    new Random().nextBytes(data);
+
+    final Queue<BlobId> created = new ConcurrentLinkedDeque<>();
+    final CyclicBarrier startingGun = new CyclicBarrier(numberOfThreads + 1);
+    ExecutorService service = Executors.newFixedThreadPool(numberOfThreads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < numberOfThreads; i++) {
+      futures.add(service.submit(new Callable<Void>()
+      {
+        @Override
+        public Void call() throws Exception {
+          startingGun.await();
+          for (int j = 0; j < blobsPerThread; j++) {
+            created.add(underTest.create(new ByteArrayInputStream(data), TEST_HEADERS).getId());
+          }
+          return null;
+        }
+      }));
+    }
+
+    startingGun.await();
+    long start = System.nanoTime();
+    for (Future<?> future : futures) {
+      future.get(5, TimeUnit.MINUTES);
+    }
+    long elapsed = System.nanoTime() - start;
+    service.shutdown();
+
+    int total = numberOfThreads * blobsPerThread;
+    log("{}: created {} blobs in {} ms, {} blobs/sec", getClass().getSimpleName(), total,
+        TimeUnit.NANOSECONDS.toMillis(elapsed), total * TimeUnit.SECONDS.toNanos(1) / elapsed);
+
+    assertThat(created.size(), is(total));
+    for (BlobId blobId : created) {
+      assertThat(underTest.get(blobId), notNullValue());
+    }
+  }
+
   @Test
   public void concurrencyTest() throws Exception {
 
@@ -30,6 +30,7 @@ import org.joda.time.DateTime;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
@@ -37,7 +38,9 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -141,6 +144,44 @@ public class FileBlobStoreTest
     verify(metadata).setBlobState(BlobState.MARKED_FOR_DELETION);
   }
 
+  @Test
+  public void duplicateContentSharesContentFile() throws Exception {
+    final FileBlobStore dedupStore = new FileBlobStore(root, locationStrategy, fileOps, metadataStore,
+        new BlobStoreConfiguration(), true);
+    final BlobId ownerId = new BlobId("ownerId");
+    final BlobId duplicateId = new BlobId("duplicateId");
+    final InputStream inputStream = mock(InputStream.class);
+    final ImmutableMap<String, String> headers = ImmutableMap.of(
+        BlobStore.BLOB_NAME_HEADER, "my blob",
+        BlobStore.CREATED_BY_HEADER, "John did this"
+    );
+
+    when(metadataStore.add(any(BlobMetadata.class))).thenReturn(duplicateId);
+    when(locationStrategy.location(duplicateId)).thenReturn("duplicatePath");
+    when(locationStrategy.location(ownerId)).thenReturn("ownerPath");
+    final Path duplicatePath = root.resolve("duplicatePath" + FileBlobStore.BLOB_CONTENT_SUFFIX);
+    final Path ownerPath = root.resolve("ownerPath" + FileBlobStore.BLOB_CONTENT_SUFFIX);
+    when(fileOps.create(duplicatePath, inputStream)).thenReturn(new StreamMetrics(200L, "abc"));
+    when(metadataStore.addContentReference("abc:200", duplicateId)).thenReturn(ownerId);
+
+    dedupStore.create(inputStream, headers);
+
+    verify(fileOps).delete(duplicatePath);
+    final ArgumentCaptor<BlobMetadata> metadata = ArgumentCaptor.forClass(BlobMetadata.class);
+    verify(metadataStore).update(eq(duplicateId), metadata.capture());
+    assertThat(metadata.getValue().getContentId(), is(equalTo(ownerId)));
+    assertThat(metadata.getValue().isAlive(), is(true));
+
+    // hard delete keeps content still referenced by owner
+    when(metadataStore.get(duplicateId)).thenReturn(metadata.getValue());
+    when(metadataStore.removeContentReference("abc:200")).thenReturn(false);
+
+    assertThat(dedupStore.deleteHard(duplicateId), is(true));
+
+    verify(fileOps, never()).delete(ownerPath);
+    verify(metadataStore).delete(duplicateId);
+  }
+
   @Test
   public void secondDeletionRedundant() {
     final BlobId fakeId = new BlobId("testId");
@@ -0,0 +1,143 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.file;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.nexus.blobstore.api.BlobId;
+import org.sonatype.nexus.blobstore.file.MapdbBlobMetadataStore.MetadataRecord;
+import org.sonatype.nexus.blobstore.file.MetadataJournal.Entry;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for {@link MetadataJournal}.
+ */
+public class MetadataJournalTest
+    extends TestSupport
+{
+  private final AtomicInteger committed = new AtomicInteger();
+
+  private final MetadataJournal.Listener listener = new MetadataJournal.Listener()
+  {
+    @Override
+    public void committed(final List<Entry> entries) {
+      committed.addAndGet(entries.size());
+    }
+  };
+
+  private File file;
+
+  private MetadataJournal underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    file = new File(util.createTempDir("journal"), "test.journal");
+    underTest = new MetadataJournal(file, listener);
+    underTest.open();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    underTest.close();
+  }
+
+  private static MetadataRecord record(final BlobState state) {
+    return new MetadataRecord(new BlobMetadata(state, ImmutableMap.of("foo", "bar")));
+  }
+
+  @Test
+  public void concurrentAppendsAreReplayed() throws Exception {
+    final int threads = 8;
+    final int entriesPerThread = 100;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = Lists.newArrayList();
+    for (int i = 0; i < threads; i++) {
+      final int thread = i;
+      futures.add(executor.submit(new Callable<Void>()
+      {
+        @Override
+        public Void call() throws Exception {
+          for (int j = 0; j < entriesPerThread; j++) {
+            underTest.append(new Entry(new BlobId(thread + "-" + j), record(BlobState.ALIVE)));
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+    assertThat(committed.get(), is(threads * entriesPerThread));
+
+    underTest.close();
+    underTest = new MetadataJournal(file, listener);
+    assertThat(underTest.open(), hasSize(threads * entriesPerThread));
+  }
+
+  @Test
+  public void tornTailIsDropped() throws Exception {
+    underTest.append(new Entry(new BlobId("a"), record(BlobState.CREATING)));
+    underTest.append(new Entry(new BlobId("a"), null));
+    underTest.close();
+    long length = file.length();
+
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(new byte[]{0, 0, 1, 0, 42});
+    }
+
+    underTest = new MetadataJournal(file, listener);
+    List<Entry> entries = underTest.open();
+    assertThat(entries, hasSize(2));
+    assertThat(entries.get(0).getRecord().equals(record(BlobState.CREATING)), is(true));
+    assertThat(entries.get(1).getRecord(), nullValue());
+    assertThat(file.length(), is(length));
+  }
+
+  @Test
+  public void resetEmptiesJournal() throws Exception {
+    underTest.append(new Entry(new BlobId("a"), record(BlobState.ALIVE)));
+    final AtomicInteger checkpoints = new AtomicInteger();
+    underTest.reset(new Runnable()
+    {
+      @Override
+      public void run() {
+        checkpoints.incrementAndGet();
+      }
+    });
+    assertThat(checkpoints.get(), is(1));
+
+    underTest.close();
+    underTest = new MetadataJournal(file, listener);
+    assertThat(underTest.open(), hasSize(0));
+  }
+}
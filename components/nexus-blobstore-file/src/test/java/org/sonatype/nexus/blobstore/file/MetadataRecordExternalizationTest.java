@@ -21,6 +21,7 @@ import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.sonatype.nexus.blobstore.api.BlobId;
 import org.sonatype.nexus.blobstore.api.BlobMetrics;
 import org.sonatype.nexus.blobstore.file.MapdbBlobMetadataStore.MetadataRecord;
 
@@ -42,6 +43,15 @@ public class MetadataRecordExternalizationTest
     roundTrip(blobMetadata);
   }
 
+  @Test
+  public void roundTripWithContentId() throws Exception {
+    final BlobMetadata blobMetadata = new BlobMetadata(BlobState.ALIVE, ImmutableMap.of("Hi", "mom"));
+    blobMetadata.setMetrics(new BlobMetrics(new DateTime(), "pretend hash", 33434));
+    blobMetadata.setContentId(new BlobId("owner"));
+
+    roundTrip(blobMetadata);
+  }
+
   @Test
   public void roundTripWithEmptyObject() throws Exception {
     final Map<String, String> headers = new HashMap<>();
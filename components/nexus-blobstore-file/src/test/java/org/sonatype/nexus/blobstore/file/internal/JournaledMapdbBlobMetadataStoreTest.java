@@ -0,0 +1,63 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.file.internal;
+
+import java.io.File;
+
+import org.sonatype.nexus.blobstore.api.BlobId;
+import org.sonatype.nexus.blobstore.file.BlobMetadata;
+import org.sonatype.nexus.blobstore.file.BlobMetadataStore;
+import org.sonatype.nexus.blobstore.file.BlobState;
+import org.sonatype.nexus.blobstore.file.MapdbBlobMetadataStore;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for {@link MapdbBlobMetadataStore} in journaled mode.
+ */
+public class JournaledMapdbBlobMetadataStoreTest
+    extends MapdbBlobMetadataStoreTest
+{
+  @Override
+  protected BlobMetadataStore createStore(final File directory) {
+    return MapdbBlobMetadataStore.create(directory, true);
+  }
+
+  @Test
+  public void changesSurviveRestart() throws Exception {
+    BlobId alive = underTest.add(new BlobMetadata(BlobState.CREATING, ImmutableMap.of("foo", "bar")));
+    underTest.update(alive, new BlobMetadata(BlobState.ALIVE, ImmutableMap.of("foo", "baz")));
+    BlobId deleted = underTest.add(new BlobMetadata(BlobState.CREATING, ImmutableMap.of("foo", "bar")));
+    underTest.delete(deleted);
+
+    underTest.stop();
+    underTest = createStore(dir);
+    underTest.start();
+
+    assertThat(underTest.get(alive).getHeaders().get("foo"), is("baz"));
+    assertThat(underTest.get(deleted), nullValue());
+    assertThat(findWithState(BlobState.ALIVE), contains(alive));
+    assertThat(underTest.getBlobCount(), is(1L));
+
+    // sequence continues after ids handed out before restart
+    BlobId next = underTest.add(new BlobMetadata(BlobState.CREATING, ImmutableMap.of("foo", "bar")));
+    assertThat(next.compareTo(deleted), greaterThan(0));
+  }
+}
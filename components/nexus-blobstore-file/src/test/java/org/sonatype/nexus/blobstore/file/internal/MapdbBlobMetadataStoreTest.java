@@ -16,6 +16,7 @@ import java.io.File;
 import java.util.List;
 
 import org.sonatype.nexus.blobstore.api.BlobId;
+import org.sonatype.nexus.blobstore.api.BlobMetrics;
 import org.sonatype.nexus.blobstore.file.BlobMetadata;
 import org.sonatype.nexus.blobstore.file.BlobMetadataStore;
 import org.sonatype.nexus.blobstore.file.BlobState;
@@ -25,6 +26,7 @@ import org.sonatype.sisu.litmus.testsupport.TestSupport;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import org.joda.time.DateTime;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -32,6 +34,7 @@ import org.junit.Test;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.emptyIterable;
+import static org.hamcrest.Matchers.is;
 
 /**
  * Tests for {@link MapdbBlobMetadataStore}.
@@ -39,16 +42,22 @@ import static org.hamcrest.Matchers.emptyIterable;
 public class MapdbBlobMetadataStoreTest
   extends TestSupport
 {
-  private BlobMetadataStore underTest;
+  protected File dir;
+
+  protected BlobMetadataStore underTest;
 
   @Before
   public void setUp() throws Exception {
     File root = util.createTempDir("databases");
-    File dir = new File(root, "test");
-    this.underTest = MapdbBlobMetadataStore.create(dir);
+    this.dir = new File(root, "test");
+    this.underTest = createStore(dir);
     underTest.start();
   }
 
+  protected BlobMetadataStore createStore(final File directory) {
+    return MapdbBlobMetadataStore.create(directory);
+  }
+
   @After
   public void tearDown() throws Exception {
     if (underTest != null) {
@@ -59,7 +68,7 @@ public class MapdbBlobMetadataStoreTest
   /**
    * Helper to find states and close iterable.
    */
-  private Iterable<BlobId> findWithState(final BlobState state) throws Exception {
+  protected Iterable<BlobId> findWithState(final BlobState state) throws Exception {
     List<BlobId> results = Lists.newArrayList();
     try (AutoClosableIterable<BlobId> iter = underTest.findWithState(state)) {
       for (BlobId id : iter) {
@@ -107,6 +116,41 @@ public class MapdbBlobMetadataStoreTest
     assertThat(findWithState(BlobState.MARKED_FOR_DELETION), emptyIterable());
   }
 
+  @Test
+  public void contentReferences() throws Exception {
+    BlobId owner = underTest.add(new BlobMetadata(BlobState.CREATING, ImmutableMap.of("foo", "bar")));
+    BlobId other = underTest.add(new BlobMetadata(BlobState.CREATING, ImmutableMap.of("foo", "bar")));
+
+    assertThat(underTest.addContentReference("abc:1", owner), is(owner));
+    assertThat(underTest.addContentReference("abc:1", other), is(owner));
+
+    assertThat(underTest.removeContentReference("abc:1"), is(false));
+    assertThat(underTest.removeContentReference("abc:1"), is(true));
+
+    // no longer referenced, so next one owns the content
+    assertThat(underTest.addContentReference("abc:1", other), is(other));
+  }
+
+  @Test
+  public void reconcileContentReferences() throws Exception {
+    BlobMetadata md = new BlobMetadata(BlobState.ALIVE, ImmutableMap.of("foo", "bar"));
+    md.setMetrics(new BlobMetrics(new DateTime(), "abc", 1));
+    BlobId owner = underTest.add(md);
+    md.setContentId(owner);
+    underTest.update(owner, md);
+
+    // references of blobs which never recorded them
+    underTest.addContentReference("abc:1", owner);
+    underTest.addContentReference("abc:1", owner);
+    BlobId orphan = underTest.add(new BlobMetadata(BlobState.CREATING, ImmutableMap.of("foo", "bar")));
+    underTest.addContentReference("def:1", orphan);
+
+    assertThat(underTest.reconcileContentReferences(), contains(orphan));
+
+    // count corrected to the single blob referencing it
+    assertThat(underTest.removeContentReference("abc:1"), is(true));
+  }
+
   @Test
   public void basic() throws Exception {
     BlobMetadata md = new BlobMetadata(BlobState.CREATING, ImmutableMap.of("foo", "bar"));
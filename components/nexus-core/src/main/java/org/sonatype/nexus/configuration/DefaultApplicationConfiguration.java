@@ -18,13 +18,19 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
 import org.sonatype.nexus.common.throwables.ConfigurationException;
 import org.sonatype.nexus.common.validation.ValidationResponse;
 import org.sonatype.nexus.common.validation.ValidationResponseException;
@@ -45,17 +51,22 @@ import org.sonatype.nexus.proxy.registry.RepositoryTypeRegistry;
 import org.sonatype.nexus.proxy.repository.GroupRepository;
 import org.sonatype.nexus.proxy.repository.LocalStatus;
 import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.repository.ShadowRepository;
 import org.sonatype.nexus.proxy.storage.local.DefaultLocalStorageContext;
 import org.sonatype.nexus.proxy.storage.local.LocalStorageContext;
 import org.sonatype.nexus.proxy.storage.remote.DefaultRemoteStorageContext;
 import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
+import org.sonatype.nexus.threads.NexusExecutorService;
+import org.sonatype.nexus.threads.NexusThreadFactory;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
 import com.google.common.base.Function;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.Lists;
 import com.google.inject.Key;
 import com.google.inject.name.Names;
 import org.apache.shiro.SecurityUtils;
@@ -78,6 +89,12 @@ public class DefaultApplicationConfiguration
     extends ComponentSupport
     implements ApplicationConfiguration
 {
+  /**
+   * Maximum number of repositories created and configured concurrently at boot.
+   */
+  private static final int RESTORE_THREADS = SystemPropertiesHelper.getInteger(
+      DefaultApplicationConfiguration.class.getName() + ".restoreThreads", 8);
+
   /**
    * Only to have UTs work
    */
@@ -417,20 +434,87 @@ public class DefaultApplicationConfiguration
   private void createRepositories() {
     List<CRepository> reposes = getConfigurationModel().getRepositories();
 
+    // shadows need their master registered, groups their members, so only plain repositories are built in parallel
+    List<CRepository> plainRepositories = Lists.newArrayList();
     for (CRepository repo : reposes) {
+      if (!isGroup(repo) && !isShadow(repo)) {
+        plainRepositories.add(repo);
+      }
+    }
+    instantiateRepositories(plainRepositories);
 
-      if (!repo.getProviderRole().equals(GroupRepository.class.getName())) {
+    for (CRepository repo : reposes) {
+      if (isShadow(repo)) {
         instantiateRepository(getConfigurationModel(), repo);
       }
     }
 
     for (CRepository repo : reposes) {
-      if (repo.getProviderRole().equals(GroupRepository.class.getName())) {
+      if (isGroup(repo)) {
         instantiateRepository(getConfigurationModel(), repo);
       }
     }
   }
 
+  private boolean isGroup(final CRepository repo) {
+    return repo.getProviderRole().equals(GroupRepository.class.getName());
+  }
+
+  private boolean isShadow(final CRepository repo) {
+    return repo.getProviderRole().equals(ShadowRepository.class.getName());
+  }
+
+  /**
+   * Creates and configures the given repositories on a bounded pool, then registers them in configuration order.
+   */
+  private void instantiateRepositories(final List<CRepository> repositoryModels) {
+    if (repositoryModels.isEmpty()) {
+      return;
+    }
+    final Stopwatch total = Stopwatch.createStarted();
+    final ExecutorService executor = NexusExecutorService.forCurrentSubject(Executors.newFixedThreadPool(
+        Math.min(RESTORE_THREADS, repositoryModels.size()), new NexusThreadFactory("restore", "Repository restore")));
+    try {
+      List<Future<Repository>> futures = Lists.newArrayListWithCapacity(repositoryModels.size());
+      for (final CRepository repositoryModel : repositoryModels) {
+        futures.add(executor.submit(new Callable<Repository>()
+        {
+          @Override
+          public Repository call() throws Exception {
+            final Stopwatch stopwatch = Stopwatch.createStarted();
+            final Repository repository = configureRepository(loadRepositoryClass(repositoryModel),
+                repositoryModel.getProviderHint(), repositoryModel);
+            log.debug("Configured repository {} in {}", repositoryModel.getId(), stopwatch);
+            return repository;
+          }
+        }));
+      }
+
+      for (int i = 0; i < repositoryModels.size(); i++) {
+        final CRepository repositoryModel = repositoryModels.get(i);
+        final Repository repository;
+        try {
+          repository = futures.get(i).get();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new ConfigurationException("Interrupted while instantiating repository " + repositoryModel.getId(), e);
+        }
+        catch (ExecutionException e) {
+          Throwables.propagateIfInstanceOf(e.getCause(), ConfigurationException.class);
+          throw new ConfigurationException("Cannot instantiate repository " + repositoryModel.getProviderRole() + ":" + repositoryModel.getProviderHint(), e.getCause());
+        }
+        checkRepositoryMaxInstanceCountForCreation(loadRepositoryClass(repositoryModel),
+            repositoryModel.getProviderHint(), repositoryModel);
+        repositoryRegistry.addRepository(repository);
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    log.info("Instantiated {} repositories in {}", repositoryModels.size(), total);
+  }
+
   private void dropRepositories() {
     for (Repository repository : repositoryRegistry.getRepositories()) {
       try {
@@ -444,9 +528,7 @@ public class DefaultApplicationConfiguration
 
   private Repository instantiateRepository(final Configuration configuration, final CRepository repositoryModel) {
     try {
-      // core realm will search child/plugin realms too
-      final Class<Repository> klazz = (Class<Repository>) uberClassLoader.loadClass(repositoryModel.getProviderRole());
-      return instantiateRepository(configuration, klazz, repositoryModel.getProviderHint(), repositoryModel);
+      return instantiateRepository(configuration, loadRepositoryClass(repositoryModel), repositoryModel.getProviderHint(), repositoryModel);
     }
     catch (Exception e) {
       Throwables.propagateIfInstanceOf(e, ConfigurationException.class);
@@ -454,6 +536,16 @@ public class DefaultApplicationConfiguration
     }
   }
 
+  private Class<Repository> loadRepositoryClass(final CRepository repositoryModel) {
+    try {
+      // core realm will search child/plugin realms too
+      return (Class<Repository>) uberClassLoader.loadClass(repositoryModel.getProviderRole());
+    }
+    catch (ClassNotFoundException e) {
+      throw new ConfigurationException("Cannot instantiate repository " + repositoryModel.getProviderRole() + ":" + repositoryModel.getProviderHint(), e);
+    }
+  }
+
   private Repository createRepository(Class<? extends Repository> type, String name) {
     try {
       final Provider<? extends Repository> rp =
@@ -472,11 +564,7 @@ public class DefaultApplicationConfiguration
   {
     checkRepositoryMaxInstanceCountForCreation(klazz, name, repositoryModel);
 
-    // create it, will do runtime validation
-    Repository repository = createRepository(klazz, name);
-    if (repository instanceof Configurable) {
-      ((Configurable) repository).configure(repositoryModel);
-    }
+    Repository repository = configureRepository(klazz, name, repositoryModel);
 
     // register with repoRegistry
     repositoryRegistry.addRepository(repository);
@@ -485,6 +573,18 @@ public class DefaultApplicationConfiguration
     return repository;
   }
 
+  private Repository configureRepository(final Class<? extends Repository> klazz,
+                                         final String name,
+                                         final CRepository repositoryModel)
+  {
+    // create it, will do runtime validation
+    Repository repository = createRepository(klazz, name);
+    if (repository instanceof Configurable) {
+      ((Configurable) repository).configure(repositoryModel);
+    }
+    return repository;
+  }
+
   // ------------------------------------------------------------------
   // CRUD-like ops on config sections
   // Globals are mandatory: RU
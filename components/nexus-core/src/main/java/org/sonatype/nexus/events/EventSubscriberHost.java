@@ -12,11 +12,18 @@
  */
 package org.sonatype.nexus.events;
 
+import java.lang.reflect.Method;
 import java.util.List;
-import java.util.concurrent.SynchronousQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -24,14 +31,26 @@ import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.sonatype.nexus.common.property.SystemPropertiesHelper;
-import org.sonatype.nexus.threads.NexusExecutorService;
+import org.sonatype.nexus.proxy.events.RepositoryEvent;
+import org.sonatype.nexus.security.subject.CurrentSubjectSupplier;
+import org.sonatype.nexus.threads.MDCAwareRunnable;
 import org.sonatype.nexus.threads.NexusThreadFactory;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 import org.sonatype.sisu.goodies.lifecycle.LifecycleSupport;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.reflect.TypeToken;
+import org.apache.shiro.subject.Subject;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -39,6 +58,17 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * A default host for {@link EventSubscriber}. This is an internal Nexus component and should not be used in
  * any plugin code, and hence, is subject of change without prior notice.
  *
+ * {@link Asynchronous} subscribers are invoked on a small fixed set of single threaded workers. Every subscriber
+ * queues its events in its own lanes, one per worker, holding at most {@code queueCapacity} events in total. A worker
+ * takes a single event from a lane per turn and then moves on to the other lanes queued on it, so a subscriber with
+ * a backlog delays the others sharing its worker by at most one event per turn instead of its whole backlog. Events
+ * of a repository always go to the same lane of a subscriber and are handled in order; other events are spread
+ * across lanes. When a subscriber has {@code queueCapacity} events pending, further events are either dropped
+ * ({@code dropWhenFull}) or handled on the posting thread. Either way ordering is not kept while a subscriber's queue
+ * is full: an event handled on the posting thread may overtake earlier events of the same repository still pending
+ * in the lane. The poster is deliberately not blocked until there is room, as subscribers post events themselves
+ * and would deadlock on their own full queue.
+ *
  * @since 2.7.0
  */
 @Named
@@ -46,31 +76,43 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class EventSubscriberHost
     extends LifecycleSupport
 {
-  private final int HOST_THREAD_POOL_SIZE = SystemPropertiesHelper.getInteger(
-      EventSubscriberHost.class.getName() + ".poolSize", 500);
+  private static final int WORKERS = SystemPropertiesHelper.getInteger(
+      EventSubscriberHost.class.getName() + ".workers", Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+  private static final int QUEUE_CAPACITY = SystemPropertiesHelper.getInteger(
+      EventSubscriberHost.class.getName() + ".queueCapacity", 10000);
+
+  private static final boolean DROP_WHEN_FULL = SystemPropertiesHelper.getBoolean(
+      EventSubscriberHost.class.getName() + ".dropWhenFull", false);
 
   private final EventBus eventBus;
 
   private final List<Provider<EventSubscriber>> eventSubscriberProviders;
 
-  private final NexusExecutorService hostThreadPool;
+  private final ThreadPoolExecutor[] workers;
+
+  private final Supplier<Subject> subjectSupplier = new CurrentSubjectSupplier();
+
+  private final AtomicInteger nextWorker = new AtomicInteger();
+
+  private final ConcurrentMap<Object, AsyncSubscriber> asyncSubscribers = Maps.newConcurrentMap();
 
-  private final com.google.common.eventbus.AsyncEventBus asyncBus;
+  private final MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
 
   @Inject
   public EventSubscriberHost(final EventBus eventBus, final List<Provider<EventSubscriber>> eventSubscriberProviders) {
     this.eventBus = checkNotNull(eventBus);
     this.eventSubscriberProviders = checkNotNull(eventSubscriberProviders);
 
-    // direct hand-off used! Host pool will use caller thread to execute async inspectors when pool full!
-    final ThreadPoolExecutor target =
-        new ThreadPoolExecutor(0, HOST_THREAD_POOL_SIZE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
-            new NexusThreadFactory("esh", "Event Subscriber Host"), new CallerRunsPolicy());
-    this.hostThreadPool = NexusExecutorService.forCurrentSubject(target);
-    this.asyncBus = new com.google.common.eventbus.AsyncEventBus("esh-async", hostThreadPool);
+    // single threaded workers, lanes are drained by one task at a time anyway
+    final NexusThreadFactory threadFactory = new NexusThreadFactory("esh", "Event Subscriber Host");
+    this.workers = new ThreadPoolExecutor[WORKERS];
+    for (int i = 0; i < WORKERS; i++) {
+      workers[i] = (ThreadPoolExecutor) Executors.newFixedThreadPool(1, threadFactory);
+    }
 
     eventBus.register(this);
-    log.info("Initialized");
+    log.info("Initialized with {} workers", WORKERS);
   }
 
   @Override
@@ -103,9 +145,13 @@ public class EventSubscriberHost
     }
 
     // we need clean shutdown, wait all background event inspectors to finish to have consistent state
-    hostThreadPool.shutdown();
+    for (ThreadPoolExecutor worker : workers) {
+      worker.shutdown();
+    }
     try {
-      hostThreadPool.awaitTermination(5L, TimeUnit.SECONDS);
+      for (ThreadPoolExecutor worker : workers) {
+        worker.awaitTermination(5L, TimeUnit.SECONDS);
+      }
     }
     catch (InterruptedException e) {
       log.debug("Interrupted while waiting for termination", e);
@@ -114,7 +160,10 @@ public class EventSubscriberHost
 
   public void register(final Object object) {
     if (object instanceof Asynchronous) {
-      asyncBus.register(object);
+      if (asyncSubscribers.putIfAbsent(object, new AsyncSubscriber(object)) != null) {
+        log.debug("Already registered {}", object);
+        return;
+      }
     }
     else {
       eventBus.register(object);
@@ -124,7 +173,10 @@ public class EventSubscriberHost
 
   public void unregister(final Object object) {
     if (object instanceof Asynchronous) {
-      asyncBus.unregister(object);
+      final AsyncSubscriber subscriber = asyncSubscribers.remove(object);
+      if (subscriber != null) {
+        subscriber.removeMetrics();
+      }
     }
     else {
       eventBus.unregister(object);
@@ -138,13 +190,243 @@ public class EventSubscriberHost
   @VisibleForTesting
   public boolean isCalmPeriod() {
     // "calm period" is when we have no queued nor active threads
-    return ((ThreadPoolExecutor) hostThreadPool.getTargetExecutorService()).getQueue().isEmpty()
-        && ((ThreadPoolExecutor) hostThreadPool.getTargetExecutorService()).getActiveCount() == 0;
+    for (AsyncSubscriber subscriber : asyncSubscribers.values()) {
+      if (subscriber.pending.get() > 0) {
+        return false;
+      }
+    }
+    for (ThreadPoolExecutor worker : workers) {
+      if (!worker.getQueue().isEmpty() || worker.getActiveCount() > 0) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Subscribe
   @AllowConcurrentEvents
   public void onEvent(final Object evt) {
-    asyncBus.post(evt);
+    final Object key = partitionKey(evt);
+    for (AsyncSubscriber subscriber : asyncSubscribers.values()) {
+      if (subscriber.accepts(evt)) {
+        subscriber.dispatch(evt, laneFor(subscriber, key));
+      }
+    }
+  }
+
+  /**
+   * Returns the key of events that must be handled in order by a subscriber, or {@code null} if the event may be
+   * handled concurrently with any other.
+   */
+  private Object partitionKey(final Object evt) {
+    if (evt instanceof RepositoryEvent && ((RepositoryEvent) evt).getRepository() != null) {
+      return ((RepositoryEvent) evt).getRepository().getId();
+    }
+    return null;
+  }
+
+  private int laneFor(final AsyncSubscriber subscriber, final Object key) {
+    final int hash;
+    if (key == null) {
+      hash = nextWorker.getAndIncrement();
+    }
+    else {
+      hash = 31 * System.identityHashCode(subscriber) + key.hashCode();
+    }
+    return (hash & Integer.MAX_VALUE) % workers.length;
+  }
+
+  /**
+   * Asynchronous subscriber with its own bus, lanes, pending event count and metrics.
+   */
+  private class AsyncSubscriber
+  {
+    private final String name;
+
+    /**
+     * Metric name prefix, unique per subscriber instance as several instances of a class may be registered.
+     */
+    private final String metricPrefix;
+
+    private final Set<Class<?>> eventTypes;
+
+    private final com.google.common.eventbus.EventBus bus;
+
+    private final Lane[] lanes;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Meter dropped;
+
+    private final Timer latency;
+
+    private AsyncSubscriber(final Object subscriber) {
+      this.name = subscriber.getClass().getName();
+      this.eventTypes = eventTypesOf(subscriber.getClass());
+      this.bus = new com.google.common.eventbus.EventBus("esh-" + name);
+      bus.register(subscriber);
+
+      this.lanes = new Lane[workers.length];
+      for (int i = 0; i < lanes.length; i++) {
+        lanes[i] = new Lane(this, workers[i]);
+      }
+
+      this.metricPrefix = MetricRegistry.name(EventSubscriberHost.class, name,
+          Integer.toHexString(System.identityHashCode(subscriber)));
+
+      final String queueDepthName = MetricRegistry.name(metricPrefix, "queueDepth");
+      metricRegistry.remove(queueDepthName);
+      metricRegistry.register(queueDepthName, new Gauge<Integer>()
+      {
+        @Override
+        public Integer getValue() {
+          return pending.get();
+        }
+      });
+      this.dropped = metricRegistry.meter(MetricRegistry.name(metricPrefix, "dropped"));
+      this.latency = metricRegistry.timer(MetricRegistry.name(metricPrefix, "latency"));
+    }
+
+    private boolean accepts(final Object evt) {
+      for (Class<?> eventType : eventTypes) {
+        if (eventType.isInstance(evt)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void dispatch(final Object evt, final int lane) {
+      if (pending.incrementAndGet() > QUEUE_CAPACITY) {
+        pending.decrementAndGet();
+        if (DROP_WHEN_FULL) {
+          dropped.mark();
+          log.debug("Dropping {} for {}, {} events pending", evt, name, QUEUE_CAPACITY);
+        }
+        else {
+          // subscriber cannot keep up, so make the poster handle it; this may overtake pending events of the same
+          // repository, blocking instead would deadlock subscribers posting to their own full queue
+          handle(evt);
+        }
+        return;
+      }
+      // handled on a worker, but as the poster's subject
+      lanes[lane].add(evt, subjectSupplier.get().associateWith(new MDCAwareRunnable(new Runnable()
+      {
+        @Override
+        public void run() {
+          handle(evt);
+        }
+      })));
+    }
+
+    private void handle(final Object evt) {
+      final Timer.Context context = latency.time();
+      try {
+        bus.post(evt);
+      }
+      finally {
+        context.stop();
+      }
+    }
+
+    private void removeMetrics() {
+      metricRegistry.remove(MetricRegistry.name(metricPrefix, "queueDepth"));
+      metricRegistry.remove(MetricRegistry.name(metricPrefix, "dropped"));
+      metricRegistry.remove(MetricRegistry.name(metricPrefix, "latency"));
+    }
+  }
+
+  /**
+   * Events of a subscriber queued on one worker. At most one drain task of a lane is queued on its worker at any time,
+   * handling a single event per turn, so lanes sharing a worker take turns.
+   */
+  private class Lane
+      implements Runnable
+  {
+    private final AsyncSubscriber subscriber;
+
+    private final ThreadPoolExecutor worker;
+
+    private final Queue<Runnable> events = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private Lane(final AsyncSubscriber subscriber, final ThreadPoolExecutor worker) {
+      this.subscriber = subscriber;
+      this.worker = worker;
+    }
+
+    private void add(final Object evt, final Runnable handler) {
+      events.add(handler);
+      if (scheduled.compareAndSet(false, true)) {
+        try {
+          worker.execute(this);
+        }
+        catch (RejectedExecutionException e) {
+          scheduled.set(false);
+          discard();
+          log.debug("Discarding {} for {}, host stopped", evt, subscriber.name);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      handleNext();
+      scheduled.set(false);
+      // take another turn behind the lanes queued meanwhile
+      if (!events.isEmpty() && scheduled.compareAndSet(false, true)) {
+        try {
+          worker.execute(this);
+        }
+        catch (RejectedExecutionException e) {
+          // host stopping, finish what was queued before on this thread
+          while (handleNext()) {
+            // nothing
+          }
+          scheduled.set(false);
+        }
+      }
+    }
+
+    private boolean handleNext() {
+      final Runnable handler = events.poll();
+      if (handler == null) {
+        return false;
+      }
+      try {
+        handler.run();
+      }
+      catch (Exception e) {
+        log.warn("Failed to handle event for {}", subscriber.name, e);
+      }
+      finally {
+        subscriber.pending.decrementAndGet();
+      }
+      return true;
+    }
+
+    private void discard() {
+      while (events.poll() != null) {
+        subscriber.pending.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Returns the event types handled by {@link Subscribe} methods of the given subscriber class.
+   */
+  @VisibleForTesting
+  static Set<Class<?>> eventTypesOf(final Class<?> clazz) {
+    final ImmutableSet.Builder<Class<?>> eventTypes = ImmutableSet.builder();
+    for (Class<?> type : TypeToken.of(clazz).getTypes().rawTypes()) {
+      for (Method method : type.getDeclaredMethods()) {
+        if (method.isAnnotationPresent(Subscribe.class) && method.getParameterTypes().length == 1) {
+          eventTypes.add(method.getParameterTypes()[0]);
+        }
+      }
+    }
+    return eventTypes.build();
   }
 }
@@ -0,0 +1,280 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Maps;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link PathCache} of a single repository, keeping keys in a sorted concurrent map, so lookups are logarithmic and
+ * removing a subtree costs proportional to the size of the subtree, independently of the size of other repository
+ * caches.
+ *
+ * Entries expire lazily: expired entries are not reported, and are removed when touched, purged, or when the total
+ * number of entries across caches of the same {@link Bound} exceeds its max size.
+ *
+ * @since 3.0
+ */
+public class ConcurrentPathCache
+    extends AbstractPathCache
+{
+  /**
+   * Caches holding at most {@code maxSize} entries in total. Once exceeded, entries are evicted across all of them,
+   * expired ones first and then the ones expiring soonest, which for equal time to live are the oldest ones.
+   */
+  public static class Bound
+  {
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final int maxSize;
+
+    private final Set<ConcurrentPathCache> caches =
+        Collections.newSetFromMap(Maps.<ConcurrentPathCache, Boolean>newConcurrentMap());
+
+    public Bound(final int maxSize) {
+      checkArgument(maxSize > 0, "Max size must be positive");
+      this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates a cache bounded by this bound.
+     *
+     * @param defaultTimeToLive time to live in seconds of elements put without expiration
+     */
+    public ConcurrentPathCache newCache(final int defaultTimeToLive) {
+      final ConcurrentPathCache cache = new ConcurrentPathCache(this, defaultTimeToLive);
+      caches.add(cache);
+      return cache;
+    }
+
+    /**
+     * Purges given cache and stops bounding it, once it is not used anymore.
+     */
+    public void remove(final ConcurrentPathCache cache) {
+      if (caches.remove(cache)) {
+        cache.purge();
+      }
+    }
+
+    /**
+     * Returns the count of entries of all caches.
+     */
+    public int size() {
+      return size.get();
+    }
+
+    /**
+     * Makes room once too many entries are cached, dropping expired entries and, if that is not enough, the entries
+     * expiring soonest of all caches. Drops a tenth more than needed, so puts at capacity do not scan every time.
+     */
+    private synchronized void evict() {
+      if (size.get() <= maxSize) {
+        // made room concurrently
+        return;
+      }
+      final long now = System.currentTimeMillis();
+      for (ConcurrentPathCache cache : caches) {
+        cache.removeExpired(now);
+      }
+      final int lowWatermark = maxSize - maxSize / 10;
+      final int excess = size.get() - lowWatermark;
+      if (excess <= 0) {
+        return;
+      }
+      long[] expirations = new long[size.get()];
+      int count = 0;
+      for (ConcurrentPathCache cache : caches) {
+        for (CacheEntry entry : cache.entries.values()) {
+          if (count == expirations.length) {
+            expirations = Arrays.copyOf(expirations, count * 2 + 1);
+          }
+          expirations[count++] = entry.expires;
+        }
+      }
+      if (count == 0) {
+        return;
+      }
+      Arrays.sort(expirations, 0, count);
+      final long threshold = expirations[Math.min(excess, count) - 1];
+      for (ConcurrentPathCache cache : caches) {
+        for (Entry<String, CacheEntry> entry : cache.entries.entrySet()) {
+          if (size.get() <= lowWatermark) {
+            return;
+          }
+          if (entry.getValue().expires <= threshold) {
+            cache.remove(entry.getKey(), entry.getValue());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Cached element and its expiration time, {@link Long#MAX_VALUE} if it never expires.
+   */
+  private static class CacheEntry
+  {
+    private final Object element;
+
+    private final long expires;
+
+    private CacheEntry(final Object element, final long expires) {
+      this.element = element;
+      this.expires = expires;
+    }
+
+    private boolean isExpired(final long now) {
+      return expires <= now;
+    }
+  }
+
+  private final ConcurrentNavigableMap<String, CacheEntry> entries = new ConcurrentSkipListMap<>();
+
+  private final AtomicInteger count = new AtomicInteger();
+
+  private final Bound bound;
+
+  private final int defaultTimeToLive;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private ConcurrentPathCache(final Bound bound, final int defaultTimeToLive) {
+    this.bound = bound;
+    this.defaultTimeToLive = defaultTimeToLive;
+  }
+
+  @Override
+  protected boolean doContains(final String key) {
+    final CacheEntry entry = entries.get(key);
+    if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+      remove(key, entry);
+      misses.incrementAndGet();
+      return false;
+    }
+    if (entry != null) {
+      hits.incrementAndGet();
+      return true;
+    }
+    misses.incrementAndGet();
+    return false;
+  }
+
+  @Override
+  protected boolean doIsExpired(final String key) {
+    final CacheEntry entry = entries.get(key);
+    return entry != null && entry.isExpired(System.currentTimeMillis());
+  }
+
+  @Override
+  protected long doGetExpirationTime(final String key) {
+    final CacheEntry entry = entries.get(key);
+    return entry != null ? entry.expires : -1;
+  }
+
+  @Override
+  protected void doPut(final String key, final Object element, final int expiration) {
+    final int timeToLive = expiration > -1 ? expiration : defaultTimeToLive;
+    // zero time to live means element never expires
+    final long expires = timeToLive > 0 ? System.currentTimeMillis() + timeToLive * 1000L : Long.MAX_VALUE;
+    if (entries.put(key, new CacheEntry(element, expires)) == null) {
+      count.incrementAndGet();
+      if (bound.size.incrementAndGet() > bound.maxSize) {
+        bound.evict();
+      }
+    }
+  }
+
+  @Override
+  protected boolean doRemove(final String key) {
+    if (entries.remove(key) != null) {
+      removed();
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean removeWithChildren(final String path) {
+    // same as the string prefix match of other implementations, "a/b" removes "a/bc" too
+    final String prefix = makeKeyFromPath(path);
+    return removeAll(prefix.isEmpty() ? entries : entries.subMap(prefix, prefix + Character.MAX_VALUE)) > 0;
+  }
+
+  @Override
+  protected boolean doPurge() {
+    return removeAll(entries) > 0;
+  }
+
+  @Override
+  public CacheStatistics getStatistics() {
+    return new CacheStatistics(count.get(), misses.get(), hits.get());
+  }
+
+  @Override
+  public Collection<String> listKeysInCache() {
+    final long now = System.currentTimeMillis();
+    final List<String> keys = new ArrayList<>();
+    for (Entry<String, CacheEntry> entry : entries.entrySet()) {
+      if (!entry.getValue().isExpired(now)) {
+        keys.add(entry.getKey());
+      }
+    }
+    return keys;
+  }
+
+  private void removed() {
+    count.decrementAndGet();
+    bound.size.decrementAndGet();
+  }
+
+  private void remove(final String key, final CacheEntry entry) {
+    if (entries.remove(key, entry)) {
+      removed();
+    }
+  }
+
+  private int removeAll(final Map<String, CacheEntry> view) {
+    int removed = 0;
+    for (String key : view.keySet()) {
+      if (entries.remove(key) != null) {
+        removed();
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  private void removeExpired(final long now) {
+    for (Entry<String, CacheEntry> entry : entries.entrySet()) {
+      if (entry.getValue().isExpired(now)) {
+        remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+}
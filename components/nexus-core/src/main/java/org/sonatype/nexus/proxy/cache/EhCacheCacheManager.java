@@ -12,20 +12,29 @@
  */
 package org.sonatype.nexus.proxy.cache;
 
+import java.util.concurrent.ConcurrentMap;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
 import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventPostRemove;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
+import com.google.common.collect.Maps;
 import com.google.common.eventbus.Subscribe;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * The Class EhCacheCacheManager is a thin wrapper around EhCache, just to make things going.
+ * The Class EhCacheCacheManager hands out path caches of repositories, and shuts EhCache down when Nexus stops.
+ *
+ * Path caches are {@link ConcurrentPathCache}s, one per repository, holding at most {@code maxSize} entries in total,
+ * so expiring a repository cache does not scan the caches of all other repositories. The cache of a repository is
+ * dropped once the repository is removed. Setting {@code useEhcache} goes back to views of the single shared EhCache.
  *
  * @author cstamas
  */
@@ -39,6 +48,22 @@ public class EhCacheCacheManager
 
   public static final String SINGLE_PATH_CACHE_NAME = "nx-repository-path-cache";
 
+  private static final boolean USE_EHCACHE = SystemPropertiesHelper.getBoolean(
+      EhCacheCacheManager.class.getName() + ".useEhcache", false);
+
+  private static final int MAX_SIZE = SystemPropertiesHelper.getInteger(
+      EhCacheCacheManager.class.getName() + ".maxSize", 100000);
+
+  /**
+   * Time to live in seconds of elements put without expiration, same as the EhCache configuration default.
+   */
+  private static final int DEFAULT_TIME_TO_LIVE = SystemPropertiesHelper.getInteger(
+      EhCacheCacheManager.class.getName() + ".defaultTimeToLive", 120);
+
+  private final ConcurrentMap<String, ConcurrentPathCache> pathCaches = Maps.newConcurrentMap();
+
+  private final ConcurrentPathCache.Bound pathCachesBound = new ConcurrentPathCache.Bound(MAX_SIZE);
+
   @Inject
   public EhCacheCacheManager(final EventBus eventBus, final net.sf.ehcache.CacheManager cacheManager) {
     eventBus.register(this);
@@ -46,6 +71,15 @@ public class EhCacheCacheManager
   }
 
   public synchronized PathCache getPathCache(String cache) {
+    if (!USE_EHCACHE) {
+      ConcurrentPathCache pathCache = pathCaches.get(cache);
+      if (pathCache == null) {
+        pathCache = pathCachesBound.newCache(DEFAULT_TIME_TO_LIVE);
+        pathCaches.put(cache, pathCache);
+      }
+      return pathCache;
+    }
+
     if (!cacheManager.cacheExists(SINGLE_PATH_CACHE_NAME)) {
       cacheManager.addCache(SINGLE_PATH_CACHE_NAME);
     }
@@ -53,6 +87,14 @@ public class EhCacheCacheManager
     return new EhCachePathCache(cache, cacheManager.getEhcache(SINGLE_PATH_CACHE_NAME));
   }
 
+  @Subscribe
+  public synchronized void on(final RepositoryRegistryEventPostRemove event) {
+    final ConcurrentPathCache pathCache = pathCaches.remove(event.getRepository().getId());
+    if (pathCache != null) {
+      pathCachesBound.remove(pathCache);
+    }
+  }
+
   @Subscribe
   public void on(final NexusStoppedEvent event) {
     cacheManager.shutdown();
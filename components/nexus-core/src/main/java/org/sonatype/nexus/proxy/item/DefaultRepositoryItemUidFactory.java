@@ -12,8 +12,7 @@
  */
 package org.sonatype.nexus.proxy.item;
 
-import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -27,6 +26,7 @@ import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 import org.sonatype.sisu.locks.ResourceLockFactory;
 
+import com.google.common.collect.MapMaker;
 import com.google.common.eventbus.Subscribe;
 import org.codehaus.plexus.util.StringUtils;
 import org.slf4j.Logger;
@@ -53,8 +53,12 @@ public class DefaultRepositoryItemUidFactory
 
   private final ResourceLockFactory sisuLockFactory;
 
-  private final WeakHashMap<DefaultRepositoryItemUidLock, WeakReference<DefaultRepositoryItemUidLock>> locks =
-      new WeakHashMap<DefaultRepositoryItemUidLock, WeakReference<DefaultRepositoryItemUidLock>>();
+  /**
+   * Registry of live UID locks, keyed by UID key. Values are weakly held: a lock stays registered for as long as any
+   * UID references it, and is lazily cleaned up once none does. The map is concurrent, so lookups of existing locks
+   * neither block nor allocate.
+   */
+  private final ConcurrentMap<String, DefaultRepositoryItemUidLock> locks = new MapMaker().weakValues().makeMap();
 
   @Inject
   public DefaultRepositoryItemUidFactory(final EventBus eventBus, final RepositoryRegistry repositoryRegistry,
@@ -110,12 +114,15 @@ public class DefaultRepositoryItemUidFactory
   
   @Override
   public DefaultRepositoryItemUidLock createUidLock(final RepositoryItemUid uid) {
-    final String key = new String(uid.getKey());
-
-    return doCreateUidLockForKey(key);
+    return doCreateUidLockForKey(uid.getKey());
   }
 
-  protected synchronized DefaultRepositoryItemUidLock doCreateUidLockForKey(final String key) {
+  protected DefaultRepositoryItemUidLock doCreateUidLockForKey(final String key) {
+    final DefaultRepositoryItemUidLock existingLock = locks.get(key);
+    if (existingLock != null) {
+      return existingLock;
+    }
+
     final LockResource lockResource;
     if (sisuLockFactory != null) {
       lockResource = new SisuLockResource(sisuLockFactory.getResourceLock(key));
@@ -124,16 +131,8 @@ public class DefaultRepositoryItemUidFactory
       lockResource = new SimpleLockResource();
     }
     final DefaultRepositoryItemUidLock newLock = new DefaultRepositoryItemUidLock(key, lockResource);
-    final WeakReference<DefaultRepositoryItemUidLock> oldLockRef = locks.get(newLock);
-    if (oldLockRef != null) {
-      final RepositoryItemUidLock oldLock = oldLockRef.get();
-
-      if (oldLock != null) {
-        return oldLockRef.get();
-      }
-    }
-    locks.put(newLock, new WeakReference<DefaultRepositoryItemUidLock>(newLock));
-    return newLock;
+    final DefaultRepositoryItemUidLock raceWinnerLock = locks.putIfAbsent(key, newLock);
+    return raceWinnerLock != null ? raceWinnerLock : newLock;
   }
 
   /**
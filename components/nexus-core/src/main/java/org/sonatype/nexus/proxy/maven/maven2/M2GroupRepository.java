@@ -24,6 +24,7 @@ import javax.enterprise.inject.Typed;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
 import org.sonatype.nexus.configuration.Configurator;
 import org.sonatype.nexus.configuration.model.CRepository;
 import org.sonatype.nexus.configuration.model.CRepositoryExternalConfigurationHolderFactory;
@@ -32,6 +33,10 @@ import org.sonatype.nexus.proxy.ItemNotFoundException;
 import org.sonatype.nexus.proxy.LocalStorageException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.StorageException;
+import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryGroupMembersChangedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventRetrieve;
 import org.sonatype.nexus.proxy.events.RepositoryItemValidationEvent;
 import org.sonatype.nexus.proxy.item.ByteArrayContentLocator;
 import org.sonatype.nexus.proxy.item.ContentLocator;
@@ -54,9 +59,13 @@ import org.sonatype.nexus.proxy.maven.metadata.operations.MetadataOperation;
 import org.sonatype.nexus.proxy.maven.metadata.operations.NexusMergeOperation;
 import org.sonatype.nexus.proxy.registry.ContentClass;
 import org.sonatype.nexus.proxy.repository.GroupRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.storage.UnsupportedStorageOperationException;
 import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
+import org.sonatype.nexus.proxy.walker.WalkerFilter;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.eventbus.Subscribe;
 import com.google.common.hash.Hashing;
 import org.apache.maven.artifact.repository.metadata.Metadata;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
@@ -76,6 +85,12 @@ public class M2GroupRepository
    */
   public static final String ID = Maven2ContentClass.ID;
 
+  /**
+   * Maximum total size, in bytes, of merged metadata cached per group.
+   */
+  private static final long MERGED_METADATA_CACHE_MAX_BYTES = SystemPropertiesHelper.getLong(
+      M2GroupRepository.class.getName() + ".mergedMetadataCacheMaxBytes", 10L * 1024 * 1024);
+
   private final ContentClass contentClass;
 
   /**
@@ -88,6 +103,11 @@ public class M2GroupRepository
    */
   private final M2GroupRepositoryConfigurator m2GroupRepositoryConfigurator;
 
+  /**
+   * Merged metadata of this group, reused as long as the member items it was merged from did not change.
+   */
+  private final MergedMetadataCache mergedMetadataCache = new MergedMetadataCache(MERGED_METADATA_CACHE_MAX_BYTES);
+
   @Inject
   public M2GroupRepository(final @Named(Maven2ContentClass.ID) ContentClass contentClass, 
                            final @Named("maven2") GavCalculator gavCalculator,
@@ -133,6 +153,46 @@ public class M2GroupRepository
     return M2ArtifactRecognizer.isMetadata(path);
   }
 
+  /**
+   * Drops merged metadata when a (member) repository changes a metadata item on the same path. Events of unrelated
+   * repositories might drop an entry needlessly, which only costs a re-merge.
+   */
+  @Subscribe
+  public void onEvent(final RepositoryItemEvent evt) {
+    if (!(evt instanceof RepositoryItemEventRetrieve) && M2ArtifactRecognizer.isMetadata(evt.getItem().getPath())) {
+      mergedMetadataCache.invalidate(evt.getItem().getPath());
+    }
+  }
+
+  @Subscribe
+  public void onEvent(final RepositoryGroupMembersChangedEvent evt) {
+    if (evt.getGroupRepository() == this) {
+      mergedMetadataCache.invalidateAll();
+    }
+  }
+
+  /**
+   * Repository policy of members affects how their metadata is filtered before merge.
+   */
+  @Subscribe
+  public void onEvent(final RepositoryConfigurationUpdatedEvent evt) {
+    Repository repository = evt.getRepository();
+    if (repository == this || getTransitiveMemberRepositoryIds().contains(repository.getId())) {
+      mergedMetadataCache.invalidateAll();
+    }
+  }
+
+  @VisibleForTesting
+  MergedMetadataCache getMergedMetadataCache() {
+    return mergedMetadataCache;
+  }
+
+  @Override
+  protected boolean doExpireCaches(final ResourceStoreRequest request, final WalkerFilter filter) {
+    mergedMetadataCache.invalidateAll();
+    return super.doExpireCaches(request, filter);
+  }
+
   @Override
   protected StorageItem doRetrieveItem(ResourceStoreRequest request)
       throws IllegalOperationException, ItemNotFoundException, StorageException
@@ -216,6 +276,20 @@ public class M2GroupRepository
       return items.get(0);
     }
 
+    List<String> sources = MergedMetadataCache.sourcesOf(items);
+    MergedMetadataCache.Entry cached = mergedMetadataCache.get(request.getRequestPath(), sources);
+    if (cached != null) {
+      log.debug("Item for path {} served from merged metadata cache", request);
+      try {
+        restoreMergedMetadataItemDigest(request, cached.getMd5(), items, "MD5");
+        restoreMergedMetadataItemDigest(request, cached.getSha1(), items, "SHA1");
+      }
+      catch (IOException e) {
+        throw new LocalStorageException("Got IOException during M2 metadata checksum restore.", e);
+      }
+      return createMergedMetadataItem(request, cached.getContent(), items);
+    }
+
     List<Metadata> existingMetadatas = new ArrayList<Metadata>();
 
     try {
@@ -290,6 +364,9 @@ public class M2GroupRepository
       storeMergedMetadataItemDigest(request, md5Digest, items, "MD5");
       storeMergedMetadataItemDigest(request, sha1Digest, items, "SHA1");
 
+      mergedMetadataCache.put(request.getRequestPath(),
+          new MergedMetadataCache.Entry(sources, resultOutputStream.toByteArray(), md5Digest, sha1Digest));
+
       resultOutputStream.close();
 
       if (log.isDebugEnabled()) {
@@ -309,6 +386,19 @@ public class M2GroupRepository
     }
   }
 
+  /**
+   * Stores the digest of cached merged metadata again if its checksum item was removed (or evicted) meanwhile.
+   */
+  private void restoreMergedMetadataItemDigest(ResourceStoreRequest request, String digest,
+                                               List<StorageItem> sources, String algorithm)
+      throws IOException, UnsupportedStorageOperationException, IllegalOperationException
+  {
+    String digestFileName = request.getRequestPath() + "." + algorithm.toLowerCase();
+    if (!getLocalStorage().containsItem(this, new ResourceStoreRequest(digestFileName))) {
+      storeMergedMetadataItemDigest(request, digest, sources, algorithm);
+    }
+  }
+
   protected void storeMergedMetadataItemDigest(ResourceStoreRequest request, String digest,
                                                List<StorageItem> sources, String algorithm)
       throws IOException, UnsupportedStorageOperationException, IllegalOperationException
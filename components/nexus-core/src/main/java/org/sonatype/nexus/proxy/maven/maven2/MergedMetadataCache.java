@@ -0,0 +1,155 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.maven2;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.maven.gav.M2ArtifactRecognizer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Cache of merged maven-metadata.xml content (and its digests) of a group, keyed by request path.
+ *
+ * Every entry remembers the member items it was merged from (UID, modification time, length and SHA1), and is only
+ * served if the items found on a later request are exactly the same. Entries are also dropped eagerly when member
+ * items on the path change. The cache is bounded by the total size of cached content, not by the number of paths.
+ *
+ * @since 3.0
+ */
+class MergedMetadataCache
+{
+  /**
+   * Merged metadata content and digests, along with the signature of the sources it was built from.
+   */
+  static class Entry
+  {
+    private final List<String> sources;
+
+    private final byte[] content;
+
+    private final String md5;
+
+    private final String sha1;
+
+    Entry(final List<String> sources, final byte[] content, final String md5, final String sha1) {
+      this.sources = checkNotNull(sources);
+      this.content = checkNotNull(content);
+      this.md5 = checkNotNull(md5);
+      this.sha1 = checkNotNull(sha1);
+    }
+
+    byte[] getContent() {
+      return content;
+    }
+
+    String getMd5() {
+      return md5;
+    }
+
+    String getSha1() {
+      return sha1;
+    }
+
+    /**
+     * Approximate retained size in bytes: the content plus the (character) size of digests and sources.
+     */
+    int weight() {
+      int weight = content.length + 2 * (md5.length() + sha1.length());
+      for (String source : sources) {
+        weight += 2 * source.length();
+      }
+      return weight;
+    }
+  }
+
+  private final Cache<String, Entry> entries;
+
+  /**
+   * @param maximumWeight maximum total size, in bytes, of cached entries
+   */
+  MergedMetadataCache(final long maximumWeight) {
+    this.entries = CacheBuilder.newBuilder()
+        .maximumWeight(maximumWeight)
+        .weigher(new Weigher<String, Entry>()
+        {
+          @Override
+          public int weigh(final String path, final Entry entry) {
+            return 2 * path.length() + entry.weight();
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Returns the cached merge result for path, if it was built from exactly the given sources.
+   */
+  @Nullable
+  Entry get(final String path, final List<String> sources) {
+    Entry entry = entries.getIfPresent(path);
+    if (entry != null && entry.sources.equals(sources)) {
+      return entry;
+    }
+    return null;
+  }
+
+  void put(final String path, final Entry entry) {
+    entries.put(path, entry);
+  }
+
+  /**
+   * Drops the entry of given metadata path; checksum paths invalidate the metadata they belong to.
+   */
+  void invalidate(final String path) {
+    if (M2ArtifactRecognizer.isChecksum(path)) {
+      entries.invalidate(path.substring(0, path.lastIndexOf('.')));
+    }
+    else {
+      entries.invalidate(path);
+    }
+  }
+
+  void invalidateAll() {
+    entries.invalidateAll();
+  }
+
+  long size() {
+    return entries.size();
+  }
+
+  /**
+   * Builds the source signature of the given member items, in member order.
+   */
+  static List<String> sourcesOf(final List<StorageItem> items) {
+    List<String> sources = Lists.newArrayListWithCapacity(items.size());
+    for (StorageItem item : items) {
+      StringBuilder source = new StringBuilder(item.getRepositoryItemUid().toString())
+          .append('@').append(item.getModified());
+      if (item instanceof StorageFileItem) {
+        source.append(':').append(((StorageFileItem) item).getLength())
+            .append(':').append(item.getRepositoryItemAttributes().get(StorageFileItem.DIGEST_SHA1_KEY));
+      }
+      sources.add(source.toString());
+    }
+    return sources;
+  }
+}
@@ -65,6 +65,9 @@ public class DefaultTargetRegistry
   // eagerly rebuilt on every configuration change
   private Map<String, Target> targets;
 
+  // matcher over the "live" targets, rebuilt with the view
+  private volatile TargetMatcher targetMatcher;
+
   @Inject
   public DefaultTargetRegistry(EventBus eventBus,
                                ApplicationConfiguration applicationConfiguration,
@@ -116,6 +119,7 @@ public class DefaultTargetRegistry
         }
       }
       targets = newView;
+      targetMatcher = new TargetMatcher(newView.values());
     }
   }
 
@@ -216,13 +220,7 @@ public class DefaultTargetRegistry
   public Set<Target> getTargetsForContentClassPath(ContentClass contentClass, String path) {
     log.debug("Resolving targets for contentClass='{}' for path='{}'", contentClass.getId(), path);
 
-    final Set<Target> result = new HashSet<Target>();
-    for (Target t : getRepositoryTargets()) {
-      if (t.isPathContained(contentClass, path)) {
-        result.add(t);
-      }
-    }
-    return result;
+    return new HashSet<Target>(targetMatcher.getTargets(contentClass, path));
   }
 
   @Override
@@ -230,10 +228,8 @@ public class DefaultTargetRegistry
     log.debug("Resolving targets for repository='{}' for path='{}'", repository.getId(), path);
 
     final TargetSet result = new TargetSet();
-    for (Target t : getRepositoryTargets()) {
-      if (t.isPathContained(repository.getRepositoryContentClass(), path)) {
-        result.addTargetMatch(new TargetMatch(t, repository));
-      }
+    for (Target t : targetMatcher.getTargets(repository.getRepositoryContentClass(), path)) {
+      result.addTargetMatch(new TargetMatch(t, repository));
     }
     return result;
   }
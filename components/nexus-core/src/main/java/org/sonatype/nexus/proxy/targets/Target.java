@@ -77,11 +77,7 @@ public class Target
   }
 
   public boolean isPathContained(ContentClass contentClass, String path) {
-    // if is the same or is compatible
-    // make sure to check the inverse of the isCompatible too !!
-    if (StringUtils.equals(getContentClass().getId(), contentClass.getId())
-        || getContentClass().isCompatible(contentClass)
-        || contentClass.isCompatible(getContentClass())) {
+    if (isContentClassCompatible(contentClass)) {
       // look for pattern matching
       for (Pattern pattern : patterns) {
         if (pattern.matcher(path).matches()) {
@@ -93,4 +89,18 @@ public class Target
     return false;
   }
 
+  /**
+   * Returns {@code true} if paths of given content class may be contained in this target.
+   */
+  boolean isContentClassCompatible(ContentClass contentClass) {
+    // if is the same or is compatible
+    // make sure to check the inverse of the isCompatible too !!
+    return StringUtils.equals(getContentClass().getId(), contentClass.getId())
+        || getContentClass().isCompatible(contentClass)
+        || contentClass.isCompatible(getContentClass());
+  }
+
+  Set<Pattern> getPatterns() {
+    return Collections.unmodifiableSet(patterns);
+  }
 }
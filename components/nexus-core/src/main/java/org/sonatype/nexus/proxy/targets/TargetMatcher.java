@@ -0,0 +1,190 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.targets;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
+import org.sonatype.nexus.proxy.registry.ContentClass;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Matches paths against the patterns of a fixed set of {@link Target}s.
+ *
+ * Patterns are indexed in a trie by their literal prefix, so only patterns whose prefix is a prefix of the path are
+ * evaluated, and a target is not evaluated any further once one of its patterns matched. Results are cached per
+ * content class and path. Instances are immutable, and are to be replaced when targets change.
+ *
+ * @since 3.0
+ */
+class TargetMatcher
+{
+  private static final int CACHE_SIZE = SystemPropertiesHelper.getInteger(
+      TargetMatcher.class.getName() + ".cacheSize", 10000);
+
+  private static final String META_CHARACTERS = "\\.[]{}()*+?^$|";
+
+  private static final String QUANTIFIERS = "?*+{";
+
+  /**
+   * Pattern of a target.
+   */
+  private static class Entry
+  {
+    private final int target;
+
+    private final Pattern pattern;
+
+    private Entry(final int target, final Pattern pattern) {
+      this.target = target;
+      this.pattern = pattern;
+    }
+  }
+
+  /**
+   * Trie node, holding the patterns having the path to this node as literal prefix.
+   */
+  private static class Node
+  {
+    private final Map<Character, Node> children = Maps.newHashMap();
+
+    private final List<Entry> entries = Lists.newArrayList();
+
+    private Node child(final char c) {
+      Node child = children.get(c);
+      if (child == null) {
+        child = new Node();
+        children.put(c, child);
+      }
+      return child;
+    }
+  }
+
+  private final List<Target> targets;
+
+  private final Node root = new Node();
+
+  private final ConcurrentMap<String, BitSet> compatibleTargets = Maps.newConcurrentMap();
+
+  private final Cache<String, List<Target>> cache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+  TargetMatcher(final Collection<Target> targets) {
+    this.targets = ImmutableList.copyOf(targets);
+    for (int i = 0; i < this.targets.size(); i++) {
+      for (Pattern pattern : this.targets.get(i).getPatterns()) {
+        Node node = root;
+        for (char c : literalPrefix(pattern.pattern()).toCharArray()) {
+          node = node.child(c);
+        }
+        node.entries.add(new Entry(i, pattern));
+      }
+    }
+  }
+
+  /**
+   * Returns the targets containing given path of given content class, same as calling
+   * {@link Target#isPathContained(ContentClass, String)} on each of them.
+   */
+  List<Target> getTargets(final ContentClass contentClass, final String path) {
+    final String key = contentClass.getId() + ':' + path;
+    List<Target> result = cache.getIfPresent(key);
+    if (result == null) {
+      result = match(contentClass, path);
+      cache.put(key, result);
+    }
+    return result;
+  }
+
+  private List<Target> match(final ContentClass contentClass, final String path) {
+    final BitSet candidates = (BitSet) getCompatibleTargets(contentClass).clone();
+    final BitSet matched = new BitSet(targets.size());
+    Node node = root;
+    int i = 0;
+    while (node != null && !candidates.isEmpty()) {
+      for (Entry entry : node.entries) {
+        if (candidates.get(entry.target) && entry.pattern.matcher(path).matches()) {
+          candidates.clear(entry.target);
+          matched.set(entry.target);
+        }
+      }
+      node = i < path.length() ? node.children.get(path.charAt(i++)) : null;
+    }
+
+    final ImmutableList.Builder<Target> result = ImmutableList.builder();
+    for (int target = matched.nextSetBit(0); target >= 0; target = matched.nextSetBit(target + 1)) {
+      result.add(targets.get(target));
+    }
+    return result.build();
+  }
+
+  private BitSet getCompatibleTargets(final ContentClass contentClass) {
+    BitSet compatible = compatibleTargets.get(contentClass.getId());
+    if (compatible == null) {
+      compatible = new BitSet(targets.size());
+      for (int i = 0; i < targets.size(); i++) {
+        if (targets.get(i).isContentClassCompatible(contentClass)) {
+          compatible.set(i);
+        }
+      }
+      compatibleTargets.put(contentClass.getId(), compatible);
+    }
+    return compatible;
+  }
+
+  /**
+   * Returns the literal text every string matching given regular expression starts with, which may be empty.
+   */
+  @VisibleForTesting
+  static String literalPrefix(final String regex) {
+    if (regex.indexOf('|') >= 0) {
+      // alternatives might not share any prefix
+      return "";
+    }
+    final StringBuilder prefix = new StringBuilder();
+    int i = regex.startsWith("^") ? 1 : 0;
+    while (i < regex.length()) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        // escaped non alphanumerics are literals, others are classes or quotes
+        if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+          break;
+        }
+        c = regex.charAt(i + 1);
+        i += 2;
+      }
+      else if (META_CHARACTERS.indexOf(c) >= 0) {
+        break;
+      }
+      else {
+        i++;
+      }
+      if (i < regex.length() && QUANTIFIERS.indexOf(regex.charAt(i)) >= 0) {
+        // character is optional or repeated
+        break;
+      }
+      prefix.append(c);
+    }
+    return prefix.toString();
+  }
+}
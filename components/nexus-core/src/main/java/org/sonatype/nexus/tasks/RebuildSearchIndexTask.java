@@ -0,0 +1,55 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.tasks;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.manager.RepositoryManager;
+import org.sonatype.nexus.repository.search.SearchFacet;
+import org.sonatype.nexus.scheduling.TaskSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Rebuilds the component search index of a repository from its storage.
+ *
+ * @since 3.0
+ */
+@Named
+public class RebuildSearchIndexTask
+    extends TaskSupport
+{
+  private final RepositoryManager repositoryManager;
+
+  @Inject
+  public RebuildSearchIndexTask(final RepositoryManager repositoryManager) {
+    this.repositoryManager = checkNotNull(repositoryManager);
+  }
+
+  @Override
+  protected Void execute() throws Exception {
+    String repositoryName = getConfiguration().getRepositoryId();
+    Repository repository = repositoryManager.get(repositoryName);
+    checkArgument(repository != null, "Repository %s does not exist", repositoryName);
+    repository.facet(SearchFacet.class).rebuildIndex();
+    return null;
+  }
+
+  @Override
+  public String getMessage() {
+    return "Rebuilding search index of repository " + getConfiguration().getRepositoryId();
+  }
+}
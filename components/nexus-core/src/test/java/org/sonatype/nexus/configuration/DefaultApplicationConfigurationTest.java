@@ -13,15 +13,23 @@
 package org.sonatype.nexus.configuration;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.List;
 
 import org.sonatype.nexus.NexusAppTestSupport;
 import org.sonatype.nexus.configuration.model.CRepository;
 import org.sonatype.nexus.configuration.model.Configuration;
 import org.sonatype.nexus.email.NexusEmailer;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventAdd;
 import org.sonatype.nexus.proxy.repository.DefaultRemoteHttpProxySettings;
+import org.sonatype.nexus.proxy.repository.GroupRepository;
 import org.sonatype.nexus.proxy.repository.LocalStatus;
+import org.sonatype.nexus.proxy.repository.ShadowRepository;
 import org.sonatype.nexus.security.SecuritySystem;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
 
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.Subscribe;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
@@ -172,6 +180,44 @@ public class DefaultApplicationConfigurationTest
     assertTrue(nexusConfiguration.getConfigurationModel() != null);
   }
 
+  @Test
+  public void testRepositoriesAreRegisteredInConfigurationOrder()
+      throws Exception
+  {
+    // plain repositories are instantiated in parallel, but registered in order, followed by shadows and then groups
+    final List<String> expected = Lists.newArrayList();
+    final List<String> shadows = Lists.newArrayList();
+    final List<String> groups = Lists.newArrayList();
+    for (CRepository repo : nexusConfiguration.getConfigurationModel().getRepositories()) {
+      if (GroupRepository.class.getName().equals(repo.getProviderRole())) {
+        groups.add(repo.getId());
+      }
+      else if (ShadowRepository.class.getName().equals(repo.getProviderRole())) {
+        shadows.add(repo.getId());
+      }
+      else {
+        expected.add(repo.getId());
+      }
+    }
+    expected.addAll(shadows);
+    expected.addAll(groups);
+    assertTrue(expected.size() > 1);
+
+    final List<String> registered = Collections.synchronizedList(Lists.<String>newArrayList());
+    lookup(EventBus.class).register(new Object()
+    {
+      @Subscribe
+      public void onEvent(final RepositoryRegistryEventAdd evt) {
+        registered.add(evt.getRepository().getId());
+      }
+    });
+
+    nexusConfiguration.dropInternals();
+    nexusConfiguration.createInternals();
+
+    assertEquals(expected, registered);
+  }
+
   @Test
   public void testNEXUS2212SaveInvalidConfig()
       throws Exception
@@ -0,0 +1,140 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.events;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Provider;
+
+import org.sonatype.nexus.proxy.events.RepositoryEvent;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.Subscribe;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link EventSubscriberHost}.
+ */
+public class EventSubscriberHostTest
+    extends TestSupport
+{
+  private EventSubscriberHost underTest;
+
+  @Before
+  public void prepare() throws Exception {
+    underTest = new EventSubscriberHost(mock(EventBus.class), Collections.<Provider<EventSubscriber>>emptyList());
+    underTest.start();
+  }
+
+  @After
+  public void cleanup() throws Exception {
+    if (underTest != null) {
+      underTest.stop();
+      underTest = null;
+    }
+  }
+
+  @Test
+  public void eventsOfRepositoryAreHandledInOrder() throws Exception {
+    final RecordingSubscriber subscriber = new RecordingSubscriber();
+    underTest.register(subscriber);
+
+    final Repository repository = mock(Repository.class);
+    when(repository.getId()).thenReturn("repo");
+    final List<TestRepositoryEvent> posted = Lists.newArrayList();
+    for (int i = 0; i < 100; i++) {
+      final TestRepositoryEvent event = new TestRepositoryEvent(repository);
+      posted.add(event);
+      underTest.onEvent(event);
+    }
+    waitForCalmPeriod();
+
+    assertThat(subscriber.repositoryEvents, contains(posted.toArray()));
+  }
+
+  @Test
+  public void onlyHandledEventsAreDispatched() throws Exception {
+    final RecordingSubscriber subscriber = new RecordingSubscriber();
+    underTest.register(subscriber);
+
+    underTest.onEvent("not handled");
+    underTest.onEvent(1);
+    underTest.onEvent(2);
+    waitForCalmPeriod();
+
+    assertThat(subscriber.repositoryEvents, is(empty()));
+    assertThat(subscriber.numbers, containsInAnyOrder((Number) 1, 2));
+    assertThat(EventSubscriberHost.eventTypesOf(RecordingSubscriber.class),
+        Matchers.<Class<?>>containsInAnyOrder(RepositoryEvent.class, Number.class));
+  }
+
+  @Test
+  public void unregisteredSubscriberIsNotInvoked() throws Exception {
+    final RecordingSubscriber subscriber = new RecordingSubscriber();
+    underTest.register(subscriber);
+    underTest.unregister(subscriber);
+
+    underTest.onEvent(1);
+    waitForCalmPeriod();
+
+    assertThat(subscriber.numbers, is(empty()));
+  }
+
+  private void waitForCalmPeriod() throws InterruptedException {
+    while (!underTest.isCalmPeriod()) {
+      Thread.sleep(10);
+    }
+  }
+
+  private static class TestRepositoryEvent
+      extends RepositoryEvent
+  {
+    private TestRepositoryEvent(final Repository repository) {
+      super(repository);
+    }
+  }
+
+  private static class RecordingSubscriber
+      implements EventSubscriber, Asynchronous
+  {
+    private final List<RepositoryEvent> repositoryEvents = Collections.synchronizedList(
+        Lists.<RepositoryEvent>newArrayList());
+
+    private final List<Number> numbers = Collections.synchronizedList(Lists.<Number>newArrayList());
+
+    @Subscribe
+    public void on(final RepositoryEvent event) {
+      repositoryEvents.add(event);
+    }
+
+    @Subscribe
+    public void on(final Number number) {
+      numbers.add(number);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.cache;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Tests for {@link ConcurrentPathCache}.
+ */
+public class ConcurrentPathCacheTest
+    extends TestSupport
+{
+  private final ConcurrentPathCache.Bound bound = new ConcurrentPathCache.Bound(1000);
+
+  @Test
+  public void removeWithChildrenLeavesOtherSubtrees() {
+    ConcurrentPathCache underTest = bound.newCache(120);
+    underTest.put("/com/sonatype", Boolean.TRUE);
+    underTest.put("/com/sonatype/nexus", Boolean.TRUE);
+    underTest.put("/com/sonatypex", Boolean.TRUE);
+    underTest.put("/org/sonatype", Boolean.TRUE);
+
+    assertThat(underTest.removeWithChildren("/com/sonatype/"), is(true));
+
+    // string prefix, as EhCache implementation did
+    assertThat(underTest.listKeysInCache(), containsInAnyOrder("org/sonatype"));
+    assertThat(bound.size(), equalTo(1));
+    assertThat(underTest.removeWithChildren("/com"), is(false));
+
+    assertThat(underTest.purge(), is(true));
+    assertThat(underTest.contains("/org/sonatype"), is(false));
+    assertThat(bound.size(), equalTo(0));
+  }
+
+  @Test
+  public void expiredEntriesAreNotReported() throws Exception {
+    ConcurrentPathCache underTest = bound.newCache(120);
+    underTest.put("/expiring", Boolean.TRUE, 1);
+    underTest.put("/eternal", Boolean.TRUE, 0);
+    underTest.put("/default", Boolean.TRUE);
+
+    assertThat(underTest.contains("/expiring"), is(true));
+    assertThat(underTest.getExpirationTime("/eternal"), equalTo(Long.MAX_VALUE));
+    assertThat(underTest.getExpirationTime("/default") > System.currentTimeMillis() + 60000L, is(true));
+
+    Thread.sleep(1100L);
+
+    assertThat(underTest.isExpired("/expiring"), is(true));
+    assertThat(underTest.listKeysInCache(), containsInAnyOrder("eternal", "default"));
+    assertThat(underTest.contains("/expiring"), is(false));
+    assertThat(underTest.isExpired("/expiring"), is(false));
+    assertThat(underTest.getStatistics().getSize(), equalTo(2L));
+  }
+
+  @Test
+  public void sizeIsBoundedAcrossCaches() {
+    ConcurrentPathCache.Bound bound = new ConcurrentPathCache.Bound(100);
+    ConcurrentPathCache cache1 = bound.newCache(120);
+    ConcurrentPathCache cache2 = bound.newCache(120);
+    for (int i = 0; i < 80; i++) {
+      cache1.put("/one/" + i, Boolean.TRUE);
+    }
+    for (int i = 0; i < 80; i++) {
+      cache2.put("/two/" + i, Boolean.TRUE);
+    }
+
+    assertThat(bound.size(), lessThanOrEqualTo(100));
+    assertThat(cache2.contains("/two/79"), is(true));
+    assertThat(cache1.getStatistics().getSize() + cache2.getStatistics().getSize(), equalTo((long) bound.size()));
+  }
+
+  @Test
+  public void evictionDropsEntriesExpiringFirstAcrossCaches() {
+    ConcurrentPathCache.Bound bound = new ConcurrentPathCache.Bound(100);
+    ConcurrentPathCache cache1 = bound.newCache(120);
+    ConcurrentPathCache cache2 = bound.newCache(120);
+    // entries of the first cache expire first, no matter which cache overflows
+    for (int i = 0; i < 50; i++) {
+      cache1.put("/one/" + i, Boolean.TRUE, 60);
+    }
+    for (int i = 0; i < 51; i++) {
+      cache2.put("/two/" + i, Boolean.TRUE, 0);
+    }
+
+    assertThat(bound.size(), lessThanOrEqualTo(90));
+    assertThat(cache2.getStatistics().getSize(), equalTo(51L));
+    assertThat(cache1.getStatistics().getSize(), equalTo((long) bound.size() - 51));
+  }
+
+  @Test
+  public void removedCacheIsPurgedAndReleasesItsEntries() {
+    ConcurrentPathCache.Bound bound = new ConcurrentPathCache.Bound(100);
+    ConcurrentPathCache cache1 = bound.newCache(120);
+    ConcurrentPathCache cache2 = bound.newCache(120);
+    cache1.put("/one", Boolean.TRUE);
+    cache2.put("/two", Boolean.TRUE);
+
+    bound.remove(cache1);
+
+    assertThat(cache1.contains("/one"), is(false));
+    assertThat(bound.size(), equalTo(1));
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.item;
+
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.group.Perf;
+
+import org.junit.experimental.categories.Category;
+
+/**
+ * Performance tests for the {@link DefaultRepositoryItemUidFactory} lock registry.
+ */
+@Category(Perf.class)
+public class DefaultRepositoryItemUidFactoryPerf
+    extends RepositoryItemUidLockRegistryPerfSupport
+{
+  @Override
+  protected DefaultRepositoryItemUidFactory createTestSubject(final EventBus eventBus,
+                                                              final RepositoryRegistry repositoryRegistry)
+  {
+    return new DefaultRepositoryItemUidFactory(eventBus, repositoryRegistry, null);
+  }
+}
@@ -23,6 +23,8 @@ import org.junit.Test;
 import org.mockito.Mock;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.when;
 
@@ -86,4 +88,15 @@ public class DefaultRepositoryItemUidFactoryTest
   public void createUidNotOk2() {
     subject.createUid(repository, "a/b/../c/../../../");
   }
+
+  @Test
+  public void sameKeySharesLock() {
+    subject = new DefaultRepositoryItemUidFactory(eventBus, repositoryRegistry, null);
+    final RepositoryItemUid uid1 = subject.createUid(repository, "/foo/baz/file.txt");
+    final RepositoryItemUid uid2 = subject.createUid(repository, "foo/baz/file.txt");
+    final RepositoryItemUid other = subject.createUid(repository, "/foo/baz/other.txt");
+
+    assertThat(uid1.getLock(), sameInstance(uid2.getLock()));
+    assertThat(uid1.getLock(), not(sameInstance(other.getLock())));
+  }
 }
@@ -0,0 +1,102 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.item;
+
+import java.util.Random;
+
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.databene.contiperf.PerfTest;
+import org.databene.contiperf.junit.ContiPerfRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Support for UID lock registry throughput tests, resolving locks for a fixed set of hot paths at 1 to 64 threads.
+ */
+public abstract class RepositoryItemUidLockRegistryPerfSupport
+    extends TestSupport
+{
+  private static final int INVOCATIONS = 1000000;
+
+  private static final int PATHS = 1000;
+
+  @Rule
+  public ContiPerfRule perfRule = new ContiPerfRule();
+
+  private final Random random = new Random();
+
+  private DefaultRepositoryItemUidFactory underTest;
+
+  private Repository repository;
+
+  private RepositoryItemUid[] hotUids;
+
+  @Before
+  public void setUp() throws Exception {
+    underTest = createTestSubject(mock(EventBus.class), mock(RepositoryRegistry.class));
+    repository = mock(Repository.class);
+    when(repository.getId()).thenReturn("repoid");
+
+    // keep locks of the hot paths strongly reachable, as uids of items being served would
+    hotUids = new RepositoryItemUid[PATHS];
+    for (int i = 0; i < PATHS; i++) {
+      hotUids[i] = underTest.createUid(repository, "/org/example/artifact/" + i + "/artifact-" + i + ".jar");
+      hotUids[i].getLock();
+    }
+
+    // prime jvm byte code optimization (maybe, we hope)
+    for (int i = 0; i < 10000; i++) {
+      resolveLock();
+    }
+  }
+
+  protected abstract DefaultRepositoryItemUidFactory createTestSubject(EventBus eventBus,
+                                                                       RepositoryRegistry repositoryRegistry);
+
+  private void resolveLock() {
+    RepositoryItemUid hotUid = hotUids[random.nextInt(PATHS)];
+    underTest.createUidLock(underTest.createUid(repository, hotUid.getPath()));
+  }
+
+  @Test
+  @PerfTest(invocations = INVOCATIONS, threads = 1)
+  public void threads1() {
+    resolveLock();
+  }
+
+  @Test
+  @PerfTest(invocations = INVOCATIONS, threads = 4)
+  public void threads4() {
+    resolveLock();
+  }
+
+  @Test
+  @PerfTest(invocations = INVOCATIONS, threads = 16)
+  public void threads16() {
+    resolveLock();
+  }
+
+  @Test
+  @PerfTest(invocations = INVOCATIONS, threads = 64)
+  public void threads64() {
+    resolveLock();
+  }
+}
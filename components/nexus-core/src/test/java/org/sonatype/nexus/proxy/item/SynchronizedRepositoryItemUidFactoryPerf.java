@@ -0,0 +1,57 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.item;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.group.Perf;
+
+import org.junit.experimental.categories.Category;
+
+/**
+ * Baseline for {@link DefaultRepositoryItemUidFactoryPerf}: the former lock registry, a synchronized
+ * {@link WeakHashMap} allocating a candidate lock on every lookup.
+ */
+@Category(Perf.class)
+public class SynchronizedRepositoryItemUidFactoryPerf
+    extends RepositoryItemUidLockRegistryPerfSupport
+{
+  @Override
+  protected DefaultRepositoryItemUidFactory createTestSubject(final EventBus eventBus,
+                                                              final RepositoryRegistry repositoryRegistry)
+  {
+    return new DefaultRepositoryItemUidFactory(eventBus, repositoryRegistry, null)
+    {
+      private final WeakHashMap<DefaultRepositoryItemUidLock, WeakReference<DefaultRepositoryItemUidLock>> locks =
+          new WeakHashMap<DefaultRepositoryItemUidLock, WeakReference<DefaultRepositoryItemUidLock>>();
+
+      @Override
+      protected synchronized DefaultRepositoryItemUidLock doCreateUidLockForKey(final String key) {
+        final DefaultRepositoryItemUidLock newLock =
+            new DefaultRepositoryItemUidLock(new String(key), new SimpleLockResource());
+        final WeakReference<DefaultRepositoryItemUidLock> oldLockRef = locks.get(newLock);
+        if (oldLockRef != null) {
+          final DefaultRepositoryItemUidLock oldLock = oldLockRef.get();
+          if (oldLock != null) {
+            return oldLock;
+          }
+        }
+        locks.put(newLock, new WeakReference<DefaultRepositoryItemUidLock>(newLock));
+        return newLock;
+      }
+    };
+  }
+}
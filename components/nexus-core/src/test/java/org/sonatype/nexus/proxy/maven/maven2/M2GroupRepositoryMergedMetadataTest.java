@@ -0,0 +1,95 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.maven2;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.sonatype.nexus.proxy.AbstractProxyTestEnvironment;
+import org.sonatype.nexus.proxy.EnvironmentBuilder;
+import org.sonatype.nexus.proxy.M2TestsuiteEnvironmentBuilder;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.repository.Repository;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for merged metadata caching of {@link M2GroupRepository}.
+ */
+public class M2GroupRepositoryMergedMetadataTest
+    extends AbstractProxyTestEnvironment
+{
+  private static final String MD_PATH = "/md-merge/checksum/maven-metadata.xml";
+
+  @Override
+  protected EnvironmentBuilder getEnvironmentBuilder()
+      throws Exception
+  {
+    return new M2TestsuiteEnvironmentBuilder("repo1", "repo2", "repo3", "repo1-snapshot", "repo2-snapshot", "repo3-snapshot");
+  }
+
+  @Test
+  public void cachedMergeRestoresRemovedChecksums()
+      throws Exception
+  {
+    M2GroupRepository group = group();
+    byte[] merged = retrieve(group, MD_PATH);
+    assertEquals(1, group.getMergedMetadataCache().size());
+
+    // remove checksums behind the back of the group, no events are fired
+    group.getLocalStorage().shredItem(group, new ResourceStoreRequest(MD_PATH + ".md5"));
+    group.getLocalStorage().shredItem(group, new ResourceStoreRequest(MD_PATH + ".sha1"));
+
+    assertTrue(Arrays.equals(merged, retrieve(group, MD_PATH)));
+    assertEquals(1, group.getMergedMetadataCache().size());
+
+    assertEquals(Hashing.md5().hashBytes(merged).toString(), new String(retrieve(group, MD_PATH + ".md5"), "UTF-8").trim());
+    assertEquals(Hashing.sha1().hashBytes(merged).toString(), new String(retrieve(group, MD_PATH + ".sha1"), "UTF-8").trim());
+  }
+
+  @Test
+  public void configurationUpdateOfUnrelatedRepositoryKeepsCache()
+      throws Exception
+  {
+    M2GroupRepository group = group();
+    retrieve(group, MD_PATH);
+    assertEquals(1, group.getMergedMetadataCache().size());
+
+    Repository unrelated = mock(Repository.class);
+    when(unrelated.getId()).thenReturn("unrelated");
+    group.onEvent(new RepositoryConfigurationUpdatedEvent(unrelated));
+    assertEquals(1, group.getMergedMetadataCache().size());
+
+    group.onEvent(new RepositoryConfigurationUpdatedEvent(group.getMemberRepositories().get(0)));
+    assertEquals(0, group.getMergedMetadataCache().size());
+  }
+
+  private M2GroupRepository group() throws Exception {
+    return getRepositoryRegistry().getRepositoryWithFacet("test", M2GroupRepository.class);
+  }
+
+  private byte[] retrieve(final M2GroupRepository group, final String path) throws Exception {
+    StorageFileItem item = (StorageFileItem) group.retrieveItem(new ResourceStoreRequest(path, false));
+    try (InputStream in = item.getInputStream()) {
+      return ByteStreams.toByteArray(in);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.maven2;
+
+import java.util.List;
+
+import org.sonatype.nexus.proxy.attributes.Attributes;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link MergedMetadataCache}.
+ */
+public class MergedMetadataCacheTest
+    extends TestSupport
+{
+  private static final String PATH = "/org/example/foo/maven-metadata.xml";
+
+  private final MergedMetadataCache underTest = new MergedMetadataCache(1024 * 1024);
+
+  @Test
+  public void hitOnlyWithSameSources() {
+    List<String> sources = MergedMetadataCache.sourcesOf(ImmutableList.<StorageItem>of(
+        item("releases:" + PATH, 1000L, "abc"), item("snapshots:" + PATH, 2000L, "def")));
+    underTest.put(PATH, new MergedMetadataCache.Entry(sources, new byte[]{1, 2, 3}, "md5", "sha1"));
+
+    List<String> same = MergedMetadataCache.sourcesOf(ImmutableList.<StorageItem>of(
+        item("releases:" + PATH, 1000L, "abc"), item("snapshots:" + PATH, 2000L, "def")));
+    assertThat(underTest.get(PATH, same), is(notNullValue()));
+
+    List<String> modified = MergedMetadataCache.sourcesOf(ImmutableList.<StorageItem>of(
+        item("releases:" + PATH, 1000L, "abc"), item("snapshots:" + PATH, 3000L, "xyz")));
+    assertThat(modified, is(not(sources)));
+    assertThat(underTest.get(PATH, modified), is(nullValue()));
+  }
+
+  @Test
+  public void checksumPathInvalidatesMetadata() {
+    List<String> sources = ImmutableList.of("releases:" + PATH);
+    underTest.put(PATH, new MergedMetadataCache.Entry(sources, new byte[0], "md5", "sha1"));
+
+    underTest.invalidate("/org/example/bar/maven-metadata.xml");
+    assertThat(underTest.get(PATH, sources), is(notNullValue()));
+
+    underTest.invalidate(PATH + ".sha1");
+    assertThat(underTest.get(PATH, sources), is(nullValue()));
+  }
+
+  @Test
+  public void boundedByContentSize() {
+    MergedMetadataCache cache = new MergedMetadataCache(64 * 1024);
+    List<String> sources = ImmutableList.of("releases:" + PATH);
+    for (int i = 0; i < 16; i++) {
+      cache.put(PATH + i, new MergedMetadataCache.Entry(sources, new byte[16 * 1024], "md5", "sha1"));
+    }
+    assertThat(cache.size() < 4, is(true));
+
+    cache.put(PATH, new MergedMetadataCache.Entry(sources, new byte[128 * 1024], "md5", "sha1"));
+    assertThat(cache.get(PATH, sources), is(nullValue()));
+  }
+
+  private StorageFileItem item(final String uid, final long modified, final String sha1) {
+    RepositoryItemUid itemUid = mock(RepositoryItemUid.class);
+    when(itemUid.toString()).thenReturn(uid);
+    Attributes attributes = mock(Attributes.class);
+    when(attributes.get(StorageFileItem.DIGEST_SHA1_KEY)).thenReturn(sha1);
+
+    StorageFileItem item = mock(StorageFileItem.class);
+    when(item.getRepositoryItemUid()).thenReturn(itemUid);
+    when(item.getModified()).thenReturn(modified);
+    when(item.getLength()).thenReturn(42L);
+    when(item.getRepositoryItemAttributes()).thenReturn(attributes);
+    return item;
+  }
+}
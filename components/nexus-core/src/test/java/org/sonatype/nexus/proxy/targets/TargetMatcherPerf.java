@@ -0,0 +1,144 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.targets;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.sonatype.nexus.proxy.maven.maven2.Maven2ContentClass;
+import org.sonatype.nexus.proxy.registry.ContentClass;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+import org.sonatype.sisu.litmus.testsupport.group.Perf;
+
+import com.google.common.collect.Lists;
+import org.databene.contiperf.PerfTest;
+import org.databene.contiperf.junit.ContiPerfRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Performance tests for {@link TargetMatcher}, resolving targets of random paths at 10, 100 and 1000 targets, compared
+ * to evaluating {@link Target#isPathContained(ContentClass, String)} of each target.
+ */
+@Category(Perf.class)
+public class TargetMatcherPerf
+    extends TestSupport
+{
+  private static final int INVOCATIONS = 100000;
+
+  private static final int PATHS = 100000;
+
+  @Rule
+  public ContiPerfRule perfRule = new ContiPerfRule();
+
+  private final Random random = new Random();
+
+  private final ContentClass maven2 = new Maven2ContentClass();
+
+  private String[] paths;
+
+  private List<Target> targets10;
+
+  private List<Target> targets100;
+
+  private List<Target> targets1000;
+
+  private TargetMatcher matcher10;
+
+  private TargetMatcher matcher100;
+
+  private TargetMatcher matcher1000;
+
+  @Before
+  public void setUp() throws Exception {
+    // more distinct paths than the result cache holds, as requests for real content would be
+    paths = new String[PATHS];
+    for (int i = 0; i < PATHS; i++) {
+      paths[i] = "/org/team" + random.nextInt(1000) + "/artifact" + i + "/1.0/artifact" + i + "-1.0.jar";
+    }
+    targets10 = targets(10);
+    targets100 = targets(100);
+    targets1000 = targets(1000);
+    matcher10 = new TargetMatcher(targets10);
+    matcher100 = new TargetMatcher(targets100);
+    matcher1000 = new TargetMatcher(targets1000);
+  }
+
+  /**
+   * Per team targets, as used for per team permissions, plus a few catch all ones.
+   */
+  private List<Target> targets(final int count) {
+    final List<Target> targets = Lists.newArrayList();
+    targets.add(new Target("all", "All", maven2, Arrays.asList(".*")));
+    targets.add(new Target("sources", "Sources", maven2, Arrays.asList(".*-sources\\.jar")));
+    for (int i = 2; i < count; i++) {
+      targets.add(new Target("team" + i, "Team " + i, maven2,
+          Arrays.asList("/org/team" + i + "/.*", "/com/team" + i + "/.*\\.pom")));
+    }
+    return targets;
+  }
+
+  private String path() {
+    return paths[random.nextInt(PATHS)];
+  }
+
+  private int loop(final List<Target> targets) {
+    final String path = path();
+    int matches = 0;
+    for (Target target : targets) {
+      if (target.isPathContained(maven2, path)) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  @Test
+  @PerfTest(invocations = INVOCATIONS, threads = 4)
+  public void loop10() {
+    loop(targets10);
+  }
+
+  @Test
+  @PerfTest(invocations = INVOCATIONS, threads = 4)
+  public void matcher10() {
+    matcher10.getTargets(maven2, path());
+  }
+
+  @Test
+  @PerfTest(invocations = INVOCATIONS, threads = 4)
+  public void loop100() {
+    loop(targets100);
+  }
+
+  @Test
+  @PerfTest(invocations = INVOCATIONS, threads = 4)
+  public void matcher100() {
+    matcher100.getTargets(maven2, path());
+  }
+
+  @Test
+  @PerfTest(invocations = INVOCATIONS, threads = 4)
+  public void loop1000() {
+    loop(targets1000);
+  }
+
+  @Test
+  @PerfTest(invocations = INVOCATIONS, threads = 4)
+  public void matcher1000() {
+    matcher1000.getTargets(maven2, path());
+  }
+}
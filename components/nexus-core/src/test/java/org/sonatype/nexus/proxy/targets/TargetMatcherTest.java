@@ -0,0 +1,98 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.targets;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.sonatype.nexus.proxy.maven.maven1.Maven1ContentClass;
+import org.sonatype.nexus.proxy.maven.maven2.Maven2ContentClass;
+import org.sonatype.nexus.proxy.registry.ContentClass;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests for {@link TargetMatcher}.
+ */
+public class TargetMatcherTest
+    extends TestSupport
+{
+  private final ContentClass maven1 = new Maven1ContentClass();
+
+  private final ContentClass maven2 = new Maven2ContentClass();
+
+  @Test
+  public void literalPrefix() {
+    assertThat(TargetMatcher.literalPrefix("/org/apache/.*"), equalTo("/org/apache/"));
+    assertThat(TargetMatcher.literalPrefix("^/org/apache/.*"), equalTo("/org/apache/"));
+    assertThat(TargetMatcher.literalPrefix("/org\\.apache\\.maven.*"), equalTo("/org.apache.maven"));
+    assertThat(TargetMatcher.literalPrefix("/org/apaches?/.*"), equalTo("/org/apache"));
+    assertThat(TargetMatcher.literalPrefix("/org/a+/.*"), equalTo("/org/"));
+    assertThat(TargetMatcher.literalPrefix("/org/\\d+/.*"), equalTo("/org/"));
+    assertThat(TargetMatcher.literalPrefix("/org/[a-z]+/.*"), equalTo("/org/"));
+    assertThat(TargetMatcher.literalPrefix("/org/(apache|codehaus)/.*"), equalTo(""));
+    assertThat(TargetMatcher.literalPrefix("/org/apache/.*|/org/codehaus/.*"), equalTo(""));
+    assertThat(TargetMatcher.literalPrefix("(?i)/org/.*"), equalTo(""));
+    assertThat(TargetMatcher.literalPrefix("\\Q/org\\E/.*"), equalTo(""));
+    assertThat(TargetMatcher.literalPrefix(".*"), equalTo(""));
+    assertThat(TargetMatcher.literalPrefix("/exact/path.pom"), equalTo("/exact/path"));
+  }
+
+  @Test
+  public void matchesSameTargetsAsTarget() {
+    final List<Target> targets = Arrays.asList(
+        new Target("all", "All", maven2, Arrays.asList(".*")),
+        new Target("apache", "Apache", maven2, Arrays.asList("/org/apache/.*", "^/org/codehaus/.*")),
+        new Target("sources", "Sources", maven2, Arrays.asList(".*-sources\\.jar")),
+        new Target("poms", "Poms", maven2, Arrays.asList("/org/apache/maven/.*\\.pom", "/com/.*\\.pom")),
+        new Target("alternatives", "Alternatives", maven2, Arrays.asList("/org/(apache|sonatype)/nexus/.*")),
+        new Target("optional", "Optional", maven2, Arrays.asList("/orgs?/sonatype/.*")),
+        new Target("maven1", "Maven1", maven1, Arrays.asList("/org\\.apache\\.maven.*"))
+    );
+    final TargetMatcher underTest = new TargetMatcher(targets);
+
+    final List<String> paths = Arrays.asList(
+        "/",
+        "",
+        "/org/apache/maven/maven-core/2.0.9/maven-core-2.0.9.pom",
+        "/org/apache/maven/maven-core/2.0.9/maven-core-2.0.9-sources.jar",
+        "/org/apache/nexus/nexus-core/1.0/nexus-core-1.0.jar",
+        "/org/sonatype/nexus/nexus-core/1.0/nexus-core-1.0.jar",
+        "/orgs/sonatype/foo.jar",
+        "/org/codehaus/plexus/plexus/1.0/plexus-1.0.pom",
+        "/com/example/example/1.0/example-1.0.pom",
+        "/org.apache.maven/jars/maven-model-v3-2.0.jar"
+    );
+    for (ContentClass contentClass : Arrays.asList(maven1, maven2)) {
+      for (String path : paths) {
+        final List<Target> expected = Lists.newArrayList();
+        for (Target target : targets) {
+          if (target.isPathContained(contentClass, path)) {
+            expected.add(target);
+          }
+        }
+        // twice, second one is cached
+        assertThat(contentClass.getId() + path, underTest.getTargets(contentClass, path),
+            containsInAnyOrder(expected.toArray()));
+        assertThat(contentClass.getId() + path, underTest.getTargets(contentClass, path),
+            containsInAnyOrder(expected.toArray()));
+      }
+    }
+  }
+}
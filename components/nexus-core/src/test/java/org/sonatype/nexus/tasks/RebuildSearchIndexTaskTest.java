@@ -0,0 +1,76 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.tasks;
+
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.manager.RepositoryManager;
+import org.sonatype.nexus.repository.search.SearchFacet;
+import org.sonatype.nexus.scheduling.TaskConfiguration;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RebuildSearchIndexTask}.
+ */
+public class RebuildSearchIndexTaskTest
+    extends TestSupport
+{
+  @Mock
+  private RepositoryManager repositoryManager;
+
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private SearchFacet searchFacet;
+
+  private RebuildSearchIndexTask underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    when(repository.facet(SearchFacet.class)).thenReturn(searchFacet);
+    underTest = new RebuildSearchIndexTask(repositoryManager);
+  }
+
+  private void configure(final String repositoryName) {
+    TaskConfiguration configuration = new TaskConfiguration();
+    configuration.setId("id");
+    configuration.setName("name");
+    configuration.setTypeId(RebuildSearchIndexTask.class.getSimpleName());
+    configuration.setRepositoryId(repositoryName);
+    underTest.configure(configuration);
+  }
+
+  @Test
+  public void rebuildsIndexOfConfiguredRepository() throws Exception {
+    when(repositoryManager.get("hosted")).thenReturn(repository);
+    configure("hosted");
+
+    underTest.call();
+
+    verify(searchFacet).rebuildIndex();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void failsForUnknownRepository() throws Exception {
+    configure("missing");
+
+    underTest.call();
+  }
+}
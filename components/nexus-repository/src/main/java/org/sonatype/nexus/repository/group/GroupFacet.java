@@ -37,5 +37,10 @@ public interface GroupFacet
    */
   List<Repository> members();
 
+  /**
+   * Whether GET/HEAD requests should be dispatched to all members concurrently instead of one after the other.
+   */
+  boolean isParallelDispatch();
+
   // TODO: Expose transitive members?
 }
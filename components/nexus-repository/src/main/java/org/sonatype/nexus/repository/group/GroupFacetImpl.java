@@ -48,6 +48,8 @@ public class GroupFacetImpl
 
   private final Set<String> memberNames = Sets.newLinkedHashSet();
 
+  private boolean parallelDispatch;
+
   @Inject
   public GroupFacetImpl(final RepositoryManager repositoryManager) {
     this.repositoryManager = checkNotNull(repositoryManager);
@@ -60,6 +62,9 @@ public class GroupFacetImpl
     NestedAttributesMap attributes = getRepository().getConfiguration().attributes(CONFIG_KEY);
     memberNames.addAll(attributes.require("memberNames", COLLECTION_STRING));
     log.debug("Members names: {}", memberNames);
+
+    parallelDispatch = attributes.get("parallelDispatch", Boolean.class, false);
+    log.debug("Parallel dispatch: {}", parallelDispatch);
   }
 
   @Override
@@ -89,4 +94,9 @@ public class GroupFacetImpl
     }
     return members;
   }
+
+  @Override
+  public boolean isParallelDispatch() {
+    return parallelDispatch;
+  }
 }
@@ -13,9 +13,19 @@
 
 package org.sonatype.nexus.repository.group;
 
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
@@ -29,7 +39,11 @@ import org.sonatype.nexus.repository.view.Response;
 import org.sonatype.nexus.repository.view.ViewFacet;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shiro.concurrent.SubjectAwareExecutorService;
 
 import static org.sonatype.nexus.repository.http.HttpMethods.GET;
 import static org.sonatype.nexus.repository.http.HttpMethods.HEAD;
@@ -37,6 +51,13 @@ import static org.sonatype.nexus.repository.http.HttpMethods.HEAD;
 /**
  * Group handler.
  *
+ * Members are tried in order and the first successful response is returned. When the group has
+ * {@link GroupFacet#isParallelDispatch() parallel dispatch} enabled, GET/HEAD requests are sent to all members at once
+ * on a bounded pool, and the response of the highest-priority successful member is returned as soon as all members
+ * ahead of it have answered. Member requests that have not started yet are cancelled; those already running are left
+ * to complete (they may be fetching remote content other requests are waiting on) and their responses are discarded.
+ * When the pool queue is full, member requests run on the calling thread instead.
+ *
  * @since 3.0
  */
 @Named
@@ -47,10 +68,12 @@ public class GroupHandler
 {
   /**
    * Request-context state container for set of repositories already dispatched to.
+   *
+   * Backed by a concurrent set, as nested groups may be dispatched to from parallel member requests.
    */
   private static class DispatchedRepositories
   {
-    private final Set<String> dispatched = Sets.newHashSet();
+    private final Set<String> dispatched = Sets.newConcurrentHashSet();
 
     public void add(final Repository repository) {
       dispatched.add(repository.getName());
@@ -66,6 +89,40 @@ public class GroupHandler
     }
   }
 
+  /**
+   * Marks dispatch pool threads; nested groups reached from a parallel dispatch are walked sequentially, so a
+   * bounded pool can not starve itself waiting on its own tasks.
+   */
+  private static final ThreadLocal<Boolean> IN_PARALLEL_DISPATCH = new ThreadLocal<Boolean>()
+  {
+    @Override
+    protected Boolean initialValue() {
+      return Boolean.FALSE;
+    }
+  };
+
+  private final ExecutorService dispatchExecutor;
+
+  @Inject
+  public GroupHandler(final @Named("${nexus.group.dispatch.threads:-20}") int dispatchThreads,
+                      final @Named("${nexus.group.dispatch.queueSize:-100}") int dispatchQueueSize)
+  {
+    // saturated pool falls back to running the member request on the caller, degrading to sequential dispatch
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(dispatchQueueSize),
+        new ThreadFactoryBuilder().setNameFormat("group-dispatch-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+
+    // propagate the requesting subject so member security checks see the same user
+    this.dispatchExecutor = new SubjectAwareExecutorService(executor);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    dispatchExecutor.shutdown();
+  }
+
   @Nonnull
   @Override
   public Response handle(final @Nonnull Context context) throws Exception {
@@ -82,6 +139,9 @@ public class GroupHandler
     switch (method) {
       case GET:
       case HEAD: {
+        if (group.isParallelDispatch() && !IN_PARALLEL_DISPATCH.get()) {
+          return dispatchParallel(request, group.members(), dispatched);
+        }
         for (Repository member : group.members()) {
           log.trace("Trying member: {}", member);
 
@@ -105,4 +165,72 @@ public class GroupHandler
         return HttpResponses.methodNotAllowed(method, GET, HEAD);
     }
   }
+
+  /**
+   * Dispatches the request to all not yet dispatched members concurrently, returning the first successful response
+   * in member order.
+   */
+  private Response dispatchParallel(final Request request,
+                                    final List<Repository> members,
+                                    final DispatchedRepositories dispatched)
+      throws Exception
+  {
+    // claim members on the calling thread, so cycle protection does not depend on task scheduling
+    List<Repository> targets = Lists.newArrayListWithCapacity(members.size());
+    for (Repository member : members) {
+      if (dispatched.contains(member)) {
+        log.trace("Skipping already dispatched member: {}", member);
+        continue;
+      }
+      dispatched.add(member);
+      targets.add(member);
+    }
+
+    List<Future<Response>> responses = Lists.newArrayListWithCapacity(targets.size());
+    for (final Repository member : targets) {
+      log.trace("Dispatching to member: {}", member);
+      responses.add(dispatchExecutor.submit(new Callable<Response>()
+      {
+        @Override
+        public Response call() throws Exception {
+          // may run on the caller when the pool is saturated, so restore rather than clear the marker
+          Boolean inParallelDispatch = IN_PARALLEL_DISPATCH.get();
+          IN_PARALLEL_DISPATCH.set(Boolean.TRUE);
+          try {
+            return member.facet(ViewFacet.class).dispatch(request);
+          }
+          finally {
+            IN_PARALLEL_DISPATCH.set(inParallelDispatch);
+          }
+        }
+      }));
+    }
+
+    try {
+      for (int i = 0; i < responses.size(); i++) {
+        Response response = awaitResponse(responses.get(i));
+        if (response.getStatus().getCode() == HttpStatus.OK) {
+          log.trace("Member {} responded first in order", targets.get(i));
+          return response;
+        }
+      }
+      return HttpResponses.notFound();
+    }
+    finally {
+      // never interrupt running members, an interrupted proxy fetch would fail every request coalesced onto it
+      for (Future<Response> response : responses) {
+        response.cancel(false);
+      }
+    }
+  }
+
+  private Response awaitResponse(final Future<Response> response) throws Exception {
+    try {
+      return response.get();
+    }
+    catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), Exception.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
 }
@@ -13,8 +13,18 @@
 
 package org.sonatype.nexus.repository.manager;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -29,15 +39,27 @@ import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.config.Configuration;
 import org.sonatype.nexus.repository.config.ConfigurationFacet;
 import org.sonatype.nexus.repository.config.ConfigurationStore;
+import org.sonatype.nexus.repository.group.GroupFacetImpl;
 import org.sonatype.nexus.repository.view.ViewFacet;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shiro.concurrent.SubjectAwareExecutorService;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static org.sonatype.nexus.common.stateguard.StateGuardLifecycleSupport.State.STARTED;
+import static org.sonatype.nexus.repository.util.TypeTokens.COLLECTION_STRING;
 
 /**
  * Default {@link RepositoryManager} implementation.
@@ -72,6 +94,12 @@ public class RepositoryManagerImpl
 
   private final Map<String, Repository> repositories = Maps.newHashMap();
 
+  private final int restoreThreads;
+
+  private final Timer restoreTimer;
+
+  private final Timer startTimer;
+
   @Inject
   public RepositoryManagerImpl(final EventBus eventBus,
                                final ConfigurationStore store,
@@ -79,7 +107,8 @@ public class RepositoryManagerImpl
                                final Provider<ConfigurationFacet> configFacet,
                                final Map<String, Recipe> recipes,
                                final RepositoryAdminSecurityConfigurationResource securityResource,
-                               final List<DefaultRepositoriesContributor> defaultRepositoriesContributors)
+                               final List<DefaultRepositoriesContributor> defaultRepositoriesContributors,
+                               final @Named("${nexus.repository.restore.threads:-8}") int restoreThreads)
   {
     this.eventBus = checkNotNull(eventBus);
     this.store = checkNotNull(store);
@@ -88,6 +117,12 @@ public class RepositoryManagerImpl
     this.recipes = checkNotNull(recipes);
     this.securityResource = checkNotNull(securityResource);
     this.defaultRepositoriesContributors = checkNotNull(defaultRepositoriesContributors);
+    checkArgument(restoreThreads > 0, "Restore threads must be positive");
+    this.restoreThreads = restoreThreads;
+
+    MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
+    this.restoreTimer = metricRegistry.timer(MetricRegistry.name(RepositoryManagerImpl.class, "restore"));
+    this.startTimer = metricRegistry.timer(MetricRegistry.name(RepositoryManagerImpl.class, "start"));
   }
 
   /**
@@ -177,22 +212,172 @@ public class RepositoryManagerImpl
       }
     }
 
+    ExecutorService executor = new SubjectAwareExecutorService(Executors.newFixedThreadPool(
+        Math.min(restoreThreads, configurations.size()),
+        new ThreadFactoryBuilder().setNameFormat("repository-restore-%d").setDaemon(true).build()));
+    try {
+      restoreRepositories(executor, configurations);
+      startRepositories(executor, configurations);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Constructs repositories in parallel, then tracks them in configuration order. If any fails, the others are
+   * destroyed and the first failure is rethrown.
+   */
+  private void restoreRepositories(final ExecutorService executor, final List<Configuration> configurations)
+      throws Exception
+  {
     log.debug("Restoring {} repositories", configurations.size());
-    for (Configuration configuration : configurations) {
-      log.debug("Restoring repository: {}", configuration);
-      Repository repository = newRepository(configuration);
+    List<Callable<Repository>> tasks = Lists.newArrayListWithCapacity(configurations.size());
+    for (final Configuration configuration : configurations) {
+      tasks.add(new Callable<Repository>()
+      {
+        @Override
+        public Repository call() throws Exception {
+          log.debug("Restoring repository: {}", configuration);
+          Stopwatch stopwatch = Stopwatch.createStarted();
+          Repository repository = newRepository(configuration);
+          restoreTimer.update(stopwatch.elapsed(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+          log.debug("Restored repository {} in {}", configuration.getRepositoryName(), stopwatch);
+          return repository;
+        }
+      });
+    }
+
+    List<Repository> restored = Lists.newArrayListWithCapacity(tasks.size());
+    Throwable failure = null;
+    for (Future<Repository> future : executor.invokeAll(tasks)) {
+      try {
+        restored.add(future.get());
+      }
+      catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    if (failure != null) {
+      // repositories built meanwhile are not tracked yet, so nothing else would ever destroy them
+      for (Repository repository : restored) {
+        destroyQuietly(repository);
+      }
+      Throwables.propagateIfInstanceOf(failure, Exception.class);
+      throw Throwables.propagate(failure);
+    }
+
+    for (Repository repository : restored) {
       track(repository);
 
       eventBus.post(new RepositoryLoadedEvent(repository));
     }
+  }
+
+  /**
+   * Destroys an untracked repository, logging failures as it is only done while another failure propagates.
+   */
+  private void destroyQuietly(final Repository repository) {
+    log.debug("Destroying repository: {}", repository);
+    try {
+      securityResource.remove(repository);
+      repository.destroy();
+    }
+    catch (Exception e) {
+      log.warn("Failed to destroy repository: {}", repository, e);
+    }
+  }
 
+  /**
+   * Starts repositories in parallel waves, each group repository only after all of its members have started.
+   */
+  private void startRepositories(final ExecutorService executor, final List<Configuration> configurations)
+      throws Exception
+  {
     log.debug("Starting {} repositories", repositories.size());
-    for (Repository repository : repositories.values()) {
-      log.debug("Starting repository: {}", repository);
-      repository.start();
+    Stopwatch total = Stopwatch.createStarted();
+
+    Map<String, Set<String>> pending = Maps.newLinkedHashMap();
+    for (Configuration configuration : configurations) {
+      pending.put(configuration.getRepositoryName(), memberNames(configuration));
+    }
+
+    while (!pending.isEmpty()) {
+      List<String> wave = Lists.newArrayList();
+      for (Entry<String, Set<String>> entry : pending.entrySet()) {
+        if (Collections.disjoint(entry.getValue(), pending.keySet())) {
+          wave.add(entry.getKey());
+        }
+      }
+      if (wave.isEmpty()) {
+        // members form a cycle; start the rest one by one in configuration order
+        log.warn("Cyclic group membership among repositories: {}", pending.keySet());
+        for (String name : pending.keySet()) {
+          startRepository(repository(name));
+        }
+        break;
+      }
+
+      List<Callable<Repository>> tasks = Lists.newArrayListWithCapacity(wave.size());
+      for (final String name : wave) {
+        tasks.add(new Callable<Repository>()
+        {
+          @Override
+          public Repository call() throws Exception {
+            return startRepository(repository(name));
+          }
+        });
+      }
+      invokeAll(executor, tasks);
+      pending.keySet().removeAll(wave);
+    }
+
+    log.info("Started {} repositories in {}", repositories.size(), total);
+  }
 
-      eventBus.post(new RepositoryRestoredEvent(repository));
+  private Repository startRepository(final Repository repository) throws Exception {
+    log.debug("Starting repository: {}", repository);
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    repository.start();
+    startTimer.update(stopwatch.elapsed(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    log.debug("Started repository {} in {}", repository.getName(), stopwatch);
+
+    eventBus.post(new RepositoryRestoredEvent(repository));
+    return repository;
+  }
+
+  /**
+   * Names of the members of a group repository, or none for other repositories.
+   */
+  private Set<String> memberNames(final Configuration configuration) {
+    Map<String, Map<String, Object>> attributes = configuration.getAttributes();
+    if (attributes == null || attributes.get(GroupFacetImpl.CONFIG_KEY) == null) {
+      return Collections.emptySet();
+    }
+    Collection<String> memberNames = configuration.attributes(GroupFacetImpl.CONFIG_KEY)
+        .get("memberNames", COLLECTION_STRING);
+    return memberNames == null ? Collections.<String>emptySet() : Sets.newHashSet(memberNames);
+  }
+
+  /**
+   * Runs all tasks and returns their results in order, rethrowing the first failure.
+   */
+  private static <T> List<T> invokeAll(final ExecutorService executor, final List<Callable<T>> tasks)
+      throws Exception
+  {
+    List<T> results = Lists.newArrayListWithCapacity(tasks.size());
+    for (Future<T> future : executor.invokeAll(tasks)) {
+      try {
+        results.add(future.get());
+      }
+      catch (ExecutionException e) {
+        Throwables.propagateIfInstanceOf(e.getCause(), Exception.class);
+        throw Throwables.propagate(e.getCause());
+      }
     }
+    return results;
   }
 
   @Override
@@ -14,6 +14,7 @@ package org.sonatype.nexus.repository.proxy;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -34,6 +35,12 @@ import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 import org.joda.time.DateTime;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -41,6 +48,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 /**
  * A support class which implements basic payload logic; subclasses provide format-specific operations.
  *
+ * Concurrent cache misses for the same remote URL are coalesced: the first caller (the leader) fetches and stores
+ * the remote content, while the others wait for it to finish and then read the freshly stored payload.
+ *
  * @since 3.0
  */
 public abstract class ProxyFacetSupport
@@ -57,6 +67,15 @@ public abstract class ProxyFacetSupport
 
   private boolean remoteUrlChanged;
 
+  /**
+   * Remote fetches currently in progress, keyed by resolved remote URI.
+   */
+  private final ConcurrentMap<URI, SettableFuture<Void>> inflightFetches = Maps.newConcurrentMap();
+
+  private Meter leaderFetches;
+
+  private Meter coalescedFetches;
+
   @Override
   protected void doConfigure() throws Exception {
     NestedAttributesMap attributes = getRepository().getConfiguration().attributes(CONFIG_KEY);
@@ -81,6 +100,11 @@ public abstract class ProxyFacetSupport
   @Override
   protected void doStart() throws Exception {
     httpClient = getRepository().facet(HttpClientFacet.class);
+
+    MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
+    String repositoryName = getRepository().getName();
+    leaderFetches = metricRegistry.meter(MetricRegistry.name(ProxyFacetSupport.class, repositoryName, "leader"));
+    coalescedFetches = metricRegistry.meter(MetricRegistry.name(ProxyFacetSupport.class, repositoryName, "coalesced"));
     if (remoteUrlChanged) {
       remoteUrlChanged = false;
       try {
@@ -114,15 +138,7 @@ public abstract class ProxyFacetSupport
 
     if (content == null || isStale(context)) {
       try {
-        final Payload remote = fetch(context);
-        if (remote != null) {
-
-          // TODO: Introduce content validation.. perhaps content's type not matching path's implied type.
-
-          store(context, remote);
-
-          content = getCachedPayload(context);
-        }
+        content = fetchCoalesced(context, content);
       }
       catch (IOException e) {
         log.warn("Failed to fetch: {}", getUrl(context), e);
@@ -132,6 +148,46 @@ public abstract class ProxyFacetSupport
     return content;
   }
 
+  /**
+   * Fetches and stores remote content, unless a fetch of the same remote URL is already in flight, in which case
+   * this joins it and returns whatever payload the in-flight fetch left in the cache.
+   */
+  private Payload fetchCoalesced(final Context context, final Payload cached) throws IOException {
+    final URI key = remoteUrl.resolve(getUrl(context));
+    final SettableFuture<Void> fetchDone = SettableFuture.create();
+    final SettableFuture<Void> inflight = inflightFetches.putIfAbsent(key, fetchDone);
+
+    if (inflight != null) {
+      coalescedFetches.mark();
+      log.debug("Joining in-flight fetch: {}", key);
+      Futures.get(inflight, IOException.class);
+      return getCachedPayload(context);
+    }
+
+    leaderFetches.mark();
+    try {
+      Payload content = cached;
+      final Payload remote = fetch(context);
+      if (remote != null) {
+
+        // TODO: Introduce content validation.. perhaps content's type not matching path's implied type.
+
+        store(context, remote);
+
+        content = getCachedPayload(context);
+      }
+      fetchDone.set(null);
+      return content;
+    }
+    catch (Throwable t) {
+      fetchDone.setException(t);
+      throw t;
+    }
+    finally {
+      inflightFetches.remove(key, fetchDone);
+    }
+  }
+
   /**
    * If we have the content cached locally already, return that - otherwise {@code null}.
    */
@@ -0,0 +1,373 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.search;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Collects index/delete operations of component metadata and sends them to Elasticsearch through the bulk API.
+ *
+ * Pending operations are flushed once {@code batchSize} of them are queued, or at the latest every
+ * {@code flushInterval} milliseconds. Operations on the same document id coalesce while pending, so only the latest
+ * one is sent. When {@code capacity} operations are pending the enqueuing thread flushes itself, which applies
+ * back-pressure to producers instead of growing without bound.
+ *
+ * Operations that fail, either because the whole bulk request failed or individually, are queued again unless a newer
+ * operation on the same document is pending, and retried with a later flush up to {@code maxRetries} times.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class BulkIndexingQueue
+    extends ComponentSupport
+{
+  /**
+   * Pending operation; a {@code null} source marks a delete.
+   */
+  private static class Operation
+  {
+    private final String index;
+
+    private final String id;
+
+    @Nullable
+    private final String source;
+
+    private final int attempts;
+
+    private Operation(final String index, final String id, @Nullable final String source, final int attempts) {
+      this.index = index;
+      this.id = id;
+      this.source = source;
+      this.attempts = attempts;
+    }
+
+    private Operation(final String index, final String id, @Nullable final String source) {
+      this(index, id, source, 0);
+    }
+
+    private Operation retry() {
+      return new Operation(index, id, source, attempts + 1);
+    }
+  }
+
+  private static class DocumentKey
+  {
+    private final String index;
+
+    private final String id;
+
+    private DocumentKey(final String index, final String id) {
+      this.index = index;
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof DocumentKey)) {
+        return false;
+      }
+      DocumentKey that = (DocumentKey) o;
+      return index.equals(that.index) && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(index, id);
+    }
+  }
+
+  private final Provider<Client> client;
+
+  private final String type;
+
+  private final int batchSize;
+
+  private final int capacity;
+
+  private final int maxRetries;
+
+  /**
+   * Pending operations in enqueue order; guarded by itself.
+   */
+  private final Map<DocumentKey, Operation> pending = Maps.newLinkedHashMap();
+
+  /**
+   * Serializes flushes, so operations on the same document are applied in order.
+   */
+  private final Object flushLock = new Object();
+
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  private final ScheduledExecutorService flusher;
+
+  private final Histogram batchSizes;
+
+  private final Timer flushLatency;
+
+  private final Meter retried;
+
+  private final Meter dropped;
+
+  @Inject
+  public BulkIndexingQueue(final Provider<Client> client,
+                           final @Named("${nexus.search.bulk.batchSize:-500}") int batchSize,
+                           final @Named("${nexus.search.bulk.capacity:-10000}") int capacity,
+                           final @Named("${nexus.search.bulk.flushInterval:-1000}") long flushInterval,
+                           final @Named("${nexus.search.bulk.maxRetries:-3}") int maxRetries)
+  {
+    this.client = checkNotNull(client);
+    this.type = SearchServiceImpl.TYPE;
+    checkArgument(batchSize > 0, "Batch size must be positive");
+    checkArgument(capacity >= batchSize, "Capacity must not be smaller than batch size");
+    this.batchSize = batchSize;
+    this.capacity = capacity;
+    checkArgument(maxRetries >= 0, "Max retries must not be negative");
+    this.maxRetries = maxRetries;
+
+    MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
+    String queueDepthName = MetricRegistry.name(BulkIndexingQueue.class, "queueDepth");
+    metricRegistry.remove(queueDepthName);
+    metricRegistry.register(queueDepthName, new Gauge<Integer>()
+    {
+      @Override
+      public Integer getValue() {
+        return size();
+      }
+    });
+    this.batchSizes = metricRegistry.histogram(MetricRegistry.name(BulkIndexingQueue.class, "batchSize"));
+    this.flushLatency = metricRegistry.timer(MetricRegistry.name(BulkIndexingQueue.class, "flush"));
+    this.retried = metricRegistry.meter(MetricRegistry.name(BulkIndexingQueue.class, "retried"));
+    this.dropped = metricRegistry.meter(MetricRegistry.name(BulkIndexingQueue.class, "dropped"));
+
+    this.flusher = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("search-bulk-indexer").setDaemon(true).build());
+    flusher.scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run() {
+        flushQuietly();
+      }
+    }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Queues indexing of a document, replacing any pending operation on the same document.
+   */
+  public void put(final String index, final String id, final String source) {
+    enqueue(new Operation(checkNotNull(index), checkNotNull(id), checkNotNull(source)));
+  }
+
+  /**
+   * Queues deletion of a document, replacing any pending operation on the same document.
+   */
+  public void delete(final String index, final String id) {
+    enqueue(new Operation(checkNotNull(index), checkNotNull(id), null));
+  }
+
+  /**
+   * Drops all pending operations of given index, e.g. because the index is being deleted.
+   */
+  public void discard(final String index) {
+    synchronized (pending) {
+      for (Iterator<DocumentKey> keys = pending.keySet().iterator(); keys.hasNext(); ) {
+        if (keys.next().index.equals(index)) {
+          keys.remove();
+        }
+      }
+    }
+  }
+
+  public int size() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+
+  private void enqueue(final Operation operation) {
+    int size;
+    synchronized (pending) {
+      DocumentKey key = new DocumentKey(operation.index, operation.id);
+      // re-insert so a coalesced operation keeps its position behind operations queued since
+      pending.remove(key);
+      pending.put(key, operation);
+      size = pending.size();
+    }
+
+    if (size >= capacity) {
+      log.debug("Indexing queue full ({} operations), flushing on caller thread", size);
+      // callers are storage hooks, indexing problems must not fail their transaction
+      flushQuietly();
+    }
+    else if (size >= batchSize && flushScheduled.compareAndSet(false, true)) {
+      flusher.execute(new Runnable()
+      {
+        @Override
+        public void run() {
+          flushScheduled.set(false);
+          flushQuietly();
+        }
+      });
+    }
+  }
+
+  /**
+   * Synchronously sends the operations pending at the time of the call to Elasticsearch. Failed operations are queued
+   * again for a later flush; a failed bulk request is rethrown.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      int remaining;
+      synchronized (pending) {
+        remaining = pending.size();
+      }
+      while (remaining > 0) {
+        Operation[] batch;
+        synchronized (pending) {
+          if (pending.isEmpty()) {
+            return;
+          }
+          batch = drain(Math.min(Math.min(batchSize, remaining), pending.size()));
+        }
+        remaining -= batch.length;
+        send(batch);
+      }
+    }
+  }
+
+  private Operation[] drain(final int count) {
+    Operation[] batch = new Operation[count];
+    Iterator<Operation> operations = pending.values().iterator();
+    for (int i = 0; i < count; i++) {
+      batch[i] = operations.next();
+      operations.remove();
+    }
+    return batch;
+  }
+
+  private void send(final Operation[] batch) {
+    BulkRequestBuilder bulk = client.get().prepareBulk();
+    for (Operation operation : batch) {
+      if (operation.source != null) {
+        bulk.add(client.get().prepareIndex(operation.index, type, operation.id).setSource(operation.source));
+      }
+      else {
+        bulk.add(client.get().prepareDelete(operation.index, type, operation.id));
+      }
+    }
+
+    batchSizes.update(batch.length);
+    Timer.Context flushTime = flushLatency.time();
+    BulkResponse response;
+    try {
+      response = bulk.execute().actionGet();
+    }
+    catch (RuntimeException e) {
+      log.warn("Failed to send {} operations, queueing them for retry", batch.length);
+      requeue(Arrays.asList(batch));
+      throw e;
+    }
+    finally {
+      flushTime.stop();
+    }
+
+    if (response.hasFailures()) {
+      List<Operation> failed = Lists.newArrayList();
+      for (BulkItemResponse item : response.getItems()) {
+        if (item.isFailed()) {
+          log.warn("Failed to {} document {} in index {}: {}", item.getOpType(), item.getId(), item.getIndex(),
+              item.getFailureMessage());
+          // items are in request order
+          failed.add(batch[item.getItemId()]);
+        }
+      }
+      requeue(failed);
+    }
+    log.debug("Sent {} operations in {} ms", batch.length, response.getTookInMillis());
+  }
+
+  /**
+   * Queues failed operations again, unless superseded by a newer operation on the same document meanwhile or out of
+   * retries.
+   */
+  private void requeue(final List<Operation> failed) {
+    synchronized (pending) {
+      for (Operation operation : failed) {
+        if (operation.attempts >= maxRetries) {
+          log.error("Giving up to {} document {} in index {} after {} retries",
+              operation.source != null ? "index" : "delete", operation.id, operation.index, operation.attempts);
+          dropped.mark();
+          continue;
+        }
+        DocumentKey key = new DocumentKey(operation.index, operation.id);
+        if (!pending.containsKey(key)) {
+          pending.put(key, operation.retry());
+          retried.mark();
+        }
+      }
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    }
+    catch (Exception e) {
+      log.warn("Failed to flush indexing queue", e);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    flusher.shutdown();
+    flushQuietly();
+  }
+}
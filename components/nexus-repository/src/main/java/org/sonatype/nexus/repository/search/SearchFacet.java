@@ -38,4 +38,9 @@ public interface SearchFacet
    */
   void delete(String id);
 
+  /**
+   * Rebuilds the index from all components in storage.
+   */
+  void rebuildIndex();
+
 }
@@ -36,6 +36,12 @@ public interface SearchService
    */
   void deleteIndex(Repository repository);
 
+  /**
+   * Rebuilds component metadata index of specified repository from its storage. Components are indexed into a new
+   * index, which replaces the current one once complete, so search stays available meanwhile.
+   */
+  void rebuildIndex(Repository repository);
+
   /**
    * Index component metadata.
    */
@@ -46,6 +52,14 @@ public interface SearchService
    */
   void delete(Repository repository, String id);
 
+  /**
+   * Synchronously sends pending index/remove operations to the index.
+   *
+   * Index changes of {@link #put} and {@link #delete} are queued and sent in batches, so they may not be searchable
+   * right away.
+   */
+  void flush();
+
   /**
    * Search component metadata and browse results.
    */
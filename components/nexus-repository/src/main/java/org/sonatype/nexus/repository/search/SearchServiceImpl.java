@@ -19,7 +19,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -31,16 +37,28 @@ import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.manager.RepositoryManager;
 import org.sonatype.nexus.repository.security.BreadActions;
 import org.sonatype.nexus.repository.security.RepositoryViewPermission;
+import org.sonatype.nexus.repository.storage.Bucket;
+import org.sonatype.nexus.repository.storage.Component;
+import org.sonatype.nexus.repository.storage.StorageFacet;
+import org.sonatype.nexus.repository.storage.StorageTx;
 import org.sonatype.nexus.repository.view.ViewFacet;
 import org.sonatype.nexus.security.SecurityHelper;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.Resources;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.orientechnologies.orient.core.id.ORID;
+import org.elasticsearch.action.admin.indices.alias.Alias;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.ShardSearchFailure;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.indices.IndexMissingException;
@@ -48,7 +66,9 @@ import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.internal.InternalSearchResponse;
 
 import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_REPOSITORY_NAME;
 
 /**
@@ -59,6 +79,7 @@ import static org.sonatype.nexus.repository.storage.StorageFacet.P_REPOSITORY_NA
 @Named
 @Singleton
 public class SearchServiceImpl
+    extends ComponentSupport
     implements SearchService
 {
 
@@ -72,71 +93,304 @@ public class SearchServiceImpl
 
   private final List<IndexSettingsContributor> indexSettingsContributors;
 
+  private final BulkIndexingQueue indexingQueue;
+
+  private final ComponentMetadataFactory componentMetadataFactory;
+
+  private final int reindexThreads;
+
+  private final int reindexBatchSize;
+
+  /**
+   * Index being rebuilt for a repository, which live changes have to be mirrored to.
+   *
+   * Rebuild workers load components from storage snapshots, so a document a live change was mirrored for since the
+   * rebuild started must not be overwritten by a worker anymore: the mirrored operation is newer. Mirroring and worker
+   * puts are serialized on the target to make check and enqueue atomic.
+   */
+  private class RebuildTarget
+  {
+    private final String index;
+
+    /**
+     * Ids of documents live changes were mirrored for; guarded by this.
+     */
+    private final Set<String> mirrored = Sets.newHashSet();
+
+    private RebuildTarget(final String index) {
+      this.index = index;
+    }
+
+    private synchronized void mirrorPut(final String id, final String json) {
+      mirrored.add(id);
+      indexingQueue.put(index, id, json);
+    }
+
+    private synchronized void mirrorDelete(final String id) {
+      mirrored.add(id);
+      indexingQueue.delete(index, id);
+    }
+
+    private synchronized void rebuildPut(final String id, final String json) {
+      if (!mirrored.contains(id)) {
+        indexingQueue.put(index, id, json);
+      }
+    }
+  }
+
+  /**
+   * Repository name (alias) to its index being rebuilt.
+   */
+  private final ConcurrentMap<String, RebuildTarget> rebuildTargets = Maps.newConcurrentMap();
+
   @Inject
   public SearchServiceImpl(final Provider<Client> client,
                            final RepositoryManager repositoryManager,
                            final SecurityHelper securityHelper,
-                           final List<IndexSettingsContributor> indexSettingsContributors)
+                           final List<IndexSettingsContributor> indexSettingsContributors,
+                           final BulkIndexingQueue indexingQueue,
+                           final ComponentMetadataFactory componentMetadataFactory,
+                           final @Named("${nexus.search.reindex.threads:-4}") int reindexThreads,
+                           final @Named("${nexus.search.reindex.batchSize:-500}") int reindexBatchSize)
   {
     this.client = checkNotNull(client);
     this.repositoryManager = checkNotNull(repositoryManager);
     this.securityHelper = checkNotNull(securityHelper);
     this.indexSettingsContributors = checkNotNull(indexSettingsContributors);
+    this.indexingQueue = checkNotNull(indexingQueue);
+    this.componentMetadataFactory = checkNotNull(componentMetadataFactory);
+    checkArgument(reindexThreads > 0, "Reindex threads must be positive");
+    checkArgument(reindexBatchSize > 0, "Reindex batch size must be positive");
+    this.reindexThreads = reindexThreads;
+    this.reindexBatchSize = reindexBatchSize;
   }
 
   @Override
   public void createIndex(final Repository repository) {
     checkNotNull(repository);
     // TODO we should calculate the checksum of index settings and compare it with a value stored in index _meta tags
-    // in case that they not match (settings changed) we should drop the index, recreate it and re-index all components
+    // in case that they not match (settings changed) we should rebuild the index (see rebuildIndex)
     if (!client.get().admin().indices().prepareExists(repository.getName()).execute().actionGet().isExists()) {
-      try {
-        String source = Resources.toString(Resources.getResource(getClass(), "es-mapping.json"), UTF_8);
-        for (IndexSettingsContributor contributor : indexSettingsContributors) {
-          String contributed = contributor.getIndexSettings(repository);
-          if (contributed != null) {
-            source = JsonUtils.merge(source, contributed);
-          }
-        }
-        client.get().admin().indices().prepareCreate(repository.getName())
-            .setSource(source)
-            .execute()
-            .actionGet();
-      }
-      catch (IOException e) {
-        throw Throwables.propagate(e);
-      }
+      // physical index is versioned and reachable through an alias named after repository, so it can be swapped
+      client.get().admin().indices().prepareCreate(newIndexName(repository))
+          .setSource(indexSource(repository))
+          .addAlias(new Alias(repository.getName()))
+          .execute()
+          .actionGet();
     }
   }
 
   @Override
   public void deleteIndex(final Repository repository) {
     checkNotNull(repository);
-    if (client.get().admin().indices().prepareExists(repository.getName()).execute().actionGet().isExists()) {
-      client.get().admin().indices().prepareDelete(repository.getName()).execute().actionGet();
+    indexingQueue.discard(repository.getName());
+    List<String> indexes = concreteIndexes(repository.getName());
+    if (!indexes.isEmpty()) {
+      client.get().admin().indices().prepareDelete(indexes.toArray(new String[indexes.size()])).execute().actionGet();
     }
   }
 
   @Override
-  public void put(final Repository repository, final ComponentMetadata componentMetadata) {
+  public void rebuildIndex(final Repository repository) {
     checkNotNull(repository);
-    checkNotNull(componentMetadata);
+    String alias = repository.getName();
+    String index = newIndexName(repository);
+    RebuildTarget target = new RebuildTarget(index);
+    checkState(rebuildTargets.putIfAbsent(alias, target) == null, "Index of %s is already being rebuilt", alias);
+    boolean swapped = false;
     try {
-      Map<String, Object> additional = Maps.newHashMap();
-      additional.put(P_REPOSITORY_NAME, repository.getName());
-      String json = JsonUtils.merge(componentMetadata.toJson(), JsonUtils.from(additional));
-      client.get().prepareIndex(repository.getName(), TYPE, componentMetadata.getId()).setSource(json).execute();
+      client.get().admin().indices().prepareCreate(index)
+          .setSource(indexSource(repository))
+          .execute()
+          .actionGet();
+      log.info("Rebuilding index of {} into {}", alias, index);
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      long count = reindexComponents(repository, target);
+      indexingQueue.flush();
+      swapAlias(alias, index);
+      swapped = true;
+      log.info("Rebuilt index of {} with {} components in {}", alias, count, stopwatch);
+    }
+    finally {
+      rebuildTargets.remove(alias, target);
+      if (!swapped) {
+        indexingQueue.discard(index);
+        if (client.get().admin().indices().prepareExists(index).execute().actionGet().isExists()) {
+          client.get().admin().indices().prepareDelete(index).execute().actionGet();
+        }
+      }
+    }
+  }
+
+  /**
+   * Streams all components of repository in a single transaction, handing their ids over in batches to worker threads
+   * that load them in their own transaction and queue their metadata for bulk indexing into given index. At most
+   * {@code 2 * threads} batches are in flight and the indexing queue applies back-pressure, so memory use does not
+   * depend on repository size.
+   */
+  private long reindexComponents(final Repository repository, final RebuildTarget target) {
+    final StorageFacet storageFacet = repository.facet(StorageFacet.class);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final Semaphore inflight = new Semaphore(reindexThreads * 2);
+    ExecutorService executor = Executors.newFixedThreadPool(reindexThreads,
+        new ThreadFactoryBuilder().setNameFormat("search-reindex-" + repository.getName() + "-%d").setDaemon(true)
+            .build());
+    long count = 0;
+    try {
+      List<ORID> batch = Lists.newArrayListWithCapacity(reindexBatchSize);
+      try (StorageTx tx = storageFacet.openTx()) {
+        for (Component component : tx.browseComponents(tx.getBucket())) {
+          batch.add(component.id());
+          count++;
+          if (batch.size() == reindexBatchSize) {
+            submitReindexBatch(executor, inflight, failure, repository, storageFacet, target, batch);
+            batch = Lists.newArrayListWithCapacity(reindexBatchSize);
+          }
+        }
+      }
+      if (!batch.isEmpty()) {
+        submitReindexBatch(executor, inflight, failure, repository, storageFacet, target, batch);
+      }
+      // wait for all batches to finish
+      inflight.acquireUninterruptibly(reindexThreads * 2);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    if (failure.get() != null) {
+      throw Throwables.propagate(failure.get());
+    }
+    return count;
+  }
+
+  private void submitReindexBatch(final ExecutorService executor,
+                                  final Semaphore inflight,
+                                  final AtomicReference<Throwable> failure,
+                                  final Repository repository,
+                                  final StorageFacet storageFacet,
+                                  final RebuildTarget target,
+                                  final List<ORID> batch)
+  {
+    if (failure.get() != null) {
+      throw Throwables.propagate(failure.get());
+    }
+    inflight.acquireUninterruptibly();
+    executor.execute(new Runnable()
+    {
+      @Override
+      public void run() {
+        try (StorageTx tx = storageFacet.openTx()) {
+          Bucket bucket = tx.getBucket();
+          for (ORID id : batch) {
+            Component component = tx.findComponent(id, bucket);
+            if (component != null) {
+              ComponentMetadata metadata = componentMetadataFactory.from(component);
+              target.rebuildPut(metadata.getId(), toJson(repository, metadata));
+            }
+          }
+        }
+        catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        }
+        finally {
+          inflight.release();
+        }
+      }
+    });
+  }
+
+  /**
+   * Points alias to given index and deletes the indexes it pointed to before. The switch is atomic, unless alias is
+   * a concrete index created before indexes were aliased, which has to be deleted first.
+   */
+  private void swapAlias(final String alias, final String index) {
+    IndicesAdminClient indices = client.get().admin().indices();
+    List<String> previous = Lists.newArrayList(
+        indices.prepareGetAliases(alias).execute().actionGet().getAliases().keysIt());
+    if (previous.isEmpty() && indices.prepareExists(alias).execute().actionGet().isExists()) {
+      log.info("Replacing unaliased index {}", alias);
+      indices.prepareDelete(alias).execute().actionGet();
+    }
+    IndicesAliasesRequestBuilder request = indices.prepareAliases().addAlias(index, alias);
+    for (String old : previous) {
+      request.removeAlias(old, alias);
+    }
+    request.execute().actionGet();
+    if (!previous.isEmpty()) {
+      indices.prepareDelete(previous.toArray(new String[previous.size()])).execute().actionGet();
+    }
+  }
+
+  /**
+   * Returns the concrete indexes behind an alias, or the index itself if it was created before indexes were aliased.
+   */
+  private List<String> concreteIndexes(final String alias) {
+    IndicesAdminClient indices = client.get().admin().indices();
+    List<String> concrete = Lists.newArrayList(
+        indices.prepareGetAliases(alias).execute().actionGet().getAliases().keysIt());
+    if (concrete.isEmpty() && indices.prepareExists(alias).execute().actionGet().isExists()) {
+      concrete.add(alias);
+    }
+    return concrete;
+  }
+
+  private String newIndexName(final Repository repository) {
+    return repository.getName() + "-" + System.currentTimeMillis();
+  }
+
+  private String indexSource(final Repository repository) {
+    try {
+      String source = Resources.toString(Resources.getResource(getClass(), "es-mapping.json"), UTF_8);
+      for (IndexSettingsContributor contributor : indexSettingsContributors) {
+        String contributed = contributor.getIndexSettings(repository);
+        if (contributed != null) {
+          source = JsonUtils.merge(source, contributed);
+        }
+      }
+      return source;
     }
     catch (IOException e) {
       throw Throwables.propagate(e);
     }
   }
 
+  @Override
+  public void put(final Repository repository, final ComponentMetadata componentMetadata) {
+    checkNotNull(repository);
+    checkNotNull(componentMetadata);
+    String json = toJson(repository, componentMetadata);
+    indexingQueue.put(repository.getName(), componentMetadata.getId(), json);
+    RebuildTarget rebuildTarget = rebuildTargets.get(repository.getName());
+    if (rebuildTarget != null) {
+      rebuildTarget.mirrorPut(componentMetadata.getId(), json);
+    }
+  }
+
   @Override
   public void delete(final Repository repository, final String id) {
     checkNotNull(repository);
     checkNotNull(id);
-    client.get().prepareDelete(repository.getName(), TYPE, id).execute();
+    indexingQueue.delete(repository.getName(), id);
+    RebuildTarget rebuildTarget = rebuildTargets.get(repository.getName());
+    if (rebuildTarget != null) {
+      rebuildTarget.mirrorDelete(id);
+    }
+  }
+
+  @Override
+  public void flush() {
+    indexingQueue.flush();
+  }
+
+  private String toJson(final Repository repository, final ComponentMetadata componentMetadata) {
+    try {
+      Map<String, Object> additional = Maps.newHashMap();
+      additional.put(P_REPOSITORY_NAME, repository.getName());
+      return JsonUtils.merge(componentMetadata.toJson(), JsonUtils.from(additional));
+    }
+    catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
   }
 
   @Override
@@ -30,6 +30,12 @@ public interface Asset
   @Nullable
   Component component();
 
+  /**
+   * Sets the lookup key to the given value, or {@code null} to un-define it. The key should uniquely identify the
+   * asset within its bucket.
+   */
+  Asset lookupKey(@Nullable String lookupKey);
+
   /**
    * Gets the size of the file in bytes or {@code null} if undefined.
    */
@@ -24,6 +24,7 @@ import com.tinkerpop.blueprints.impls.orient.OrientVertex;
 import static org.sonatype.nexus.repository.storage.StorageFacet.E_PART_OF_COMPONENT;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_BLOB_REF;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_CONTENT_TYPE;
+import static org.sonatype.nexus.repository.storage.StorageFacet.P_LOOKUP_KEY;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_SIZE;
 
 /**
@@ -63,6 +64,12 @@ class AssetImpl
     return component;
   }
 
+  @Override
+  public Asset lookupKey(@Nullable String lookupKey) {
+    set(P_LOOKUP_KEY, lookupKey);
+    return this;
+  }
+
   @Override
   @Nullable
   public Long size() {
@@ -47,10 +47,20 @@ class BlobTx
   }
 
   public BlobRef create(InputStream inputStream, Map<String, String> headers) {
+    return refOf(store(inputStream, headers));
+  }
+
+  /**
+   * Creates a new blob and returns it, giving callers access to the metrics computed while it was written.
+   */
+  public Blob store(InputStream inputStream, Map<String, String> headers) {
     Blob blob = blobStore.create(inputStream, headers);
-    BlobRef blobRef = new BlobRef("NODE", "STORE", blob.getId().asUniqueString());
-    newlyCreatedBlobs.add(blobRef);
-    return blobRef;
+    newlyCreatedBlobs.add(refOf(blob));
+    return blob;
+  }
+
+  public BlobRef refOf(Blob blob) {
+    return new BlobRef("NODE", "STORE", blob.getId().asUniqueString());
   }
 
   @Nullable
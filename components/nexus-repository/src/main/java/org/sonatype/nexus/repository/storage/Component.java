@@ -24,6 +24,12 @@ import javax.annotation.Nullable;
 public interface Component
     extends MetadataNode
 {
+  /**
+   * Sets the lookup key to the given value, or {@code null} to un-define it. The key should uniquely identify the
+   * component within its bucket.
+   */
+  Component lookupKey(@Nullable String lookupKey);
+
   /**
    * Gets the group or {@code null} if undefined.
    */
@@ -25,6 +25,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static org.sonatype.nexus.repository.storage.StorageFacet.E_PART_OF_COMPONENT;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_GROUP;
+import static org.sonatype.nexus.repository.storage.StorageFacet.P_LOOKUP_KEY;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_NAME;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_VERSION;
 
@@ -41,6 +42,12 @@ class ComponentImpl
     super(vertex);
   }
 
+  @Override
+  public Component lookupKey(@Nullable String lookupKey) {
+    set(P_LOOKUP_KEY, lookupKey);
+    return this;
+  }
+
   @Override
   @Nullable
   public String group() {
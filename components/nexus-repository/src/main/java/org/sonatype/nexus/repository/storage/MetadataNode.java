@@ -42,6 +42,15 @@ public interface MetadataNode
    */
   String format();
 
+  /**
+   * Gets the format-defined lookup key of this node, or {@code null} if undefined.
+   *
+   * Lookup keys are indexed per bucket, see {@link StorageTx#findAssetWithLookupKey(String, Bucket)} and
+   * {@link StorageTx#findComponentWithLookupKey(String, Bucket)}.
+   */
+  @Nullable
+  String lookupKey();
+
   /**
    * Gets the "attributes" property of this node, a map of maps that is possibly empty, but never {@code null}.
    */
@@ -25,6 +25,7 @@ import org.joda.time.DateTime;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_ATTRIBUTES;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_FORMAT;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_LAST_UPDATED;
+import static org.sonatype.nexus.repository.storage.StorageFacet.P_LOOKUP_KEY;
 
 /**
  * Supporting base class for {@link MetadataNode} implementations.
@@ -58,6 +59,12 @@ abstract class MetadataNodeSupport
     return require(P_FORMAT);
   }
 
+  @Override
+  @Nullable
+  public String lookupKey() {
+    return get(P_LOOKUP_KEY);
+  }
+
   @Override
   @Nullable
   public DateTime lastUpdated() {
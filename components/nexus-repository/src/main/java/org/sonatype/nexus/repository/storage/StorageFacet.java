@@ -12,6 +12,8 @@
  */
 package org.sonatype.nexus.repository.storage;
 
+import javax.annotation.Nullable;
+
 import org.sonatype.nexus.repository.Facet;
 
 /**
@@ -37,6 +39,8 @@ public interface StorageFacet
 
   static String P_BLOB_REF = "blob_ref";
 
+  static String P_BUCKET = "bucket";
+
   static String P_CHECKSUM = "checksum";
 
   static String P_CONTENT_TYPE = "content_type";
@@ -47,6 +51,10 @@ public interface StorageFacet
 
   static String P_LAST_UPDATED = "last_updated";
 
+  static String P_LOOKUP_KEY = "lookup_key";
+
+  static String P_LOOKUP_KEYS_BACKFILLED = "lookup_keys_backfilled";
+
   static String P_NAME = "name";
 
   static String P_PATH = "path";
@@ -65,6 +73,19 @@ public interface StorageFacet
 
   static String V_BUCKET = "bucket";
 
+  static String I_ASSET_LOOKUP_KEY = "asset_bucket_lookup_key_idx";
+
+  static String I_COMPONENT_LOOKUP_KEY = "component_bucket_lookup_key_idx";
+
+  static String I_COMPONENT_NAME_VERSION = "component_name_version_idx";
+
+  /**
+   * Registers the format attributes the {@link MetadataNode#lookupKey() lookup keys} of components and assets are
+   * kept in. Content stored before lookup keys were introduced gets its keys backfilled from these attributes, once
+   * both this facet is started and the attributes are registered.
+   */
+  void registerLookupKeyAttributes(@Nullable String componentKeyAttribute, @Nullable String assetKeyAttribute);
+
   /**
    * Opens a transaction.
    */
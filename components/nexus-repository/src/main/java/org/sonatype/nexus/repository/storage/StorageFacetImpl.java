@@ -36,6 +36,7 @@ import com.google.common.collect.Iterables;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.hook.ODocumentHookAbstract;
 import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OClass.INDEX_TYPE;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.tinkerpop.blueprints.Parameter;
@@ -60,6 +61,10 @@ public class StorageFacetImpl
 {
   public static final String CONFIG_KEY = "storage";
 
+  private static final Object SCHEMA_LOCK = new Object();
+
+  private static final int BACKFILL_BATCH_SIZE = 1000;
+
   private final BlobStoreManager blobStoreManager;
 
   private final Provider<DatabaseInstance> databaseInstanceProvider;
@@ -70,6 +75,12 @@ public class StorageFacetImpl
 
   private ORID bucketId;
 
+  @Nullable
+  private String componentKeyAttribute;
+
+  @Nullable
+  private String assetKeyAttribute;
+
   @Inject
   public StorageFacetImpl(final BlobStoreManager blobStoreManager,
                           final @Named(ComponentDatabase.NAME) Provider<DatabaseInstance> databaseInstanceProvider,
@@ -95,6 +106,13 @@ public class StorageFacetImpl
   }
 
   private void initSchema() {
+    // repositories may be restored in parallel; the schema is shared, so check-then-create must not interleave
+    synchronized (SCHEMA_LOCK) {
+      doInitSchema();
+    }
+  }
+
+  private void doInitSchema() {
     // initialize the graph schema if needed
     final CheckedGraphNoTx graph = new CheckedGraphNoTx(databaseInstanceProvider.get().acquire());
     graph.setUseLightweightEdges(true);
@@ -123,6 +141,10 @@ public class StorageFacetImpl
       initVertexType(graph, V_COMPONENT, null);
       initVertexType(graph, V_LABEL, null);
 
+      initLookupKeyIndex(graph, V_ASSET, I_ASSET_LOOKUP_KEY);
+      initLookupKeyIndex(graph, V_COMPONENT, I_COMPONENT_LOOKUP_KEY);
+      initComponentNameVersionIndex(graph);
+
       initEdgeType(graph, E_CONTAINS_COMPONENTS_WITH_LABEL, null);
       initEdgeType(graph, E_HAS_LABEL, null);
       initEdgeType(graph, E_OWNS_ASSET, null);
@@ -152,6 +174,39 @@ public class StorageFacetImpl
     }
   }
 
+  /**
+   * Indexes components by name and version, which formats use to find all versions of a package or one version.
+   */
+  private void initComponentNameVersionIndex(CheckedGraphNoTx graph) {
+    OrientVertexType type = graph.getVertexType(V_COMPONENT);
+    if (type.getProperty(P_NAME) == null) {
+      type.createProperty(P_NAME, OType.STRING);
+    }
+    if (type.getProperty(P_VERSION) == null) {
+      type.createProperty(P_VERSION, OType.STRING);
+    }
+    if (type.getClassIndex(I_COMPONENT_NAME_VERSION) == null) {
+      type.createIndex(I_COMPONENT_NAME_VERSION, INDEX_TYPE.NOTUNIQUE, P_NAME, P_VERSION);
+    }
+  }
+
+  /**
+   * Ensures the (bucket, lookup key) composite index exists on the given vertex type, also on schemas created before
+   * lookup keys were introduced.
+   */
+  private void initLookupKeyIndex(CheckedGraphNoTx graph, String name, String indexName) {
+    OrientVertexType type = graph.getVertexType(name);
+    if (type.getProperty(P_BUCKET) == null) {
+      type.createProperty(P_BUCKET, OType.LINK, graph.getVertexType(V_BUCKET));
+    }
+    if (type.getProperty(P_LOOKUP_KEY) == null) {
+      type.createProperty(P_LOOKUP_KEY, OType.STRING);
+    }
+    if (type.getClassIndex(indexName) == null) {
+      type.createIndex(indexName, INDEX_TYPE.NOTUNIQUE, P_BUCKET, P_LOOKUP_KEY);
+    }
+  }
+
   private void initEdgeType(CheckedGraphNoTx graph, String name, @Nullable Predicate<OrientEdgeType> predicate) {
     if (graph.getEdgeType(name) == null) {
       OrientEdgeType type = graph.createEdgeType(name);
@@ -169,12 +224,81 @@ public class StorageFacetImpl
       if (bucketVertex == null) {
         bucketVertex = graphTx.addVertex(V_BUCKET, (String) null);
         bucketVertex.setProperty(P_REPOSITORY_NAME, repositoryName);
+        // new buckets only ever hold content with lookup keys
+        bucketVertex.setProperty(P_LOOKUP_KEYS_BACKFILLED, true);
         graphTx.commit();
       }
       bucketId = (ORID) bucketVertex.getId();
     }
   }
 
+  @Override
+  public void registerLookupKeyAttributes(@Nullable final String componentKeyAttribute,
+                                          @Nullable final String assetKeyAttribute)
+  {
+    this.componentKeyAttribute = componentKeyAttribute;
+    this.assetKeyAttribute = assetKeyAttribute;
+
+    // format facets may start before or after this one
+    if (states.is(STARTED)) {
+      backfillLookupKeys();
+    }
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    if (componentKeyAttribute != null || assetKeyAttribute != null) {
+      backfillLookupKeys();
+    }
+  }
+
+  /**
+   * Sets the bucket link and lookup key of components and assets stored before lookup keys were introduced, so they
+   * are found through the lookup key indexes. Runs once per bucket, the bucket is marked when done.
+   */
+  private void backfillLookupKeys() {
+    try (StorageTx tx = openStorageTx(false)) {
+      Bucket bucket = tx.getBucket();
+      if (Boolean.TRUE.equals(bucket.vertex().getProperty(P_LOOKUP_KEYS_BACKFILLED))) {
+        return;
+      }
+
+      log.info("Backfilling lookup keys of repository: {}", getRepository().getName());
+      int updated = 0;
+      for (Component component : tx.browseComponents(bucket)) {
+        if (backfillLookupKey(component, bucket, componentKeyAttribute) && ++updated % BACKFILL_BATCH_SIZE == 0) {
+          tx.commit();
+        }
+      }
+      for (Asset asset : tx.browseAssets(bucket)) {
+        if (backfillLookupKey(asset, bucket, assetKeyAttribute) && ++updated % BACKFILL_BATCH_SIZE == 0) {
+          tx.commit();
+        }
+      }
+      bucket.vertex().setProperty(P_LOOKUP_KEYS_BACKFILLED, true);
+      tx.commit();
+      log.info("Backfilled lookup keys of {} components and assets of repository: {}", updated,
+          getRepository().getName());
+    }
+  }
+
+  private boolean backfillLookupKey(final MetadataNode node, final Bucket bucket, @Nullable final String keyAttribute) {
+    OrientVertex vertex = node.vertex();
+    boolean updated = false;
+    if (vertex.getProperty(P_BUCKET) == null) {
+      vertex.setProperty(P_BUCKET, bucket.id(), OType.LINK);
+      updated = true;
+    }
+    if (keyAttribute != null && node.lookupKey() == null) {
+      String lookupKey = node.formatAttributes().get(keyAttribute, String.class);
+      if (lookupKey != null) {
+        vertex.setProperty(P_LOOKUP_KEY, lookupKey);
+        updated = true;
+      }
+    }
+    return updated;
+  }
+
   @Override
   protected void doDelete() throws Exception {
     // TODO: Make this a soft delete and cleanup later so it doesn't block for large repos.
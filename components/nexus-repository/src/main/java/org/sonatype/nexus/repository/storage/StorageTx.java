@@ -89,6 +89,13 @@ public interface StorageTx
   @Nullable
   Asset findAssetWithProperty(String propName, Object propValue, Bucket bucket);
 
+  /**
+   * Gets an asset by its {@link MetadataNode#lookupKey() lookup key}, owned by the specified bucket, or {@code null}
+   * if not found. Unlike {@link #findAssetWithProperty(String, Object, Bucket)}, this is always an index lookup.
+   */
+  @Nullable
+  Asset findAssetWithLookupKey(String lookupKey, Bucket bucket);
+
   /**
    * Gets all assets in the specified repositories that match the given where clause.
    *
@@ -126,6 +133,14 @@ public interface StorageTx
   @Nullable
   Component findComponentWithProperty(String propName, Object propValue, Bucket bucket);
 
+  /**
+   * Gets a component by its {@link MetadataNode#lookupKey() lookup key}, owned by the specified bucket, or
+   * {@code null} if not found. Unlike {@link #findComponentWithProperty(String, Object, Bucket)}, this is always an
+   * index lookup.
+   */
+  @Nullable
+  Component findComponentWithLookupKey(String lookupKey, Bucket bucket);
+
   /**
    * Gets all component in the specified repositories that match the given where clause.
    *
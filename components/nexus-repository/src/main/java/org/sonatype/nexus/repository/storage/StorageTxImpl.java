@@ -12,7 +12,9 @@
  */
 package org.sonatype.nexus.repository.storage;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -34,11 +36,17 @@ import org.sonatype.sisu.goodies.common.ComponentSupport;
 
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.hash.HashCode;
+import com.google.common.io.ByteStreams;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.index.OCompositeKey;
+import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.OCommandSQL;
@@ -49,6 +57,7 @@ import com.tinkerpop.blueprints.impls.orient.OrientVertex;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
 import static org.sonatype.nexus.repository.storage.StorageFacet.*;
 import static org.sonatype.nexus.repository.storage.StorageTxImpl.State.CLOSED;
 import static org.sonatype.nexus.repository.storage.StorageTxImpl.State.OPEN;
@@ -213,6 +222,40 @@ public class StorageTxImpl
     return Iterables.getFirst(vertices, null);
   }
 
+  @Nullable
+  @Override
+  @Guarded(by = OPEN)
+  public Asset findAssetWithLookupKey(final String lookupKey, final Bucket bucket) {
+    OrientVertex vertex = findWithLookupKey(I_ASSET_LOOKUP_KEY, lookupKey, bucket);
+    if (vertex == null) {
+      return null;
+    }
+    return new AssetImpl(vertex);
+  }
+
+  /**
+   * Resolves a vertex through the given (bucket, lookup key) composite index. Index changes of the current
+   * transaction are visible to the lookup.
+   */
+  @Nullable
+  private OrientVertex findWithLookupKey(final String indexName, final String lookupKey, final Bucket bucket) {
+    checkNotNull(lookupKey);
+    checkNotNull(bucket);
+
+    OIndex<?> index = graphTx.getRawGraph().getMetadata().getIndexManager().getIndex(indexName);
+    checkState(index != null, "Missing index: %s", indexName);
+
+    Object result = index.get(new OCompositeKey(bucket.id(), lookupKey));
+    OIdentifiable identifiable;
+    if (result instanceof Collection) {
+      identifiable = (OIdentifiable) Iterables.getFirst((Collection<?>) result, null);
+    }
+    else {
+      identifiable = (OIdentifiable) result;
+    }
+    return identifiable == null ? null : graphTx.getVertex(identifiable.getIdentity());
+  }
+
   @Override
   @Guarded(by = OPEN)
   public Iterable<Asset> findAssets(@Nullable String whereClause,
@@ -334,6 +377,17 @@ public class StorageTxImpl
     return new ComponentImpl(vertex);
   }
 
+  @Nullable
+  @Override
+  @Guarded(by = OPEN)
+  public Component findComponentWithLookupKey(final String lookupKey, final Bucket bucket) {
+    OrientVertex vertex = findWithLookupKey(I_COMPONENT_LOOKUP_KEY, lookupKey, bucket);
+    if (vertex == null) {
+      return null;
+    }
+    return new ComponentImpl(vertex);
+  }
+
   @Override
   @Guarded(by = OPEN)
   public Iterable<Component> findComponents(@Nullable String whereClause,
@@ -382,6 +436,7 @@ public class StorageTxImpl
 
   private Asset createAsset(final Bucket bucket, final String format) {
     OrientVertex vertex = createVertex(V_ASSET);
+    vertex.setProperty(P_BUCKET, bucket.id(), OType.LINK);
     vertex.setProperty(P_FORMAT, format);
     vertex.setProperty(P_ATTRIBUTES, ImmutableMap.of(), OType.EMBEDDEDMAP);
     graphTx.addEdge(null, bucket.vertex(), vertex, E_OWNS_ASSET);
@@ -403,6 +458,7 @@ public class StorageTxImpl
     checkNotNull(format);
 
     OrientVertex vertex = createVertex(V_COMPONENT);
+    vertex.setProperty(P_BUCKET, bucket.id(), OType.LINK);
     vertex.setProperty(P_FORMAT, format.getValue());
     vertex.setProperty(P_ATTRIBUTES, ImmutableMap.of(), OType.EMBEDDEDMAP);
     graphTx.addEdge(null, bucket.vertex(), vertex, E_OWNS_COMPONENT);
@@ -498,9 +554,12 @@ public class StorageTxImpl
       deleteBlob(oldBlobRef);
     }
 
-    // Store new blob while calculating hashes in one pass
-    final MultiHashingInputStream hashingStream = new MultiHashingInputStream(hashAlgorithms, inputStream);
-    final BlobRef newBlobRef = createBlob(hashingStream, headers);
+    // Store new blob while calculating hashes in one pass; the blob store already computes SHA1 as it writes
+    final List<HashAlgorithm> streamAlgorithms = Lists.newArrayList(hashAlgorithms);
+    final boolean reuseSha1 = streamAlgorithms.remove(SHA1);
+    final MultiHashingInputStream hashingStream = new MultiHashingInputStream(streamAlgorithms, inputStream);
+    final Blob newBlob = blobTx.store(hashingStream, headers);
+    final BlobRef newBlobRef = blobTx.refOf(newBlob);
 
     asset.blobRef(newBlobRef);
     asset.size(hashingStream.count());
@@ -508,6 +567,9 @@ public class StorageTxImpl
 
     // Set attributes map to contain computed checksum metadata
     Map<HashAlgorithm, HashCode> hashes = hashingStream.hashes();
+    if (reuseSha1) {
+      hashes.put(SHA1, sha1Of(newBlob));
+    }
     NestedAttributesMap checksums = asset.attributes().child(P_CHECKSUM);
     for (HashAlgorithm algorithm : hashAlgorithms) {
       checksums.set(algorithm.name(), hashes.get(algorithm).toString());
@@ -533,6 +595,24 @@ public class StorageTxImpl
     return blob;
   }
 
+  /**
+   * Returns the SHA1 recorded by the blob store, re-reading the blob only if the store did not provide one.
+   */
+  private HashCode sha1Of(final Blob blob) {
+    String sha1 = blob.getMetrics().getSHA1Hash();
+    if (sha1 != null) {
+      return HashCode.fromString(sha1);
+    }
+    try (InputStream in = blob.getInputStream()) {
+      MultiHashingInputStream hashingStream = new MultiHashingInputStream(ImmutableList.of(SHA1), in);
+      ByteStreams.copy(hashingStream, ByteStreams.nullOutputStream());
+      return hashingStream.hashes().get(SHA1);
+    }
+    catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
   private void deleteBlob(final BlobRef blobRef) {
     checkNotNull(blobRef);
 
@@ -14,6 +14,7 @@ package org.sonatype.nexus.repository.view.payloads;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.Map;
 import java.util.Set;
 
@@ -21,6 +22,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.sonatype.nexus.blobstore.api.Blob;
+import org.sonatype.nexus.blobstore.api.FileBackedBlob;
 import org.sonatype.nexus.common.hash.HashAlgorithm;
 import org.sonatype.nexus.repository.view.Payload;
 
@@ -71,6 +73,18 @@ public class BlobPayload
     return blob.getInputStream();
   }
 
+  /**
+   * Opens a channel to the content file of the blob, or returns {@code null} if its blob store does not keep blobs
+   * in files. Allows content to be sent without copying it through the heap.
+   */
+  @Nullable
+  public FileChannel openFileChannel() {
+    if (blob instanceof FileBackedBlob) {
+      return ((FileBackedBlob) blob).openChannel();
+    }
+    return null;
+  }
+
   @Override
   public long getSize() {
     return blob.getMetrics().getContentSize();
@@ -0,0 +1,237 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.group;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.ViewFacet;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.repository.http.HttpMethods.GET;
+
+/**
+ * Tests for {@link GroupHandler} parallel member dispatch.
+ */
+public class GroupHandlerTest
+    extends TestSupport
+{
+  private GroupHandler underTest;
+
+  @After
+  public void tearDown() {
+    if (underTest != null) {
+      underTest.shutdown();
+    }
+  }
+
+  @Test
+  public void firstSuccessfulMemberInOrderWins() throws Exception {
+    underTest = new GroupHandler(4, 10);
+    final CountDownLatch secondAnswered = new CountDownLatch(1);
+    final Response first = HttpResponses.ok();
+    final Response second = HttpResponses.ok();
+
+    Repository member1 = member("member1", new Answer<Response>()
+    {
+      @Override
+      public Response answer(final InvocationOnMock invocation) throws Throwable {
+        // answers after a lower priority member has already succeeded
+        secondAnswered.await(5, TimeUnit.SECONDS);
+        return first;
+      }
+    });
+    Repository member2 = member("member2", new Answer<Response>()
+    {
+      @Override
+      public Response answer(final InvocationOnMock invocation) throws Throwable {
+        secondAnswered.countDown();
+        return second;
+      }
+    });
+
+    assertThat(underTest.handle(context(true, member1, member2)), is(sameInstance(first)));
+  }
+
+  @Test
+  public void missingMembersAreSkipped() throws Exception {
+    underTest = new GroupHandler(4, 10);
+    Response found = HttpResponses.ok();
+
+    Repository member1 = member("member1", respond(HttpResponses.notFound()));
+    Repository member2 = member("member2", respond(found));
+    Repository member3 = member("member3", respond(HttpResponses.ok()));
+
+    assertThat(underTest.handle(context(true, member1, member2, member3)), is(sameInstance(found)));
+  }
+
+  @Test
+  public void notFoundWhenNoMemberHasContent() throws Exception {
+    underTest = new GroupHandler(4, 10);
+
+    Repository member1 = member("member1", respond(HttpResponses.notFound()));
+    Repository member2 = member("member2", respond(HttpResponses.notFound()));
+
+    assertThat(underTest.handle(context(true, member1, member2)).getStatus().getCode(), is(404));
+  }
+
+  @Test
+  public void runningLosersAreNotInterrupted() throws Exception {
+    underTest = new GroupHandler(4, 10);
+    final CountDownLatch loserStarted = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch loserDone = new CountDownLatch(1);
+    final AtomicBoolean interrupted = new AtomicBoolean();
+    final Response winner = HttpResponses.ok();
+
+    Repository member1 = member("member1", new Answer<Response>()
+    {
+      @Override
+      public Response answer(final InvocationOnMock invocation) throws Throwable {
+        // make sure the loser is running before the winner answers
+        loserStarted.await(5, TimeUnit.SECONDS);
+        return winner;
+      }
+    });
+    Repository member2 = member("member2", new Answer<Response>()
+    {
+      @Override
+      public Response answer(final InvocationOnMock invocation) throws Throwable {
+        loserStarted.countDown();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+          interrupted.set(true);
+        }
+        loserDone.countDown();
+        return HttpResponses.ok();
+      }
+    });
+
+    assertThat(underTest.handle(context(true, member1, member2)), is(sameInstance(winner)));
+    release.countDown();
+    assertThat(loserDone.await(5, TimeUnit.SECONDS), is(true));
+    assertThat(interrupted.get(), is(false));
+  }
+
+  @Test
+  public void saturatedPoolRunsMemberOnCaller() throws Exception {
+    underTest = new GroupHandler(1, 1);
+    final CountDownLatch callerRan = new CountDownLatch(1);
+    final AtomicReference<Thread> member3Thread = new AtomicReference<>();
+    final Response found = HttpResponses.ok();
+
+    Repository member1 = member("member1", new Answer<Response>()
+    {
+      @Override
+      public Response answer(final InvocationOnMock invocation) throws Throwable {
+        // hold the only pool thread until the rejected member has run on the caller
+        callerRan.await(5, TimeUnit.SECONDS);
+        return HttpResponses.notFound();
+      }
+    });
+    Repository member2 = member("member2", respond(found));
+    Repository member3 = member("member3", new Answer<Response>()
+    {
+      @Override
+      public Response answer(final InvocationOnMock invocation) throws Throwable {
+        member3Thread.set(Thread.currentThread());
+        callerRan.countDown();
+        return HttpResponses.ok();
+      }
+    });
+
+    assertThat(underTest.handle(context(true, member1, member2, member3)), is(sameInstance(found)));
+    assertThat(member3Thread.get(), is(sameInstance(Thread.currentThread())));
+  }
+
+  @Test
+  public void sequentialDispatchStopsAtFirstHit() throws Exception {
+    underTest = new GroupHandler(4, 10);
+    Response found = HttpResponses.ok();
+    final AtomicBoolean member3Called = new AtomicBoolean();
+
+    Repository member1 = member("member1", respond(HttpResponses.notFound()));
+    Repository member2 = member("member2", respond(found));
+    Repository member3 = member("member3", new Answer<Response>()
+    {
+      @Override
+      public Response answer(final InvocationOnMock invocation) throws Throwable {
+        member3Called.set(true);
+        return HttpResponses.ok();
+      }
+    });
+
+    assertThat(underTest.handle(context(false, member1, member2, member3)), is(sameInstance(found)));
+    assertThat(member3Called.get(), is(false));
+  }
+
+  private Context context(final boolean parallel, final Repository... members) {
+    GroupFacet groupFacet = mock(GroupFacet.class);
+    when(groupFacet.isParallelDispatch()).thenReturn(parallel);
+    when(groupFacet.members()).thenReturn(Arrays.asList(members));
+
+    Repository group = mock(Repository.class);
+    when(group.getName()).thenReturn("group");
+    when(group.facet(GroupFacet.class)).thenReturn(groupFacet);
+
+    Request request = new Request()
+    {
+      {
+        action = GET;
+        path = "/foo";
+      }
+    };
+    return new Context(group, request);
+  }
+
+  private Repository member(final String name, final Answer<Response> answer) throws Exception {
+    ViewFacet viewFacet = mock(ViewFacet.class);
+    when(viewFacet.dispatch(any(Request.class))).thenAnswer(answer);
+
+    Repository member = mock(Repository.class);
+    when(member.getName()).thenReturn(name);
+    when(member.facet(ViewFacet.class)).thenReturn(viewFacet);
+    return member;
+  }
+
+  private static Answer<Response> respond(final Response response) {
+    return new Answer<Response>()
+    {
+      @Override
+      public Response answer(final InvocationOnMock invocation) throws Throwable {
+        return response;
+      }
+    };
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.manager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.sonatype.nexus.repository.Format;
+import org.sonatype.nexus.repository.Recipe;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.Type;
+import org.sonatype.nexus.repository.config.Configuration;
+import org.sonatype.nexus.repository.config.ConfigurationFacet;
+import org.sonatype.nexus.repository.config.ConfigurationStore;
+import org.sonatype.nexus.repository.group.GroupFacetImpl;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RepositoryManagerImpl}.
+ */
+public class RepositoryManagerImplTest
+    extends TestSupport
+{
+  @Mock
+  private EventBus eventBus;
+
+  @Mock
+  private ConfigurationStore store;
+
+  @Mock
+  private RepositoryFactory factory;
+
+  @Mock
+  private RepositoryAdminSecurityConfigurationResource securityResource;
+
+  private final Map<String, Recipe> recipes = Maps.newHashMap();
+
+  private final List<Configuration> configurations = Lists.newArrayList();
+
+  private final Map<String, Repository> repositories = Maps.newHashMap();
+
+  private final List<String> started = Collections.synchronizedList(Lists.<String>newArrayList());
+
+  private RepositoryManagerImpl underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    when(store.list()).thenReturn(configurations);
+    underTest = new RepositoryManagerImpl(eventBus, store, factory, new Provider<ConfigurationFacet>()
+    {
+      @Override
+      public ConfigurationFacet get() {
+        return mock(ConfigurationFacet.class);
+      }
+    }, recipes, securityResource, Collections.<DefaultRepositoriesContributor>emptyList(), 4);
+  }
+
+  @Test
+  public void groupStartsAfterItsMembers() throws Exception {
+    configure("group", "member-1", "member-2");
+    configure("member-1");
+    configure("member-2");
+    configure("other");
+
+    underTest.start();
+
+    assertThat(started, containsInAnyOrder("group", "member-1", "member-2", "other"));
+    assertThat(started.indexOf("group"), greaterThan(started.indexOf("member-1")));
+    assertThat(started.indexOf("group"), greaterThan(started.indexOf("member-2")));
+  }
+
+  @Test
+  public void nestedGroupStartsAfterInnerGroup() throws Exception {
+    configure("outer", "inner");
+    configure("inner", "member");
+    configure("member");
+
+    underTest.start();
+
+    assertThat(started, is((List<String>) Lists.newArrayList("member", "inner", "outer")));
+  }
+
+  @Test
+  public void cyclicMembershipStartsRemainingRepositoriesInConfigurationOrder() throws Exception {
+    configure("group-1", "group-2");
+    configure("group-2", "group-1", "member");
+    configure("member");
+
+    underTest.start();
+
+    assertThat(started, is((List<String>) Lists.newArrayList("member", "group-1", "group-2")));
+  }
+
+  @Test
+  public void failureToStartRepositoryPropagates() throws Exception {
+    configure("group", "broken");
+    configure("broken");
+    configure("other");
+    doThrow(new IllegalStateException("boom")).when(repositories.get("broken")).start();
+
+    try {
+      underTest.start();
+      fail();
+    }
+    catch (IllegalStateException e) {
+      assertThat(e.getMessage(), is("boom"));
+    }
+    assertThat(started.contains("group"), is(false));
+  }
+
+  @Test
+  public void failureToRestoreRepositoryPropagates() throws Exception {
+    configure("broken");
+    configure("other");
+    doThrow(new IllegalStateException("boom")).when(repositories.get("broken")).init(any(Configuration.class));
+
+    try {
+      underTest.start();
+      fail();
+    }
+    catch (IllegalStateException e) {
+      assertThat(e.getMessage(), is("boom"));
+    }
+    assertThat(started.isEmpty(), is(true));
+    verify(repositories.get("other")).destroy();
+    verify(securityResource).remove(repositories.get("other"));
+    verify(repositories.get("other"), never()).start();
+  }
+
+  /**
+   * Configures a repository with its own recipe, being a group of given members if there are any.
+   */
+  private void configure(final String name, final String... memberNames) throws Exception {
+    Configuration configuration = new Configuration();
+    configuration.setRepositoryName(name);
+    configuration.setRecipeName(name);
+    if (memberNames.length > 0) {
+      Map<String, Map<String, Object>> attributes = Maps.newHashMap();
+      attributes.put(GroupFacetImpl.CONFIG_KEY,
+          Maps.<String, Object>newHashMap(ImmutableMap.of("memberNames", Lists.newArrayList(memberNames))));
+      configuration.setAttributes(attributes);
+    }
+    configurations.add(configuration);
+
+    Type type = mock(Type.class);
+    Recipe recipe = mock(Recipe.class);
+    when(recipe.getType()).thenReturn(type);
+    recipes.put(name, recipe);
+
+    final Repository repository = mock(Repository.class);
+    when(repository.getName()).thenReturn(name);
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(final InvocationOnMock invocation) {
+        started.add(name);
+        return null;
+      }
+    }).when(repository).start();
+    when(factory.create(eq(type), any(Format.class))).thenReturn(repository);
+    repositories.put(name, repository);
+  }
+}
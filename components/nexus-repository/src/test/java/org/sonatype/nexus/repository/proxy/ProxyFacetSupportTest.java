@@ -0,0 +1,208 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.proxy;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.config.Configuration;
+import org.sonatype.nexus.repository.httpclient.HttpClientFacet;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.payloads.StringPayload;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ProxyFacetSupport} fetch coalescing.
+ */
+public class ProxyFacetSupportTest
+    extends TestSupport
+{
+  private static final int CALLERS = 8;
+
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private Request request;
+
+  @Mock
+  private EventBus eventBus;
+
+  private TestProxyFacet underTest;
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration configuration = new Configuration();
+    configuration.setAttributes(ImmutableMap.<String, Map<String, Object>>of(
+        ProxyFacetSupport.CONFIG_KEY, ImmutableMap.<String, Object>of(
+            "remoteUrl", "http://example.com/repo",
+            "artifactMaxAge", 60
+        )
+    ));
+    when(repository.getName()).thenReturn("proxy-test");
+    when(repository.getConfiguration()).thenReturn(configuration);
+    when(repository.facet(HttpClientFacet.class)).thenReturn(null);
+
+    underTest = new TestProxyFacet();
+    underTest.installDependencies(eventBus);
+    underTest.init(repository);
+    underTest.start();
+
+    executor = Executors.newFixedThreadPool(CALLERS);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void concurrentMissesShareOneFetch() throws Exception {
+    List<Future<Payload>> results = submitCallers();
+
+    // let every caller reach the in-flight table before the leader completes
+    assertThat(underTest.fetchStarted.await(5, TimeUnit.SECONDS), is(true));
+    Thread.sleep(200);
+    underTest.releaseFetch.countDown();
+
+    for (Future<Payload> result : results) {
+      assertThat(result.get(5, TimeUnit.SECONDS), is((Payload) underTest.stored));
+    }
+    assertThat(underTest.fetchCount.get(), is(equalTo(1)));
+    assertThat(underTest.storeCount.get(), is(equalTo(1)));
+  }
+
+  @Test
+  public void leaderFailureIsSeenByFollowers() throws Exception {
+    underTest.failFetch = true;
+    List<Future<Payload>> results = submitCallers();
+
+    assertThat(underTest.fetchStarted.await(5, TimeUnit.SECONDS), is(true));
+    Thread.sleep(200);
+    underTest.releaseFetch.countDown();
+
+    for (Future<Payload> result : results) {
+      try {
+        result.get(5, TimeUnit.SECONDS);
+        fail();
+      }
+      catch (ExecutionException e) {
+        assertThat(e.getCause() instanceof IOException, is(true));
+      }
+    }
+    assertThat(underTest.fetchCount.get(), is(equalTo(1)));
+  }
+
+  private List<Future<Payload>> submitCallers() {
+    List<Future<Payload>> results = Lists.newArrayList();
+    for (int i = 0; i < CALLERS; i++) {
+      results.add(executor.submit(new Callable<Payload>()
+      {
+        @Override
+        public Payload call() throws Exception {
+          return underTest.get(new Context(repository, request));
+        }
+      }));
+    }
+    return results;
+  }
+
+  private static class TestProxyFacet
+      extends ProxyFacetSupport
+  {
+    private final CountDownLatch fetchStarted = new CountDownLatch(1);
+
+    private final CountDownLatch releaseFetch = new CountDownLatch(1);
+
+    private final AtomicInteger fetchCount = new AtomicInteger();
+
+    private final AtomicInteger storeCount = new AtomicInteger();
+
+    private volatile boolean failFetch;
+
+    private volatile Payload stored;
+
+    @Override
+    protected Payload fetch(final Context context) throws IOException {
+      fetchCount.incrementAndGet();
+      fetchStarted.countDown();
+      try {
+        releaseFetch.await();
+      }
+      catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (failFetch) {
+        throw new IOException("remote unavailable");
+      }
+      return new StringPayload("content", "text/plain");
+    }
+
+    @Override
+    protected Payload getCachedPayload(final Context context) throws IOException {
+      return stored;
+    }
+
+    @Override
+    protected void store(final Context context, final Payload payload) throws IOException {
+      storeCount.incrementAndGet();
+      stored = payload;
+    }
+
+    @Override
+    protected DateTime getCachedPayloadLastUpdatedDate(final Context context) throws IOException {
+      return stored != null ? new DateTime() : null;
+    }
+
+    @Override
+    protected void indicateUpToDate(final Context context) throws IOException {
+      // nop
+    }
+
+    @Override
+    protected String getUrl(final @Nonnull Context context) {
+      return "org/example/artifact/1.0/artifact-1.0.jar";
+    }
+  }
+}
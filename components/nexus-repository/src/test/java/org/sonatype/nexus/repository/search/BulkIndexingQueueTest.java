@@ -0,0 +1,247 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.search;
+
+import javax.inject.Provider;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ListenableActionFuture;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequestBuilder;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link BulkIndexingQueue}.
+ */
+public class BulkIndexingQueueTest
+    extends TestSupport
+{
+  @Mock
+  private Client client;
+
+  @Mock
+  private BulkRequestBuilder bulk;
+
+  @Mock
+  private IndexRequestBuilder index;
+
+  @Mock
+  private DeleteRequestBuilder delete;
+
+  @Mock
+  private ListenableActionFuture<BulkResponse> future;
+
+  @Mock
+  private BulkResponse response;
+
+  private BulkIndexingQueue underTest;
+
+  @Before
+  public void setUp() {
+    when(client.prepareBulk()).thenReturn(bulk);
+    when(client.prepareIndex(anyString(), anyString(), anyString())).thenReturn(index);
+    when(index.setSource(anyString())).thenReturn(index);
+    when(client.prepareDelete(anyString(), anyString(), anyString())).thenReturn(delete);
+    when(bulk.execute()).thenReturn(future);
+    when(future.actionGet()).thenReturn(response);
+
+    // large interval and batch size, so only explicit flushes send anything
+    underTest = newQueue(100, 1000);
+  }
+
+  private BulkIndexingQueue newQueue(final int batchSize, final int capacity) {
+    return new BulkIndexingQueue(new Provider<Client>()
+    {
+      @Override
+      public Client get() {
+        return client;
+      }
+    }, batchSize, capacity, 60000L, 3);
+  }
+
+  @After
+  public void tearDown() {
+    underTest.shutdown();
+  }
+
+  @Test
+  public void repeatedUpdatesCoalesce() {
+    underTest.put("repo", "1", "{\"v\":1}");
+    underTest.put("repo", "1", "{\"v\":2}");
+    underTest.put("repo", "2", "{\"v\":1}");
+    assertThat(underTest.size(), is(2));
+
+    underTest.flush();
+
+    assertThat(underTest.size(), is(0));
+    verify(client, times(1)).prepareBulk();
+    // only the latest source of document 1 is sent, document 2 has the same source as the superseded one
+    verify(index, times(1)).setSource("{\"v\":1}");
+    verify(index, times(1)).setSource("{\"v\":2}");
+    verify(client).prepareIndex("repo", SearchServiceImpl.TYPE, "1");
+    verify(client).prepareIndex("repo", SearchServiceImpl.TYPE, "2");
+  }
+
+  @Test
+  public void deleteReplacesPendingPut() {
+    underTest.put("repo", "1", "{}");
+    underTest.delete("repo", "1");
+
+    underTest.flush();
+
+    verify(client, never()).prepareIndex(anyString(), anyString(), anyString());
+    verify(client).prepareDelete("repo", SearchServiceImpl.TYPE, "1");
+  }
+
+  @Test
+  public void discardDropsPendingOperationsOfIndex() {
+    underTest.put("repo", "1", "{}");
+    underTest.put("other", "1", "{}");
+
+    underTest.discard("repo");
+    underTest.flush();
+
+    verify(client, never()).prepareIndex("repo", SearchServiceImpl.TYPE, "1");
+    verify(client).prepareIndex("other", SearchServiceImpl.TYPE, "1");
+  }
+
+  @Test
+  public void emptyFlushSendsNothing() {
+    underTest.flush();
+
+    verify(bulk, never()).add(any(IndexRequestBuilder.class));
+    verify(client, never()).prepareBulk();
+  }
+
+  @Test
+  public void failedBulkRequestIsRequeued() {
+    underTest.put("repo", "1", "{}");
+    underTest.put("repo", "2", "{}");
+    when(future.actionGet()).thenThrow(new ElasticsearchException("unavailable")).thenReturn(response);
+
+    try {
+      underTest.flush();
+      fail();
+    }
+    catch (ElasticsearchException e) {
+      // expected
+    }
+    assertThat(underTest.size(), is(2));
+
+    underTest.flush();
+
+    assertThat(underTest.size(), is(0));
+    verify(client, times(2)).prepareIndex("repo", SearchServiceImpl.TYPE, "1");
+    verify(client, times(2)).prepareIndex("repo", SearchServiceImpl.TYPE, "2");
+  }
+
+  @Test
+  public void retryDoesNotReplaceNewerOperation() {
+    underTest.put("repo", "1", "{\"v\":1}");
+    when(future.actionGet()).thenAnswer(new Answer<BulkResponse>()
+    {
+      @Override
+      public BulkResponse answer(final InvocationOnMock invocation) throws Throwable {
+        // document changes while the failing request is in flight
+        underTest.put("repo", "1", "{\"v\":2}");
+        throw new ElasticsearchException("unavailable");
+      }
+    }).thenReturn(response);
+
+    try {
+      underTest.flush();
+      fail();
+    }
+    catch (ElasticsearchException e) {
+      // expected
+    }
+    underTest.flush();
+
+    verify(index, times(1)).setSource("{\"v\":1}");
+    verify(index, times(1)).setSource("{\"v\":2}");
+  }
+
+  @Test
+  public void retriesAreBounded() {
+    underTest.put("repo", "1", "{}");
+    when(future.actionGet()).thenThrow(new ElasticsearchException("unavailable"));
+
+    // first attempt and three retries
+    for (int i = 0; i < 4; i++) {
+      assertThat(underTest.size(), is(1));
+      try {
+        underTest.flush();
+        fail();
+      }
+      catch (ElasticsearchException e) {
+        // expected
+      }
+    }
+
+    assertThat(underTest.size(), is(0));
+  }
+
+  @Test
+  public void failedItemsAreRequeued() {
+    underTest.put("repo", "1", "{}");
+    underTest.put("repo", "2", "{}");
+    BulkItemResponse succeeded = mock(BulkItemResponse.class);
+    BulkItemResponse failed = mock(BulkItemResponse.class);
+    when(failed.isFailed()).thenReturn(true);
+    when(failed.getItemId()).thenReturn(1);
+    when(response.hasFailures()).thenReturn(true, false);
+    when(response.getItems()).thenReturn(new BulkItemResponse[]{succeeded, failed});
+
+    underTest.flush();
+    assertThat(underTest.size(), is(1));
+
+    underTest.flush();
+    assertThat(underTest.size(), is(0));
+    verify(client, times(1)).prepareIndex("repo", SearchServiceImpl.TYPE, "1");
+    verify(client, times(2)).prepareIndex("repo", SearchServiceImpl.TYPE, "2");
+  }
+
+  @Test
+  public void capacityFlushDoesNotFailCaller() {
+    underTest.shutdown();
+    underTest = newQueue(1, 1);
+    when(future.actionGet()).thenThrow(new ElasticsearchException("unavailable"));
+
+    underTest.put("repo", "1", "{}");
+
+    verify(bulk).execute();
+    assertThat(underTest.size(), is(1));
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.search;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.manager.RepositoryManager;
+import org.sonatype.nexus.repository.storage.Bucket;
+import org.sonatype.nexus.repository.storage.Component;
+import org.sonatype.nexus.repository.storage.StorageFacet;
+import org.sonatype.nexus.repository.storage.StorageTx;
+import org.sonatype.nexus.security.SecurityHelper;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.node.Node;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.elasticsearch.node.NodeBuilder.nodeBuilder;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Integration tests for index rebuilds of {@link SearchServiceImpl}, against a local Elasticsearch node.
+ */
+public class SearchServiceImplIT
+    extends TestSupport
+{
+  private static final String REPOSITORY = "repo";
+
+  private Node node;
+
+  private BulkIndexingQueue indexingQueue;
+
+  private SearchServiceImpl underTest;
+
+  private Repository repository;
+
+  private StorageTx tx;
+
+  private ComponentMetadataProducer producer;
+
+  private final Map<ORID, Component> components = Maps.newLinkedHashMap();
+
+  @Before
+  public void setUp() throws Exception {
+    node = nodeBuilder().local(true).settings(ImmutableSettings.settingsBuilder()
+        .put("cluster.name", getClass().getSimpleName())
+        .put("path.home", util.createTempDir("es").getAbsolutePath())
+        .put("http.enabled", false)
+        .put("index.number_of_shards", 1)
+        .put("index.number_of_replicas", 0))
+        .node();
+    final Client client = node.client();
+    Provider<Client> clientProvider = new Provider<Client>()
+    {
+      @Override
+      public Client get() {
+        return client;
+      }
+    };
+
+    indexingQueue = new BulkIndexingQueue(clientProvider, 100, 1000, 60000L, 3);
+    producer = mock(ComponentMetadataProducer.class);
+    ComponentMetadataFactory metadataFactory =
+        new ComponentMetadataFactory(ImmutableMap.of("default", producer));
+    underTest = new SearchServiceImpl(clientProvider, mock(RepositoryManager.class), mock(SecurityHelper.class),
+        Collections.<IndexSettingsContributor>emptyList(), indexingQueue, metadataFactory, 1, 1);
+
+    tx = mock(StorageTx.class);
+    Bucket bucket = mock(Bucket.class);
+    when(tx.getBucket()).thenReturn(bucket);
+    when(tx.browseComponents(bucket)).thenAnswer(new Answer<Iterable<Component>>()
+    {
+      @Override
+      public Iterable<Component> answer(final InvocationOnMock invocation) {
+        return Lists.newArrayList(components.values());
+      }
+    });
+    when(tx.findComponent(any(ORID.class), any(Bucket.class))).thenAnswer(new Answer<Component>()
+    {
+      @Override
+      public Component answer(final InvocationOnMock invocation) {
+        return components.get(invocation.getArguments()[0]);
+      }
+    });
+    when(producer.getMetadata(any(Component.class))).thenReturn("{\"name\":\"test\"}");
+
+    StorageFacet storageFacet = mock(StorageFacet.class);
+    when(storageFacet.openTx()).thenReturn(tx);
+    repository = mock(Repository.class);
+    when(repository.getName()).thenReturn(REPOSITORY);
+    when(repository.facet(StorageFacet.class)).thenReturn(storageFacet);
+  }
+
+  @After
+  public void tearDown() {
+    if (indexingQueue != null) {
+      indexingQueue.shutdown();
+    }
+    if (node != null) {
+      node.close();
+    }
+  }
+
+  @Test
+  public void rebuildSwapsAliasToNewIndex() throws Exception {
+    underTest.createIndex(repository);
+    List<String> previous = aliasedIndexes();
+    assertThat(previous.size(), is(1));
+
+    // document not backed by storage anymore
+    underTest.put(repository, metadata("#9:9"));
+    underTest.flush();
+    assertThat(exists("#9:9"), is(true));
+
+    Component a = component(0);
+    Component b = component(1);
+    underTest.rebuildIndex(repository);
+
+    List<String> current = aliasedIndexes();
+    assertThat(current.size(), is(1));
+    assertThat(current, not(contains(previous.get(0))));
+    assertThat(indexExists(previous.get(0)), is(false));
+    assertThat(exists(a.id().toString()), is(true));
+    assertThat(exists(b.id().toString()), is(true));
+    assertThat(exists("#9:9"), is(false));
+  }
+
+  @Test
+  public void rebuildReplacesUnaliasedIndex() throws Exception {
+    // index as created before indexes were aliased
+    node.client().admin().indices().prepareCreate(REPOSITORY).execute().actionGet();
+    Component a = component(0);
+
+    underTest.rebuildIndex(repository);
+
+    List<String> current = aliasedIndexes();
+    assertThat(current.size(), is(1));
+    assertThat(current, not(contains(REPOSITORY)));
+    assertThat(exists(a.id().toString()), is(true));
+  }
+
+  @Test
+  public void liveChangesDuringRebuildAreMirrored() throws Exception {
+    underTest.createIndex(repository);
+    final Component deleted = component(0);
+    final Component kept = component(1);
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    when(producer.getMetadata(deleted)).thenAnswer(new Answer<String>()
+    {
+      @Override
+      public String answer(final InvocationOnMock invocation) throws Throwable {
+        // worker has loaded the component, hold it until it was deleted live
+        loading.countDown();
+        release.await(10, TimeUnit.SECONDS);
+        return "{\"name\":\"deleted\"}";
+      }
+    });
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Void> rebuild = executor.submit(new Callable<Void>()
+      {
+        @Override
+        public Void call() {
+          underTest.rebuildIndex(repository);
+          return null;
+        }
+      });
+      assertThat(loading.await(10, TimeUnit.SECONDS), is(true));
+
+      components.remove(deleted.id());
+      underTest.delete(repository, deleted.id().toString());
+      underTest.put(repository, metadata("#9:9"));
+      release.countDown();
+
+      rebuild.get(30, TimeUnit.SECONDS);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    underTest.flush();
+
+    assertThat(exists(deleted.id().toString()), is(false));
+    assertThat(exists(kept.id().toString()), is(true));
+    assertThat(exists("#9:9"), is(true));
+  }
+
+  private Component component(final int position) {
+    ORID id = new ORecordId(1, position);
+    Component component = mock(Component.class);
+    when(component.id()).thenReturn(id);
+    when(component.format()).thenReturn("test");
+    components.put(id, component);
+    return component;
+  }
+
+  private ComponentMetadata metadata(final String id) {
+    return new ComponentMetadataFactory(Collections.<String, ComponentMetadataProducer>emptyMap())
+        .from(id, "{\"name\":\"live\"}");
+  }
+
+  private List<String> aliasedIndexes() {
+    return Lists.newArrayList(node.client().admin().indices().prepareGetAliases(REPOSITORY).execute().actionGet()
+        .getAliases().keysIt());
+  }
+
+  private boolean indexExists(final String index) {
+    return node.client().admin().indices().prepareExists(index).execute().actionGet().isExists();
+  }
+
+  private boolean exists(final String id) {
+    node.client().admin().cluster().prepareHealth().setWaitForYellowStatus().execute().actionGet();
+    return node.client().prepareGet(REPOSITORY, SearchServiceImpl.TYPE, id).execute().actionGet().isExists();
+  }
+}
@@ -50,6 +50,8 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_ATTRIBUTES;
+import static org.sonatype.nexus.repository.storage.StorageFacet.P_BUCKET;
+import static org.sonatype.nexus.repository.storage.StorageFacet.P_LOOKUP_KEYS_BACKFILLED;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_PATH;
 import static org.sonatype.nexus.repository.storage.StorageFacet.V_ASSET;
 
@@ -340,6 +342,88 @@ public class StorageFacetImplIT
     }
   }
 
+  @Test
+  public void lookupKeyTest() {
+    try (StorageTx tx = underTest.openTx()) {
+      Bucket bucket = tx.getBucket();
+
+      Asset asset = tx.createAsset(bucket, testFormat).lookupKey("asset-key");
+      Component component = tx.createComponent(bucket, testFormat).name("name").lookupKey("component-key");
+      tx.commit();
+
+      assertThat(asset.lookupKey(), is("asset-key"));
+      assertNull(tx.findAssetWithLookupKey("nomatch", bucket));
+      assertThat(tx.findAssetWithLookupKey("asset-key", bucket), is(asset));
+
+      assertThat(component.lookupKey(), is("component-key"));
+      assertNull(tx.findComponentWithLookupKey("asset-key", bucket));
+      assertThat(tx.findComponentWithLookupKey("component-key", bucket), is(component));
+
+      // changes of the current transaction are visible before commit
+      tx.deleteAsset(asset);
+      assertNull(tx.findAssetWithLookupKey("asset-key", bucket));
+      tx.commit();
+    }
+  }
+
+  @Test
+  public void preexistingContentIsBackfilledOnStart() throws Exception {
+    createContentWithoutLookupKeys();
+
+    try (StorageTx tx = underTest.openTx()) {
+      assertNull(tx.findComponentWithLookupKey("component-key", tx.getBucket()));
+      assertNull(tx.findAssetWithLookupKey("asset-key", tx.getBucket()));
+    }
+
+    underTest.stop();
+    underTest.registerLookupKeyAttributes("key", "key");
+    underTest.start();
+
+    assertContentFoundByLookupKeys();
+  }
+
+  @Test
+  public void preexistingContentIsBackfilledOnRegistration() throws Exception {
+    createContentWithoutLookupKeys();
+
+    // facet already started, as when the format facet starts after storage
+    underTest.registerLookupKeyAttributes("key", "key");
+
+    assertContentFoundByLookupKeys();
+  }
+
+  /**
+   * Creates a component and an asset as stored before lookup keys existed: key only in format attributes, no bucket
+   * link, and a bucket not yet marked as backfilled.
+   */
+  private void createContentWithoutLookupKeys() {
+    try (StorageTx tx = underTest.openTx()) {
+      Bucket bucket = tx.getBucket();
+      Component component = tx.createComponent(bucket, testFormat).name("name");
+      component.formatAttributes().set("key", "component-key");
+      Asset asset = tx.createAsset(bucket, component);
+      asset.formatAttributes().set("key", "asset-key");
+
+      component.vertex().removeProperty(P_BUCKET);
+      asset.vertex().removeProperty(P_BUCKET);
+      bucket.vertex().removeProperty(P_LOOKUP_KEYS_BACKFILLED);
+      tx.commit();
+    }
+  }
+
+  private void assertContentFoundByLookupKeys() {
+    try (StorageTx tx = underTest.openTx()) {
+      Bucket bucket = tx.getBucket();
+      Component component = tx.findComponentWithLookupKey("component-key", bucket);
+      assertThat(component, is(notNullValue()));
+      assertThat(component.lookupKey(), is("component-key"));
+      Asset asset = tx.findAssetWithLookupKey("asset-key", bucket);
+      assertThat(asset, is(notNullValue()));
+      assertThat(asset.lookupKey(), is("asset-key"));
+      assertThat((Boolean) bucket.vertex().getProperty(P_LOOKUP_KEYS_BACKFILLED), is(true));
+    }
+  }
+
   private void checkSize(Iterable iterable, int expectedSize) {
     assertThat(Iterators.size(iterable.iterator()), is(expectedSize));
   }
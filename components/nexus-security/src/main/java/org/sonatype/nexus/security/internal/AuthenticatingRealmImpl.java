@@ -12,7 +12,13 @@
  */
 package org.sonatype.nexus.security.internal;
 
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.ConcurrentModificationException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -22,6 +28,13 @@ import org.sonatype.nexus.security.config.CUser;
 import org.sonatype.nexus.security.config.SecurityConfigurationManager;
 import org.sonatype.nexus.security.user.UserNotFoundException;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
 import org.apache.shiro.authc.AccountException;
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
@@ -42,6 +55,10 @@ import org.slf4j.LoggerFactory;
  * Default {@link AuthenticatingRealm}.
  *
  * This realm ONLY handles authentication.
+ *
+ * Verified credentials are remembered for {@code credentialsCacheTtl} seconds, so clients sending the same credentials
+ * on every request, like HTTP Basic authenticated builds, pay the (deliberately slow) password hashing only once per
+ * TTL. Only a keyed hash of the username, password and stored password hash is kept, never the password itself.
  */
 @Singleton
 @Named(AuthenticatingRealmImpl.NAME)
@@ -56,20 +73,53 @@ public class AuthenticatingRealmImpl
 
   private static final int MAX_LEGACY_PASSWORD_LENGTH = 40;
 
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+
   private final SecurityConfigurationManager configuration;
 
   private final PasswordService passwordService;
 
+  private final Cache<HashCode, Boolean> verifiedCredentials;
+
+  private final SecretKeySpec verifiedCredentialsKey;
+
+  private final Meter verifiedCredentialsHits;
+
+  private final Meter verifiedCredentialsMisses;
+
   @Inject
   public AuthenticatingRealmImpl(final SecurityConfigurationManager configuration,
-                                 final PasswordService passwordService)
+                                 final PasswordService passwordService,
+                                 final @Named("${nexus.security.credentialsCacheTtl:-60}") int credentialsCacheTtl,
+                                 final @Named("${nexus.security.credentialsCacheSize:-1000}") int credentialsCacheSize)
   {
     this.configuration = configuration;
     this.passwordService = passwordService;
 
-    PasswordMatcher passwordMatcher = new PasswordMatcher();
+    // zero TTL disables remembering verified credentials
+    this.verifiedCredentials = CacheBuilder.newBuilder()
+        .expireAfterWrite(Math.max(0, credentialsCacheTtl), TimeUnit.SECONDS)
+        .maximumSize(credentialsCacheSize)
+        .build();
+    // random key per instance, hashes are meaningless outside this JVM
+    byte[] key = new byte[32];
+    new SecureRandom().nextBytes(key);
+    this.verifiedCredentialsKey = new SecretKeySpec(key, MAC_ALGORITHM);
+    MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
+    this.verifiedCredentialsHits = metricRegistry.meter(
+        MetricRegistry.name(AuthenticatingRealmImpl.class, "verifiedCredentials", "hits"));
+    this.verifiedCredentialsMisses = metricRegistry.meter(
+        MetricRegistry.name(AuthenticatingRealmImpl.class, "verifiedCredentials", "misses"));
+
+    final PasswordMatcher passwordMatcher = new PasswordMatcher();
     passwordMatcher.setPasswordService(this.passwordService);
-    setCredentialsMatcher(passwordMatcher);
+    setCredentialsMatcher(new CredentialsMatcher()
+    {
+      @Override
+      public boolean doCredentialsMatch(final AuthenticationToken token, final AuthenticationInfo info) {
+        return doCachedCredentialsMatch(passwordMatcher, token, info);
+      }
+    });
     setName(NAME);
     setAuthenticationCachingEnabled(true);
   }
@@ -158,6 +208,59 @@ public class AuthenticatingRealmImpl
     return credentialsValid;
   }
 
+  /**
+   * Matches credentials using given matcher, unless the same credentials were verified against the same stored
+   * password hash recently.
+   */
+  private boolean doCachedCredentialsMatch(final CredentialsMatcher matcher,
+                                           final AuthenticationToken token,
+                                           final AuthenticationInfo info)
+  {
+    if (!(token instanceof UsernamePasswordToken) || ((UsernamePasswordToken) token).getPassword() == null) {
+      return matcher.doCredentialsMatch(token, info);
+    }
+    final HashCode key = verifiedCredentialsKey((UsernamePasswordToken) token, info);
+    if (verifiedCredentials.getIfPresent(key) != null) {
+      verifiedCredentialsHits.mark();
+      return true;
+    }
+    verifiedCredentialsMisses.mark();
+    if (matcher.doCredentialsMatch(token, info)) {
+      verifiedCredentials.put(key, Boolean.TRUE);
+      return true;
+    }
+    return false;
+  }
+
+  private HashCode verifiedCredentialsKey(final UsernamePasswordToken token, final AuthenticationInfo info) {
+    try {
+      Mac mac = Mac.getInstance(MAC_ALGORITHM);
+      mac.init(verifiedCredentialsKey);
+      mac.update(String.valueOf(token.getUsername()).getBytes(Charsets.UTF_8));
+      mac.update((byte) 0);
+      mac.update(new String(token.getPassword()).getBytes(Charsets.UTF_8));
+      mac.update((byte) 0);
+      // stored hash changes with the password, making stale entries unreachable
+      mac.update(String.valueOf(credentialsOf(info)).getBytes(Charsets.UTF_8));
+      return HashCode.fromBytes(mac.doFinal());
+    }
+    catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Object credentialsOf(final AuthenticationInfo info) {
+    Object credentials = info.getCredentials();
+    return credentials instanceof char[] ? new String((char[]) credentials) : credentials;
+  }
+
+  /**
+   * Forgets all verified credentials, forcing them to be verified again.
+   */
+  public void clearVerifiedCredentials() {
+    verifiedCredentials.invalidateAll();
+  }
+
   /**
    * Checks to see if the specified user is a legacy user.
    * A legacy user has an unsalted password.
@@ -105,6 +105,9 @@ public class RealmManagerImpl
     Collection<Realm> realms = realmSecurityManager.getRealms();
     if (realms != null) {
       for (Realm realm : realms) {
+        if (realm instanceof AuthenticatingRealmImpl) {
+          ((AuthenticatingRealmImpl) realm).clearVerifiedCredentials();
+        }
         if (realm instanceof AuthenticatingRealm) {
           ((AuthenticatingRealm) realm).setAuthenticationCache(null);
         }
@@ -297,13 +300,17 @@ public class RealmManagerImpl
   }
 
   /**
-   * Looks up registered {@link AuthenticatingRealm}s, and clears their authc caches if they have it set.
+   * Looks up registered {@link AuthenticatingRealm}s, and clears their authc caches if they have it set, along with
+   * credentials remembered as verified by {@link AuthenticatingRealmImpl}.
    */
   private void clearAuthcRealmCaches() {
     // NOTE: we don't need to iterate all the Sec Managers, they use the same Realms, so one is fine.
     Collection<Realm> realms = realmSecurityManager.getRealms();
     if (realms != null) {
       for (Realm realm : realms) {
+        if (realm instanceof AuthenticatingRealmImpl) {
+          ((AuthenticatingRealmImpl) realm).clearVerifiedCredentials();
+        }
         if (realm instanceof AuthenticatingRealm) {
           Cache cache = ((AuthenticatingRealm) realm).getAuthenticationCache();
           if (cache != null) {
@@ -23,6 +23,9 @@ import org.sonatype.nexus.security.config.CUser;
 import org.sonatype.nexus.security.internal.AuthenticatingRealmImpl;
 import org.sonatype.nexus.security.internal.SecurityConfigurationManagerImpl;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.base.Charsets;
 import com.google.common.hash.Hashing;
 import org.apache.shiro.authc.AuthenticationException;
@@ -45,6 +48,10 @@ public class AuthenticatingRealmImplTest
 
   private CUser testUser;
 
+  private Meter verifiedCredentialsHits;
+
+  private Meter verifiedCredentialsMisses;
+
   @Override
   protected void setUp() throws Exception {
     super.setUp();
@@ -52,6 +59,12 @@ public class AuthenticatingRealmImplTest
     realm = (AuthenticatingRealmImpl) lookup(Realm.class, AuthenticatingRealmImpl.NAME);
     configurationManager = lookup(SecurityConfigurationManagerImpl.class);
     passwordService = lookup(PasswordService.class, "default");
+
+    MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
+    verifiedCredentialsHits = metricRegistry.meter(
+        MetricRegistry.name(AuthenticatingRealmImpl.class, "verifiedCredentials", "hits"));
+    verifiedCredentialsMisses = metricRegistry.meter(
+        MetricRegistry.name(AuthenticatingRealmImpl.class, "verifiedCredentials", "misses"));
   }
 
   public void testSuccessfulAuthentication() throws Exception {
@@ -117,6 +130,61 @@ public class AuthenticatingRealmImplTest
     }
   }
 
+  public void testVerifiedCredentialsNotReusedAfterPasswordChange() throws Exception {
+    buildTestAuthenticationConfig(CUser.STATUS_ACTIVE);
+
+    // verify twice, second one is remembered
+    long hits = verifiedCredentialsHits.getCount();
+    realm.getAuthenticationInfo(new UsernamePasswordToken("username", "password"));
+    assertThat(verifiedCredentialsHits.getCount(), is(hits));
+    realm.getAuthenticationInfo(new UsernamePasswordToken("username", "password"));
+    assertThat(verifiedCredentialsHits.getCount(), is(hits + 1));
+
+    CUser user = configurationManager.readUser("username");
+    user.setPassword(hashPassword("newpassword"));
+    configurationManager.updateUser(user);
+
+    long misses = verifiedCredentialsMisses.getCount();
+    try {
+      realm.getAuthenticationInfo(new UsernamePasswordToken("username", "password"));
+
+      fail("Authentication should have failed");
+    }
+    catch (AuthenticationException e) {
+      // good
+    }
+    assertThat(verifiedCredentialsHits.getCount(), is(hits + 1));
+    assertThat(verifiedCredentialsMisses.getCount(), is(misses + 1));
+    realm.getAuthenticationInfo(new UsernamePasswordToken("username", "newpassword"));
+    assertThat(verifiedCredentialsHits.getCount(), is(hits + 1));
+    assertThat(verifiedCredentialsMisses.getCount(), is(misses + 2));
+  }
+
+  public void testClearVerifiedCredentials() throws Exception {
+    buildTestAuthenticationConfig(CUser.STATUS_ACTIVE);
+
+    long hits = verifiedCredentialsHits.getCount();
+    long misses = verifiedCredentialsMisses.getCount();
+    realm.getAuthenticationInfo(new UsernamePasswordToken("username", "password"));
+    realm.getAuthenticationInfo(new UsernamePasswordToken("username", "password"));
+    assertThat(verifiedCredentialsHits.getCount(), is(hits + 1));
+    assertThat(verifiedCredentialsMisses.getCount(), is(misses + 1));
+
+    realm.clearVerifiedCredentials();
+    realm.getAuthenticationInfo(new UsernamePasswordToken("username", "password"));
+    assertThat(verifiedCredentialsHits.getCount(), is(hits + 1));
+    assertThat(verifiedCredentialsMisses.getCount(), is(misses + 2));
+
+    try {
+      realm.getAuthenticationInfo(new UsernamePasswordToken("username", "badpassword"));
+
+      fail("Authentication should have failed");
+    }
+    catch (AuthenticationException e) {
+      // good
+    }
+  }
+
   public void testDetectLegacyUser() throws Exception {
     String password = "password";
     String username = "username";
@@ -15,9 +15,11 @@ package org.sonatype.nexus.repository.httpbridge;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.Map;
 
 import javax.annotation.Nullable;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.servlet.ServletException;
@@ -42,6 +44,9 @@ import org.joda.time.DateTime;
 /**
  * Default {@link HttpResponseSender}.
  *
+ * Content of file backed {@link BlobPayload}s is sent without copying it through the heap when running in Jetty,
+ * other payloads are copied from their input stream.
+ *
  * @since 3.0
  */
 @Named
@@ -50,6 +55,26 @@ public class DefaultHttpResponseSender
     extends ComponentSupport
     implements HttpResponseSender
 {
+  private static final boolean JETTY_PRESENT = isJettyPresent();
+
+  private final boolean zeroCopy;
+
+  @Inject
+  public DefaultHttpResponseSender(final @Named("${nexus.http.zeroCopy:-true}") boolean zeroCopy) {
+    this.zeroCopy = zeroCopy && JETTY_PRESENT;
+    log.debug("Zero-copy file transfer: {}", this.zeroCopy);
+  }
+
+  private static boolean isJettyPresent() {
+    try {
+      Class.forName("org.eclipse.jetty.server.HttpOutput", false, DefaultHttpResponseSender.class.getClassLoader());
+      return true;
+    }
+    catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
   @Override
   public void send(final @Nullable Request request, final Response response, final HttpServletResponse httpResponse)
       throws ServletException, IOException
@@ -98,8 +123,11 @@ public class DefaultHttpResponseSender
         }
 
         if (request != null && !HttpMethods.HEAD.equals(request.getAction())) {
-          try (InputStream input = payload.openInputStream(); OutputStream output = httpResponse.getOutputStream()) {
-            ByteStreams.copy(input, output);
+          if (!(zeroCopy && payload instanceof BlobPayload && sendFile((BlobPayload) payload, httpResponse))) {
+            try (InputStream input = payload.openInputStream();
+                 OutputStream output = httpResponse.getOutputStream()) {
+              ByteStreams.copy(input, output);
+            }
           }
         }
       }
@@ -108,4 +136,23 @@ public class DefaultHttpResponseSender
       httpResponse.sendError(status.getCode(), status.getMessage());
     }
   }
+
+  /**
+   * Sends content of payload straight from its file, if it has one and the response belongs to Jetty.
+   *
+   * @return {@code false} if content was not sent and needs to be copied instead
+   */
+  private boolean sendFile(final BlobPayload payload, final HttpServletResponse httpResponse) throws IOException {
+    OutputStream output = httpResponse.getOutputStream();
+    if (!JettyFileSender.supports(output)) {
+      return false;
+    }
+    try (FileChannel channel = payload.openFileChannel()) {
+      if (channel == null) {
+        return false;
+      }
+      JettyFileSender.send(channel, output);
+      return true;
+    }
+  }
 }
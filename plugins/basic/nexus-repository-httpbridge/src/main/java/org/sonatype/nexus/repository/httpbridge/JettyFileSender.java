@@ -0,0 +1,46 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpbridge;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+import org.eclipse.jetty.server.HttpOutput;
+
+/**
+ * Sends file content through Jetty without copying it through the heap, streaming it through Jetty's pooled direct
+ * buffers. Files are deliberately not memory mapped, as every concurrent download would hold its own mapping of
+ * address space that is only released once the buffer is garbage collected.
+ *
+ * Must only be loaded once Jetty is known to be present, see {@link DefaultHttpResponseSender}.
+ *
+ * @since 3.0
+ */
+class JettyFileSender
+{
+  private JettyFileSender() {
+    // empty
+  }
+
+  static boolean supports(final OutputStream output) {
+    return output instanceof HttpOutput;
+  }
+
+  /**
+   * Sends the content of given channel and completes the response.
+   */
+  static void send(final FileChannel channel, final OutputStream output) throws IOException {
+    ((HttpOutput) output).sendContent(channel);
+  }
+}
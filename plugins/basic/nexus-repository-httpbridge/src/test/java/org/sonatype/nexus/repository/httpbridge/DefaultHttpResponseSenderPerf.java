@@ -0,0 +1,184 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpbridge;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.sonatype.nexus.blobstore.api.BlobId;
+import org.sonatype.nexus.blobstore.api.BlobMetrics;
+import org.sonatype.nexus.blobstore.api.FileBackedBlob;
+import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.payloads.BlobPayload;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Throughput of {@link DefaultHttpResponseSender} serving file backed blobs through Jetty, with and without
+ * zero-copy file transfer.
+ */
+public class DefaultHttpResponseSenderPerf
+    extends TestSupport
+{
+  private static final int[] SIZES_MB = {1, 10, 100, 500};
+
+  private static final int ROUNDS = 5;
+
+  private Server server;
+
+  private volatile DefaultHttpResponseSender sender;
+
+  private volatile File content;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new Server(0);
+    server.setHandler(new AbstractHandler()
+    {
+      @Override
+      public void handle(final String target,
+                         final org.eclipse.jetty.server.Request baseRequest,
+                         final HttpServletRequest request,
+                         final HttpServletResponse response)
+          throws IOException, ServletException
+      {
+        baseRequest.setHandled(true);
+        sender.send(new Request(target), HttpResponses.ok(new BlobPayload(new TestBlob(content), null)), response);
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop();
+  }
+
+  @Test
+  public void throughput() throws Exception {
+    for (int sizeMb : SIZES_MB) {
+      content = createContent(sizeMb);
+      try {
+        for (boolean zeroCopy : new boolean[]{false, true}) {
+          sender = new DefaultHttpResponseSender(zeroCopy);
+          download(); // warm up
+          long start = System.nanoTime();
+          for (int i = 0; i < ROUNDS; i++) {
+            assertThat(download(), is(content.length()));
+          }
+          long elapsed = System.nanoTime() - start;
+          log("{} MB, zero-copy {}: {} MB/s", sizeMb, zeroCopy,
+              (long) sizeMb * ROUNDS * TimeUnit.SECONDS.toNanos(1) / elapsed);
+        }
+      }
+      finally {
+        Files.delete(content.toPath());
+      }
+    }
+  }
+
+  private File createContent(final int sizeMb) throws IOException {
+    File file = util.createTempFile("blob");
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      byte[] chunk = new byte[1024 * 1024];
+      for (int i = 0; i < sizeMb; i++) {
+        chunk[i % chunk.length] = (byte) i;
+        raf.write(chunk);
+      }
+    }
+    return file;
+  }
+
+  private long download() throws IOException {
+    int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/blob").openConnection();
+    try (InputStream input = connection.getInputStream()) {
+      return ByteStreams.copy(input, ByteStreams.nullOutputStream());
+    }
+    finally {
+      connection.disconnect();
+    }
+  }
+
+  private static class TestBlob
+      implements FileBackedBlob
+  {
+    private final File file;
+
+    private TestBlob(final File file) {
+      this.file = file;
+    }
+
+    @Override
+    public BlobId getId() {
+      return new BlobId(file.getName());
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+      return ImmutableMap.of();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      try {
+        return Files.newInputStream(file.toPath());
+      }
+      catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+
+    @Override
+    public FileChannel openChannel() {
+      try {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      }
+      catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+
+    @Override
+    public BlobMetrics getMetrics() {
+      return new BlobMetrics(new DateTime(), "unknown", file.length());
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpbridge;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.sonatype.nexus.blobstore.api.BlobMetrics;
+import org.sonatype.nexus.blobstore.api.FileBackedBlob;
+import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.payloads.BlobPayload;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link DefaultHttpResponseSender}.
+ */
+public class DefaultHttpResponseSenderTest
+    extends TestSupport
+{
+  @Mock
+  private HttpServletResponse httpResponse;
+
+  @Mock
+  private FileBackedBlob blob;
+
+  private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+  private DefaultHttpResponseSender underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    when(httpResponse.getOutputStream()).thenReturn(new ServletOutputStream()
+    {
+      @Override
+      public void write(final int b) throws IOException {
+        sent.write(b);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(final WriteListener writeListener) {
+        // not async
+      }
+    });
+    when(blob.getMetrics()).thenReturn(new BlobMetrics(null, "sha1", 3));
+    when(blob.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+    underTest = new DefaultHttpResponseSender(true);
+  }
+
+  @Test
+  public void fileBackedPayloadIsCopiedWhenNotServedByJetty() throws Exception {
+    underTest.send(new Request("/foo"), HttpResponses.ok(new BlobPayload(blob, null)), httpResponse);
+
+    assertThat(sent.toByteArray(), is(new byte[]{1, 2, 3}));
+    verify(blob, never()).openChannel();
+  }
+}
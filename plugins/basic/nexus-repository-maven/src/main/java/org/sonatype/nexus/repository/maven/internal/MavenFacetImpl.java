@@ -12,8 +12,10 @@
  */
 package org.sonatype.nexus.repository.maven.internal;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -28,7 +30,7 @@ import org.sonatype.nexus.blobstore.api.BlobRef;
 import org.sonatype.nexus.blobstore.api.BlobStore;
 import org.sonatype.nexus.common.collect.NestedAttributesMap;
 import org.sonatype.nexus.common.hash.HashAlgorithm;
-import org.sonatype.nexus.common.io.TempStreamSupplier;
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
 import org.sonatype.nexus.mime.MimeSupport;
 import org.sonatype.nexus.repository.FacetSupport;
 import org.sonatype.nexus.repository.content.InvalidContentException;
@@ -48,6 +50,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.hash.HashCode;
+import com.google.common.io.ByteStreams;
 import com.tinkerpop.blueprints.impls.orient.OrientVertex;
 import org.joda.time.DateTime;
 
@@ -106,6 +109,12 @@ public class MavenFacetImpl
 
   private static final List<HashAlgorithm> HASH_ALGORITHMS = Lists.newArrayList(SHA1, MD5);
 
+  /**
+   * Number of leading bytes buffered in memory for content type detection.
+   */
+  private static final int CONTENT_SNIFF_SIZE = SystemPropertiesHelper.getInteger(
+      MavenFacetImpl.class.getName() + ".contentSniffSize", 64 * 1024);
+
   // members
 
   private final MimeSupport mimeSupport;
@@ -135,6 +144,12 @@ public class MavenFacetImpl
     );
   }
 
+  @Override
+  protected void doStart() throws Exception {
+    // lets storage backfill lookup keys of content stored before they were introduced
+    getStorage().registerLookupKeyAttributes(P_COMPONENT_KEY, P_ASSET_KEY);
+  }
+
   @Nonnull
   @Override
   public VersionPolicy getVersionPolicy() {
@@ -195,7 +210,8 @@ public class MavenFacetImpl
       component = tx.createComponent(tx.getBucket(), getRepository().getFormat())
           .group(coordinates.getGroupId())
           .name(coordinates.getArtifactId())
-          .version(coordinates.getVersion());
+          .version(coordinates.getVersion())
+          .lookupKey(getComponentKey(coordinates));
       component.set(StorageFacet.P_PATH, path.getPath());
 
       // Set format specific attributes
@@ -211,7 +227,8 @@ public class MavenFacetImpl
 
     Asset asset = selectComponentAsset(tx, component, path);
     if (asset == null) {
-      asset = tx.createAsset(tx.getBucket(), component);
+      asset = tx.createAsset(tx.getBucket(), component)
+          .lookupKey(getAssetKey(path));
 
       asset.set(StorageFacet.P_NAME, path.getFileName());
       asset.set(StorageFacet.P_PATH, path.getPath());
@@ -238,7 +255,8 @@ public class MavenFacetImpl
   {
     Asset asset = findAsset(tx, tx.getBucket(), path);
     if (asset == null) {
-      asset = tx.createAsset(tx.getBucket(), getRepository().getFormat());
+      asset = tx.createAsset(tx.getBucket(), getRepository().getFormat())
+          .lookupKey(getAssetKey(path));
       asset.set(StorageFacet.P_NAME, path.getFileName());
       asset.set(StorageFacet.P_PATH, path.getPath());
 
@@ -262,12 +280,20 @@ public class MavenFacetImpl
         BlobStore.CREATED_BY_HEADER, "unknown"
     );
 
+    // Sniff the content type from a bounded head buffer, then stream head and remainder straight into the blob store
     try (InputStream inputStream = content.openInputStream()) {
-      try (TempStreamSupplier supplier = new TempStreamSupplier(inputStream)) {
-        final String contentType = determineContentType(path, supplier, content.getContentType());
-        try (InputStream is = supplier.get()) {
-          tx.setBlob(is, headers, asset, HASH_ALGORITHMS, contentType);
+      final byte[] head = new byte[CONTENT_SNIFF_SIZE];
+      final int headLength = ByteStreams.read(inputStream, head, 0, head.length);
+      final Supplier<InputStream> headSupplier = new Supplier<InputStream>()
+      {
+        @Override
+        public InputStream get() {
+          return new ByteArrayInputStream(head, 0, headLength);
         }
+      };
+      final String contentType = determineContentType(path, headSupplier, content.getContentType());
+      try (InputStream is = new SequenceInputStream(headSupplier.get(), inputStream)) {
+        tx.setBlob(is, headers, asset, HASH_ALGORITHMS, contentType);
       }
     }
 
@@ -339,9 +365,7 @@ public class MavenFacetImpl
                                   final Bucket bucket,
                                   final MavenPath mavenPath)
   {
-    final String componentKeyName =
-        StorageFacet.P_ATTRIBUTES + "." + getRepository().getFormat().getValue() + "." + P_COMPONENT_KEY;
-    return tx.findComponentWithProperty(componentKeyName, getComponentKey(mavenPath.getCoordinates()), bucket);
+    return tx.findComponentWithLookupKey(getComponentKey(mavenPath.getCoordinates()), bucket);
   }
 
   /**
@@ -370,9 +394,7 @@ public class MavenFacetImpl
                           final Bucket bucket,
                           final MavenPath mavenPath)
   {
-    final String assetKeyName =
-        StorageFacet.P_ATTRIBUTES + "." + getRepository().getFormat().getValue() + "." + P_ASSET_KEY;
-    return tx.findAssetWithProperty(assetKeyName, getAssetKey(mavenPath), bucket);
+    return tx.findAssetWithLookupKey(getAssetKey(mavenPath), bucket);
   }
 
   /**
@@ -0,0 +1,140 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.maven.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.common.hash.HashAlgorithm;
+import org.sonatype.nexus.common.hash.MultiHashingInputStream;
+import org.sonatype.nexus.common.io.TempStreamSupplier;
+import org.sonatype.nexus.mime.MimeSupport;
+import org.sonatype.nexus.mime.internal.DefaultMimeSupport;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.sonatype.nexus.common.hash.HashAlgorithm.MD5;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
+
+/**
+ * Deploy throughput of the Maven ingest pipeline: the previous temp file based path (copy to disk, sniff the whole
+ * file, hash SHA1 and MD5, then hash SHA1 again in the blob store) against the single-pass path (sniff a bounded
+ * head buffer, hash MD5 while the blob store writes and computes SHA1).
+ */
+public class MavenIngestPerf
+    extends TestSupport
+{
+  private static final int[] SIZES_MB = {1, 10, 200};
+
+  private static final int ROUNDS = 3;
+
+  private static final int SNIFF_SIZE = 64 * 1024;
+
+  private static final String PATH = "org/example/example/1.0/example-1.0.jar";
+
+  private final MimeSupport mimeSupport = new DefaultMimeSupport();
+
+  private File blobDir;
+
+  @Before
+  public void setUp() throws Exception {
+    blobDir = util.createTempDir("blobs");
+  }
+
+  @Test
+  public void throughput() throws Exception {
+    for (int sizeMb : SIZES_MB) {
+      File content = createContent(sizeMb);
+      try {
+        for (boolean singlePass : new boolean[]{false, true}) {
+          ingest(content, singlePass); // warm up
+          long start = System.nanoTime();
+          for (int i = 0; i < ROUNDS; i++) {
+            ingest(content, singlePass);
+          }
+          long elapsed = System.nanoTime() - start;
+          log("{} MB, single-pass {}: {} MB/s", sizeMb, singlePass,
+              (long) sizeMb * ROUNDS * TimeUnit.SECONDS.toNanos(1) / elapsed);
+        }
+      }
+      finally {
+        Files.delete(content.toPath());
+      }
+    }
+  }
+
+  private void ingest(final File content, final boolean singlePass) throws Exception {
+    try (InputStream inputStream = Files.newInputStream(content.toPath())) {
+      if (singlePass) {
+        byte[] head = new byte[SNIFF_SIZE];
+        int headLength = ByteStreams.read(inputStream, head, 0, head.length);
+        try (InputStream is = new ByteArrayInputStream(head, 0, headLength)) {
+          mimeSupport.detectMimeTypes(is, PATH);
+        }
+        try (InputStream is = new SequenceInputStream(new ByteArrayInputStream(head, 0, headLength), inputStream)) {
+          store(is, ImmutableList.of(MD5));
+        }
+      }
+      else {
+        try (TempStreamSupplier supplier = new TempStreamSupplier(inputStream)) {
+          try (InputStream is = supplier.get()) {
+            mimeSupport.detectMimeTypes(is, PATH);
+          }
+          try (InputStream is = supplier.get()) {
+            store(is, ImmutableList.of(SHA1, MD5));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Hashes the given algorithms while writing a blob that, like the file blob store, computes SHA1 as it goes.
+   */
+  private void store(final InputStream inputStream, final List<HashAlgorithm> algorithms) throws Exception {
+    MultiHashingInputStream hashingStream = new MultiHashingInputStream(algorithms, inputStream);
+    File blob = new File(blobDir, "blob.bytes");
+    try (OutputStream out = new DigestOutputStream(Files.newOutputStream(blob.toPath()),
+        MessageDigest.getInstance("SHA1"))) {
+      ByteStreams.copy(hashingStream, out);
+    }
+    hashingStream.hashes();
+    Files.delete(blob.toPath());
+  }
+
+  private File createContent(final int sizeMb) throws IOException {
+    File file = util.createTempFile("artifact");
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      byte[] chunk = new byte[1024 * 1024];
+      for (int i = 0; i < sizeMb; i++) {
+        chunk[i % chunk.length] = (byte) i;
+        raf.write(chunk);
+      }
+    }
+    return file;
+  }
+}
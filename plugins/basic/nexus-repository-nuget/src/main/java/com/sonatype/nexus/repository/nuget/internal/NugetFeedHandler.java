@@ -19,6 +19,7 @@ import javax.annotation.Nonnull;
 import org.sonatype.nexus.repository.http.HttpResponses;
 import org.sonatype.nexus.repository.view.Context;
 import org.sonatype.nexus.repository.view.Parameters;
+import org.sonatype.nexus.repository.view.Payload;
 import org.sonatype.nexus.repository.view.Response;
 import org.sonatype.nexus.repository.view.matchers.token.TokenMatcher.State;
 import org.sonatype.nexus.repository.view.payloads.StringPayload;
@@ -48,8 +49,8 @@ public class NugetFeedHandler
 
     switch (state.pattern()) {
       case FEED_PATTERN:
-        final String feed = facet.feed(getRepositoryBase(context), tokens.get("operation"), asMap(queryParameters));
-        return xmlPayload(200, feed);
+        final Payload feed = facet.feed(getRepositoryBase(context), tokens.get("operation"), asMap(queryParameters));
+        return HttpResponses.ok(feed);
 
       case FEED_COUNT_PATTERN:
         // Remove the leading slash to derive the operation
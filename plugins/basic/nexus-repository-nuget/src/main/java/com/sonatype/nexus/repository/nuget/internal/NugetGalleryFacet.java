@@ -59,9 +59,9 @@ public interface NugetGalleryFacet
    * @param base       Base URI
    * @param operation  Feed name
    * @param parameters OData query parameters
-   * @return NuGet feed XML
+   * @return NuGet feed XML, rendered as the payload is read
    */
-  public String feed(final String base, final String operation, final Map<String, String> parameters);
+  public Payload feed(final String base, final String operation, final Map<String, String> parameters);
 
   /**
    * Returns entry XML for a given package ID and version.
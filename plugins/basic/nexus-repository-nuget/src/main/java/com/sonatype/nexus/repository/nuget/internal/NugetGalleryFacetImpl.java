@@ -14,15 +14,19 @@ package com.sonatype.nexus.repository.nuget.internal;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.AbstractMap;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.SortedSet;
 
+import javax.annotation.Nullable;
 import javax.inject.Named;
 
 import com.sonatype.nexus.repository.nuget.internal.odata.ComponentQuery;
@@ -56,6 +60,9 @@ import org.sonatype.nexus.repository.view.Payload;
 import org.sonatype.nexus.repository.view.payloads.StreamPayload;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
@@ -72,8 +79,10 @@ import org.odata4j.producer.InlineCount;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Predicates.equalTo;
 import static com.google.common.base.Predicates.not;
 import static com.google.common.base.Strings.nullToEmpty;
+import static com.sonatype.nexus.repository.nuget.internal.AbstractNugetHandler.XML_CONTENT_TYPE;
 import static com.sonatype.nexus.repository.nuget.internal.NugetProperties.*;
 import static java.util.Arrays.asList;
 import static org.odata4j.producer.resources.OptionsQueryParser.parseInlineCount;
@@ -144,11 +153,20 @@ public class NugetGalleryFacetImpl
 
   //@Override
   @Guarded(by = STARTED)
-  public String feed(final String base, final String operation, final Map<String, String> query) {
-    log.debug("Select: " + query);
+  public Payload feed(final String base, final String operation, final Map<String, String> query) {
+    return feed(base, operation, query, Functions.<Integer>identity());
+  }
 
-    final StringBuilder xml = new StringBuilder();
-    xml.append(interpolateTemplate(ODataTemplates.NUGET_FEED, extraTemplateVars(base, operation)));
+  /**
+   * Returns the feed as a payload that renders one entry at a time as it is read, passing the inline count (when
+   * requested) through the given function before it is written.
+   */
+  protected Payload feed(final String base,
+                         final String operation,
+                         final Map<String, String> query,
+                         final Function<Integer, Integer> inlineCountFunction)
+  {
+    log.debug("Select: " + query);
 
     // NEXUS-6822 Visual Studio doesn't send a sort order by default, leading to unusable results
     if (!query.containsKey("$orderby")) {
@@ -160,48 +178,43 @@ public class NugetGalleryFacetImpl
       query.put("$orderby", orderby.replaceAll("(?i)concat\\(title,id\\)", NAME_ORDER));
     }
 
-    ComponentQuery componentQuery = ODataUtils.query(query, false);
-    ComponentQuery componentCountQuery = ODataUtils.query(query, true);
+    final ComponentQuery componentQuery = ODataUtils.query(query, false);
 
-    try (StorageTx storageTx = openStorageTx()) {
-
-      // NXCM-4502 add inlinecount only if requested
-      if (inlineCountRequested(query)) {
-        int inlineCount = executeCount(componentCountQuery, storageTx);
-        xml.append(interpolateTemplate(ODataTemplates.NUGET_INLINECOUNT,
-            ImmutableMap.of("COUNT", String.valueOf(inlineCount))
-        ));
-      }
-
-      final Iterable<Component> components = storageTx.findComponents(componentQuery.getWhere(),
-          componentQuery.getParameters(), getRepositories(), componentQuery.getQuerySuffix());
+    // NXCM-4502 add inlinecount only if requested
+    final ComponentQuery componentCountQuery = inlineCountRequested(query) ? ODataUtils.query(query, true) : null;
 
-      int n = 0;
-      for (Component component : components) {
-        n++;
+    final Map<String, String> extra = extraTemplateVars(base, operation);
 
-        final NestedAttributesMap nugetAttributes = component.formatAttributes();
-        final Map<String, ?> data = toData(nugetAttributes, extraTemplateVars(base, operation));
-
-        xml.append(interpolateTemplate(ODataTemplates.NUGET_ENTRY, data));
-        if (n == ODataUtils.PAGE_SIZE) {
-          xml.append("  <link rel=\"next\" href=\"").append(base).append('/').append(operation);
-          xml.append("()?").append(ODataFeedUtils.skipLink(data, query)).append("\"/>\n");
-          break;
-        }
+    return new Payload()
+    {
+      @Override
+      public InputStream openInputStream() throws IOException {
+        return new FeedInputStream(base, operation, query, extra, componentQuery, componentCountQuery,
+            inlineCountFunction);
       }
 
-      storageTx.commit();
-    }
+      @Override
+      public long getSize() {
+        return UNKNOWN_SIZE;
+      }
 
-    return xml.append("</feed>").toString();
+      @Override
+      public String getContentType() {
+        return XML_CONTENT_TYPE;
+      }
+    };
   }
 
   @Override
   public void putMetadata(final Map<String, String> metadata) {
     try (StorageTx tx = openStorageTx()) {
       final Component component = createOrUpdateComponent(tx, tx.getBucket(), metadata);
-      maintainAggregateInfo(tx, metadata.get(ID));
+      if (component.isNew()) {
+        maintainAggregateInfo(tx, component);
+      }
+      else {
+        maintainAggregateInfo(tx, metadata.get(ID));
+      }
       tx.commit();
     }
   }
@@ -284,10 +297,14 @@ public class NugetGalleryFacetImpl
         component = createOrUpdatePackage(storageTx, recordMetadata, in);
       }
 
-      String id = recordMetadata.get(ID);
-      maintainAggregateInfo(storageTx, id);
-
       boolean isNew = component.isNew();  // must check before commit
+      if (isNew) {
+        maintainAggregateInfo(storageTx, component);
+      }
+      else {
+        maintainAggregateInfo(storageTx, recordMetadata.get(ID));
+      }
+
       storageTx.commit();
 
       if (isNew) {
@@ -347,6 +364,8 @@ public class NugetGalleryFacetImpl
         return false;
       }
       tx.deleteComponent(component);
+      // the deleted version may have been a latest version or contributed to the total download count
+      maintainAggregateInfo(tx, Iterables.filter(findComponentsById(tx, id), not(equalTo(component))));
       tx.commit();
 
       getEventBus().post(new ComponentDeletedEvent(component, getRepository()));
@@ -418,6 +437,67 @@ public class NugetGalleryFacetImpl
     }
   }
 
+  /**
+   * Updates latest version flags and the aggregate download count for a newly added version. Only the versions
+   * currently flagged as latest are loaded and touched, instead of every version of the package.
+   */
+  @VisibleForTesting
+  void maintainAggregateInfo(final StorageTx storageTx, final Component added) {
+    final NestedAttributesMap addedAttributes = added.formatAttributes();
+    final int versionDownloadCount = addedAttributes.require(P_VERSION_DOWNLOAD_COUNT, Integer.class);
+    if (isRepoAuthoritative() && versionDownloadCount != 0) {
+      // the package total changes for every version
+      maintainAggregateInfo(storageTx, added.name());
+      return;
+    }
+
+    Component latestVersion = null;
+    Component absoluteLatestVersion = null;
+    for (Component version : findLatestVersionsById(storageTx, added.name())) {
+      if (version.equals(added)) {
+        continue;
+      }
+      final NestedAttributesMap nugetAttributes = version.formatAttributes();
+      if (Boolean.TRUE.equals(nugetAttributes.get(P_IS_LATEST_VERSION))) {
+        latestVersion = version;
+      }
+      if (Boolean.TRUE.equals(nugetAttributes.get(P_IS_ABSOLUTE_LATEST_VERSION))) {
+        absoluteLatestVersion = version;
+      }
+    }
+
+    final Comparator<Component> comparator = new ComponentVersionComparator();
+
+    final boolean isAbsoluteLatest = absoluteLatestVersion == null
+        || comparator.compare(added, absoluteLatestVersion) > 0;
+    if (isAbsoluteLatest && absoluteLatestVersion != null) {
+      absoluteLatestVersion.formatAttributes().set(P_IS_ABSOLUTE_LATEST_VERSION, false);
+    }
+    addedAttributes.set(P_IS_ABSOLUTE_LATEST_VERSION, isAbsoluteLatest);
+
+    final boolean isPrerelease = addedAttributes.require(P_IS_PRERELEASE, Boolean.class);
+    final boolean isLatest = !isPrerelease && (latestVersion == null || comparator.compare(added, latestVersion) > 0);
+    if (isLatest && latestVersion != null) {
+      latestVersion.formatAttributes().set(P_IS_LATEST_VERSION, false);
+    }
+    addedAttributes.set(P_IS_LATEST_VERSION, isLatest);
+
+    if (isRepoAuthoritative()) {
+      // every version carries the package total, which a version without downloads leaves unchanged
+      final Component sibling = absoluteLatestVersion != null ? absoluteLatestVersion : latestVersion;
+      final Number totalDownloadCount = sibling == null ? 0L
+          : sibling.formatAttributes().get(P_DOWNLOAD_COUNT, Number.class, 0L);
+      addedAttributes.set(P_DOWNLOAD_COUNT, totalDownloadCount.longValue());
+    }
+  }
+
+  private Iterable<Component> findLatestVersionsById(final StorageTx storageTx, final Object id) {
+    final String whereClause = "name = :name and (attributes.nuget." + P_IS_LATEST_VERSION + " = true"
+        + " or attributes.nuget." + P_IS_ABSOLUTE_LATEST_VERSION + " = true)";
+    Map<String, Object> parameters = ImmutableMap.of(P_NAME, id);
+    return storageTx.findComponents(whereClause, parameters, getRepositories(), null);
+  }
+
   private Iterable<Component> findComponentsById(final StorageTx storageTx, final Object id) {
     final String whereClause = "name = :name";
     Map<String, Object> parameters = ImmutableMap.of(P_NAME, id);
@@ -632,4 +712,170 @@ public class NugetGalleryFacetImpl
       }
     }
   }
+
+  /**
+   * Feed XML rendered lazily from the matching components, holding only the current entry in memory. The storage
+   * transaction stays open until the stream is closed.
+   */
+  private class FeedInputStream
+      extends InputStream
+  {
+    private final String base;
+
+    private final String operation;
+
+    private final Map<String, String> query;
+
+    private final Map<String, String> extra;
+
+    private final StorageTx storageTx;
+
+    private final Iterator<Component> components;
+
+    private final StringBuilder xml = new StringBuilder();
+
+    private byte[] buffer;
+
+    private int position;
+
+    private int entries;
+
+    private boolean finished;
+
+    private boolean closed;
+
+    private FeedInputStream(final String base,
+                            final String operation,
+                            final Map<String, String> query,
+                            final Map<String, String> extra,
+                            final ComponentQuery componentQuery,
+                            @Nullable final ComponentQuery componentCountQuery,
+                            final Function<Integer, Integer> inlineCountFunction)
+    {
+      this.base = base;
+      this.operation = operation;
+      this.query = query;
+      this.extra = extra;
+      this.storageTx = openStorageTx();
+      try {
+        ODataTemplates.interpolate(ODataTemplates.NUGET_FEED, extra, xml);
+        if (componentCountQuery != null) {
+          int inlineCount = inlineCountFunction.apply(executeCount(componentCountQuery, storageTx));
+          ODataTemplates.interpolate(ODataTemplates.NUGET_INLINECOUNT,
+              ImmutableMap.of("COUNT", String.valueOf(inlineCount)), xml);
+        }
+        this.components = storageTx.findComponents(componentQuery.getWhere(), componentQuery.getParameters(),
+            getRepositories(), componentQuery.getQuerySuffix()).iterator();
+      }
+      catch (RuntimeException e) {
+        storageTx.close();
+        throw e;
+      }
+      flushBuffer();
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!fill()) {
+        return -1;
+      }
+      return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!fill()) {
+        return -1;
+      }
+      final int n = Math.min(len, buffer.length - position);
+      System.arraycopy(buffer, position, bytes, off, n);
+      position += n;
+      return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        try {
+          if (finished) {
+            storageTx.commit();
+          }
+        }
+        finally {
+          storageTx.close();
+        }
+      }
+    }
+
+    /**
+     * Renders entries until there are buffered bytes to read, returning {@code false} at the end of the feed.
+     */
+    private boolean fill() throws IOException {
+      checkState(!closed, "Feed stream is closed");
+      while (position == buffer.length) {
+        if (finished) {
+          return false;
+        }
+        if (entries < ODataUtils.PAGE_SIZE && components.hasNext()) {
+          final Map<String, ?> data = new EntryData(components.next().formatAttributes(), extra);
+          ODataTemplates.interpolate(ODataTemplates.NUGET_ENTRY, data, xml);
+          if (++entries == ODataUtils.PAGE_SIZE) {
+            xml.append("  <link rel=\"next\" href=\"").append(base).append('/').append(operation);
+            xml.append("()?").append(ODataFeedUtils.skipLink(data, query)).append("\"/>\n");
+          }
+        }
+        else {
+          xml.append("</feed>");
+          finished = true;
+        }
+        flushBuffer();
+      }
+      return true;
+    }
+
+    private void flushBuffer() {
+      buffer = xml.toString().getBytes(Charsets.UTF_8);
+      position = 0;
+      xml.setLength(0);
+    }
+  }
+
+  /**
+   * Template data for one entry, reading through to the component attributes instead of copying them.
+   */
+  private static class EntryData
+      extends AbstractMap<String, Object>
+  {
+    private final NestedAttributesMap attributes;
+
+    private final Map<String, String> extra;
+
+    private EntryData(final NestedAttributesMap attributes, final Map<String, String> extra) {
+      this.attributes = attributes;
+      this.extra = extra;
+    }
+
+    @Override
+    public Object get(final Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      final String value = extra.get(key);
+      return value != null ? value : attributes.get((String) key);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      final Map<String, Object> data = Maps.newHashMap();
+      for (Entry<String, Object> attrib : attributes.entries()) {
+        data.put(attrib.getKey(), attrib.getValue());
+      }
+      data.putAll(extra);
+      return data.entrySet();
+    }
+  }
 }
@@ -51,27 +51,46 @@ public final class ODataTemplates
    * @return Interpolated template
    */
   public static String interpolate(final String template, final Map<String, ?> data) {
-    final StringBuilder xml = new StringBuilder(template);
-    for (int i, j = 0; (i = xml.indexOf("${", j)) > 0 && i < (j = xml.indexOf("}", i)); ) {
-      final String key = xml.substring(i + 2, j++);
+    final StringBuilder xml = new StringBuilder(template.length());
+    interpolate(template, data, xml);
+    return xml.toString();
+  }
+
+  /**
+   * Interpolates the given template using data in key-value form, appending the result to the given buffer.
+   *
+   * @param template The variable template
+   * @param data     The data in key-value form
+   * @param xml      Buffer receiving the interpolated template
+   */
+  public static void interpolate(final String template, final Map<String, ?> data, final StringBuilder xml) {
+    int j = 0;
+    for (int i; (i = template.indexOf("${", j)) > 0; ) {
+      final int end = template.indexOf('}', i);
+      if (end < 0) {
+        break;
+      }
+      xml.append(template, j, i);
+      j = end + 1;
+      final String key = template.substring(i + 2, end);
       final Object value = data.get(key);
       if (null != value) {
-        final String text;
         if (value instanceof Date) {
-          text = ODataFeedUtils.datetime(((Date) value).getTime());
+          xml.append(ODataFeedUtils.datetime(((Date) value).getTime()));
         }
         else {
-          text = value.toString();
+          xml.append(value.toString());
         }
-        xml.replace(i, j, text);
-        j = i + text.length();
       }
-      else if (xml.charAt(--i) == '>') {
-        xml.replace(i, j, NULL_PROPERTY);
-        j = i + NULL_PROPERTY.length();
+      else if (xml.length() > 0 && xml.charAt(xml.length() - 1) == '>') {
+        xml.setLength(xml.length() - 1);
+        xml.append(NULL_PROPERTY);
+      }
+      else {
+        xml.append(template, i, j);
       }
     }
-    return xml.toString();
+    xml.append(template, j, template.length());
   }
 
   // ----------------------------------------------------------------------
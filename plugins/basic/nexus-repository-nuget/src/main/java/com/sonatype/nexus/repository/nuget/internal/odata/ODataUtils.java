@@ -33,6 +33,7 @@ import static org.odata4j.producer.resources.OptionsQueryParser.parseOrderBy;
 import static org.odata4j.producer.resources.OptionsQueryParser.parseSkip;
 import static org.odata4j.producer.resources.OptionsQueryParser.parseSkipToken;
 import static org.odata4j.producer.resources.OptionsQueryParser.parseTop;
+import static org.sonatype.nexus.repository.storage.StorageFacet.P_NAME;
 
 /**
  * Utility methods for working with OData/SQL expressions.
@@ -96,7 +97,8 @@ public final class ODataUtils
       if (q.hasWhere()) {
         q.where(" AND ");
       }
-      q.where(jsonAttrib(ID) + " = ").param(id);
+      // component name holds the package id and is indexed, unlike the nested format attributes
+      q.where(P_NAME + " = ").param(id);
     }
 
     if ("false".equalsIgnoreCase(StringUtils.strip(query.get("includePrerelease"), "\" '"))) {
@@ -12,18 +12,28 @@
  */
 package com.sonatype.nexus.repository.nuget.internal.proxy;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Properties;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -36,17 +46,25 @@ import com.sonatype.nexus.repository.nuget.internal.odata.ODataUtils;
 
 import org.sonatype.nexus.common.collect.NestedAttributesMap;
 import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.view.Payload;
 
+import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Throwables;
-import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.apache.http.client.utils.URIBuilder;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Objects.equal;
 import static java.lang.Math.min;
 
@@ -63,33 +81,109 @@ public class NugetProxyGalleryFacet
 
   private static final int TWO_PAGES = 2 * ODataUtils.PAGE_SIZE;
 
-  private static final Pattern COUNT_REGEX = Pattern.compile("<m:count>(\\d*)</m:count>");
+  private static final String QUERY_CACHE_DIR = "nuget-query-cache";
 
   private final NugetFeedFetcher fetcher;
 
-  private Cache<QueryCacheKey, Integer> cache;
+  private final File cacheDir;
+
+  private LoadingCache<QueryCacheKey, CachedCount> cache;
+
+  private long cacheItemMaxAgeMillis;
+
+  private long cacheItemMaxStaleMillis;
+
+  private ExecutorService refreshExecutor;
 
   @Inject
-  public NugetProxyGalleryFacet(final NugetFeedFetcher fetcher)
+  public NugetProxyGalleryFacet(final NugetFeedFetcher fetcher,
+                                final @Named("${nexus-work}") File workDir)
   {
     this.fetcher = fetcher;
+    this.cacheDir = new File(workDir, QUERY_CACHE_DIR);
   }
 
   @Override
   protected void doConfigure() throws Exception {
     super.doConfigure();
     NestedAttributesMap attributes = getRepository().getConfiguration().attributes(CONFIG_KEY);
-    final int queryCacheSize = attributes.get("queryCacheSize", Integer.class, 300);
+    if (attributes.contains("queryCacheSize")) {
+      log.warn("Repository {} configures queryCacheSize, which is ignored now, use queryCacheMaxBytes instead",
+          getRepository().getName());
+    }
+    final long queryCacheMaxBytes = attributes.get("queryCacheMaxBytes", Number.class, 1024 * 1024).longValue();
     final int cacheItemMaxAgeSeconds = attributes.get("queryCacheItemMaxAgeSeconds", Integer.class, 3600);
+    final int cacheItemMaxStaleSeconds = attributes.get("queryCacheItemMaxStaleSeconds", Integer.class, 86400);
 
+    cacheItemMaxAgeMillis = TimeUnit.SECONDS.toMillis(cacheItemMaxAgeSeconds);
+    cacheItemMaxStaleMillis = TimeUnit.SECONDS.toMillis(Math.max(cacheItemMaxAgeSeconds, cacheItemMaxStaleSeconds));
+
+    // counts are tiny, so the weight of an entry is dominated by its query URI
     cache = CacheBuilder.newBuilder()
-        .maximumSize(queryCacheSize)
-        .expireAfterWrite(cacheItemMaxAgeSeconds, TimeUnit.SECONDS)
-        .build();
+        .maximumWeight(queryCacheMaxBytes)
+        .weigher(new Weigher<QueryCacheKey, CachedCount>()
+        {
+          @Override
+          public int weigh(final QueryCacheKey key, final CachedCount value) {
+            return 128 + 2 * (key.repoId.length() + key.path.toString().length());
+          }
+        })
+        .expireAfterWrite(cacheItemMaxStaleMillis, TimeUnit.MILLISECONDS)
+        .build(new CacheLoader<QueryCacheKey, CachedCount>()
+        {
+          @Override
+          public CachedCount load(final QueryCacheKey key) throws Exception {
+            return fetch(key);
+          }
+
+          @Override
+          public ListenableFuture<CachedCount> reload(final QueryCacheKey key, final CachedCount oldValue) {
+            ListenableFutureTask<CachedCount> task = ListenableFutureTask.create(new Callable<CachedCount>()
+            {
+              @Override
+              public CachedCount call() throws Exception {
+                return fetch(key);
+              }
+            });
+            refreshExecutor.execute(task);
+            return task;
+          }
+        });
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    super.doStart();
+    refreshExecutor = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("nuget-query-refresh-" + getRepository().getName()).setDaemon(true)
+            .build());
+    loadCache();
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    // let running refreshes finish, pending ones are cancelled so their entries do not stay stuck loading
+    refreshExecutor.shutdown();
+    if (!refreshExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+      for (Runnable pending : refreshExecutor.shutdownNow()) {
+        if (pending instanceof Future) {
+          ((Future<?>) pending).cancel(false);
+        }
+      }
+    }
+    refreshExecutor = null;
+    saveCache();
+    super.doStop();
+  }
+
+  @Override
+  protected void doDelete() throws Exception {
+    Files.deleteIfExists(cacheFile().toPath());
+    super.doDelete();
   }
 
   @Override
-  public String feed(final String base, final String operation, final Map<String, String> query) {
+  public Payload feed(final String base, final String operation, final Map<String, String> query) {
     final Integer top = asInteger(query.get("$top"));
     final Integer skip = asInteger(query.get("$skip"));
 
@@ -111,20 +205,20 @@ public class NugetProxyGalleryFacet
 
     final int remoteCount = passQueryToRemoteRepo(nugetQuery(operation, remoteQuery), new FeedLoader(fetcher, this));
 
-    final String feedXml = super.feed(base, operation, query);
-
-    // Work out the number of results we should report to the client.
-    // Note that nuget.org itself occasionally reports nonsensical results.
-    final int localCount = parseCount(feedXml);
-
-    int reportedCount = CountReportingPolicy.determineReportedCount(remoteCount, localCount, top, skip);
-    if (searching) {
-      // If we're searching, cap results at 40 like nuget.org.
-      reportedCount = min(ODataUtils.PAGE_SIZE, reportedCount);
-    }
-    // TODO: refactor the 'feed' method so that XML generation is an outer step that uses a data structure
-    // then we can invoke the inner thing, tweak 'inline count' and go, instead of search/replacing
-    return feedXml.replaceFirst("<m:count>\\d*</m:count>", "<m:count>" + reportedCount + "</m:count>");
+    return feed(base, operation, query, new Function<Integer, Integer>()
+    {
+      @Override
+      public Integer apply(final Integer localCount) {
+        // Work out the number of results we should report to the client.
+        // Note that nuget.org itself occasionally reports nonsensical results.
+        int reportedCount = CountReportingPolicy.determineReportedCount(remoteCount, localCount, top, skip);
+        if (searching) {
+          // If we're searching, cap results at 40 like nuget.org.
+          reportedCount = min(ODataUtils.PAGE_SIZE, reportedCount);
+        }
+        return reportedCount;
+      }
+    });
   }
 
   @Override
@@ -177,7 +271,9 @@ public class NugetProxyGalleryFacet
 
   /**
    * Determines which of the repository IDs correspond to remote proxies, and queries (or populates) the count cache
-   * using the supplied {@link RemoteCallFactory}.
+   * using the supplied {@link RemoteCallFactory}. Cached counts older than the maximum age are returned as they are
+   * while a single background refresh brings them up to date; concurrent misses for the same query share one remote
+   * call.
    *
    * @return the package count from the remote repo
    */
@@ -188,9 +284,18 @@ public class NugetProxyGalleryFacet
     try {
       // TODO: Determine if we should talk to the remote based on its status
 
-      final QueryCacheKey key = new QueryCacheKey(repo.getName(), path);
-      final Integer cachedCount = cache.get(key, remoteCall.build(repo, path));
-      return cachedCount;
+      final QueryCacheKey key = new QueryCacheKey(repo.getName(), path, remoteCall);
+      final CachedCount cachedCount = cache.get(key);
+      final long age = System.currentTimeMillis() - cachedCount.fetched;
+      if (age > cacheItemMaxStaleMillis) {
+        // restored from disk long ago; do not serve it
+        cache.invalidate(key);
+        return cache.get(key).count;
+      }
+      if (age > cacheItemMaxAgeMillis) {
+        cache.refresh(key);
+      }
+      return cachedCount.count;
     }
     catch (ExecutionException | UncheckedExecutionException e) {
       log.warn("{} attempting to contact proxied repository {}.", e.getCause().getClass().getSimpleName(),
@@ -202,6 +307,68 @@ public class NugetProxyGalleryFacet
     return 0;
   }
 
+  private CachedCount fetch(final QueryCacheKey key) throws Exception {
+    final int count = key.remoteCall.build(getRepository(), key.path).call();
+    return new CachedCount(count, System.currentTimeMillis());
+  }
+
+  private File cacheFile() {
+    return new File(cacheDir, getRepository().getName() + ".properties");
+  }
+
+  /**
+   * Restores counts saved by a previous run, so a restart does not send every query to the remote again.
+   */
+  private void loadCache() {
+    final File file = cacheFile();
+    if (!file.isFile()) {
+      return;
+    }
+    final Properties properties = new Properties();
+    try (InputStream in = new FileInputStream(file)) {
+      properties.load(in);
+    }
+    catch (IOException e) {
+      log.warn("Unable to load NuGet query cache {}", file, e);
+      return;
+    }
+    final long now = System.currentTimeMillis();
+    for (String path : properties.stringPropertyNames()) {
+      try {
+        final CachedCount value = CachedCount.parse(properties.getProperty(path));
+        if (now - value.fetched <= cacheItemMaxStaleMillis) {
+          final URI uri = new URI(path);
+          final RemoteCallFactory remoteCall =
+              uri.getPath().endsWith("$count") ? new CountFetcher(fetcher) : new FeedLoader(fetcher, this);
+          cache.put(new QueryCacheKey(getRepository().getName(), uri, remoteCall), value);
+        }
+      }
+      catch (URISyntaxException | IllegalArgumentException e) {
+        log.debug("Ignoring malformed NuGet query cache entry {}", path, e);
+      }
+    }
+    log.debug("Restored {} NuGet query cache entries from {}", cache.size(), file);
+  }
+
+  private void saveCache() {
+    final Properties properties = new Properties();
+    for (Entry<QueryCacheKey, CachedCount> entry : cache.asMap().entrySet()) {
+      properties.setProperty(entry.getKey().path.toString(), entry.getValue().toString());
+    }
+    final File file = cacheFile();
+    try {
+      Files.createDirectories(cacheDir.toPath());
+      final File temp = new File(cacheDir, file.getName() + ".tmp");
+      try (OutputStream out = new FileOutputStream(temp)) {
+        properties.store(out, null);
+      }
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      log.warn("Unable to save NuGet query cache {}", file, e);
+    }
+  }
+
   @Nullable
   private Integer asInteger(String value) {
     if (value == null) {
@@ -215,20 +382,6 @@ public class NugetProxyGalleryFacet
     }
   }
 
-  /**
-   * Return the <m:count> from an XML feed, or 0 if it's not present/fails to parse.
-   */
-  private int parseCount(final String feed) {
-    final Matcher matcher = COUNT_REGEX.matcher(feed);
-    if (!matcher.find()) {
-      return 0;
-    }
-
-    final Integer integer = asInteger(matcher.group(1));
-    return integer == null ? 0 : integer;
-  }
-
-
   /**
    * A factory to create {@link Callable}s to populate the count cache.
    */
@@ -300,15 +453,48 @@ public class NugetProxyGalleryFacet
   }
 
 
+  /**
+   * A remote count and when it was fetched.
+   */
+  private static class CachedCount
+  {
+    final int count;
+
+    final long fetched;
+
+    private CachedCount(final int count, final long fetched) {
+      this.count = count;
+      this.fetched = fetched;
+    }
+
+    static CachedCount parse(final String value) {
+      final int separator = value.indexOf(',');
+      checkArgument(separator > 0, "Malformed cached count: %s", value);
+      return new CachedCount(Integer.parseInt(value.substring(0, separator)),
+          Long.parseLong(value.substring(separator + 1)));
+    }
+
+    @Override
+    public String toString() {
+      return count + "," + fetched;
+    }
+  }
+
   private static class QueryCacheKey
   {
     final String repoId;
 
     final URI path;
 
-    private QueryCacheKey(final String repoId, final URI path) {
+    /**
+     * How to fetch the value; not part of the key's identity.
+     */
+    final RemoteCallFactory remoteCall;
+
+    private QueryCacheKey(final String repoId, final URI path, final RemoteCallFactory remoteCall) {
       this.repoId = repoId;
       this.path = path;
+      this.remoteCall = remoteCall;
     }
 
     @Override
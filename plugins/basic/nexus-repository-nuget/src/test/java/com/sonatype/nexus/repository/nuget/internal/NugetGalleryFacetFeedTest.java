@@ -0,0 +1,120 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package com.sonatype.nexus.repository.nuget.internal;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.storage.Component;
+import org.sonatype.nexus.repository.storage.StorageTx;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NugetGalleryFacetFeedTest
+    extends TestSupport
+{
+  private NugetGalleryFacetImpl galleryFacet;
+
+  private StorageTx tx;
+
+  @Before
+  public void setUp() throws Exception {
+    galleryFacet = spy(new NugetGalleryFacetImpl());
+    tx = mock(StorageTx.class);
+    doReturn(tx).when(galleryFacet).openStorageTx();
+    doReturn(ImmutableList.of(mock(Repository.class))).when(galleryFacet).getRepositories();
+
+    final List<Component> components = Lists.newArrayList();
+    for (String version : new String[]{"1.0", "2.0"}) {
+      components.add(component("screwdriver", version));
+    }
+    when(tx.findComponents(anyString(), anyMapOf(String.class, Object.class), any(Iterable.class), anyString()))
+        .thenReturn(components);
+    when(tx.countComponents(anyString(), anyMapOf(String.class, Object.class), any(Iterable.class), anyString()))
+        .thenReturn(2L);
+  }
+
+  @Test
+  public void feedIsRenderedWhenRead() throws Exception {
+    final Payload feed = galleryFacet.feed("http://localhost/nuget", "Packages", Maps.<String, String>newHashMap());
+
+    verify(galleryFacet, never()).openStorageTx();
+
+    final String xml = read(feed);
+    assertThat(xml, containsString("<title type=\"text\">Packages</title>"));
+    assertThat(xml, containsString("Packages(Id='screwdriver',Version='1.0')"));
+    assertThat(xml, containsString("Packages(Id='screwdriver',Version='2.0')"));
+    assertThat(xml, not(containsString("<m:count>")));
+    assertThat(xml, endsWith("</feed>"));
+    verify(tx).commit();
+    verify(tx).close();
+  }
+
+  @Test
+  public void inlineCountIsPassedThroughFunction() throws Exception {
+    final Map<String, String> query = Maps.newHashMap();
+    query.put("$inlinecount", "allpages");
+
+    final Payload feed = galleryFacet.feed("http://localhost/nuget", "Packages", query,
+        new Function<Integer, Integer>()
+        {
+          @Override
+          public Integer apply(final Integer localCount) {
+            return localCount + 40;
+          }
+        });
+
+    assertThat(read(feed), containsString("<m:count>42</m:count>"));
+  }
+
+  private Component component(final String id, final String version) {
+    final Map<String, Object> attributes = Maps.newHashMap();
+    attributes.put(NugetProperties.P_ID, id);
+    attributes.put(NugetProperties.P_VERSION, version);
+    final Component component = mock(Component.class);
+    when(component.formatAttributes()).thenReturn(new NestedAttributesMap("nuget", attributes));
+    return component;
+  }
+
+  private String read(final Payload payload) throws Exception {
+    try (InputStream in = payload.openInputStream()) {
+      return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+    }
+  }
+}
@@ -56,6 +56,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -97,10 +98,16 @@ public class NugetGalleryFacetImplPutTest
     doReturn(component).when(galleryFacet)
         .createOrUpdatePackage(any(StorageTx.class), any(Map.class), any(InputStream.class));
     when(component.isNew()).thenReturn(isNew);
+    doNothing().when(galleryFacet).maintainAggregateInfo(any(StorageTx.class), eq(component));
 
     galleryFacet.put(packageStream);
 
-    verify(galleryFacet).maintainAggregateInfo(tx, "SONATYPE.TEST");
+    if (isNew) {
+      verify(galleryFacet).maintainAggregateInfo(tx, component);
+    }
+    else {
+      verify(galleryFacet).maintainAggregateInfo(tx, "SONATYPE.TEST");
+    }
     ArgumentCaptor<ComponentEvent> o = ArgumentCaptor.forClass(ComponentEvent.class);
     verify(eventBus, times(1)).post(o.capture());
     ComponentEvent actual = o.getValue();
@@ -208,6 +215,48 @@ public class NugetGalleryFacetImplPutTest
     verifyVersionFlags(release.formatAttributes(), true, false);
   }
 
+  @Test
+  public void newReleaseReplacesLatestVersions() {
+    final StorageTx tx = mock(StorageTx.class);
+
+    final Component latest = buildVersionMock(tx, "2.1.8", false);
+    when(latest.formatAttributes().get(P_IS_LATEST_VERSION)).thenReturn(true);
+    when(latest.formatAttributes().get(P_IS_ABSOLUTE_LATEST_VERSION)).thenReturn(true);
+    when(latest.formatAttributes().get(eq(P_DOWNLOAD_COUNT), eq(Number.class), any(Number.class))).thenReturn(7L);
+    when(tx.findComponents(anyString(), any(Map.class), any(Iterable.class), anyString()))
+        .thenReturn(Arrays.asList(latest));
+
+    final Component release = buildVersionMock(tx, "2.1.9", false);
+
+    final NugetGalleryFacetImpl galleryFacet = buildSpy();
+    galleryFacet.maintainAggregateInfo(tx, release);
+
+    verifyVersionFlags(release.formatAttributes(), true, true);
+    verifyVersionFlags(latest.formatAttributes(), false, false);
+    verify(release.formatAttributes()).set(P_DOWNLOAD_COUNT, 7L);
+  }
+
+  @Test
+  public void newPrereleaseKeepsLatestRelease() {
+    final StorageTx tx = mock(StorageTx.class);
+
+    final Component latest = buildVersionMock(tx, "2.1.8", false);
+    when(latest.formatAttributes().get(P_IS_LATEST_VERSION)).thenReturn(true);
+    when(latest.formatAttributes().get(P_IS_ABSOLUTE_LATEST_VERSION)).thenReturn(true);
+    when(latest.formatAttributes().get(eq(P_DOWNLOAD_COUNT), eq(Number.class), any(Number.class))).thenReturn(0L);
+    when(tx.findComponents(anyString(), any(Map.class), any(Iterable.class), anyString()))
+        .thenReturn(Arrays.asList(latest));
+
+    final Component preRelease = buildVersionMock(tx, "2.1.9-greenbell", true);
+
+    final NugetGalleryFacetImpl galleryFacet = buildSpy();
+    galleryFacet.maintainAggregateInfo(tx, preRelease);
+
+    verifyVersionFlags(preRelease.formatAttributes(), false, true);
+    verify(latest.formatAttributes()).set(P_IS_ABSOLUTE_LATEST_VERSION, false);
+    verify(latest.formatAttributes(), never()).set(eq(P_IS_LATEST_VERSION), any());
+  }
+
   private NugetGalleryFacetImpl buildSpy() {
     final NugetGalleryFacetImpl galleryFacet = Mockito.spy(new NugetGalleryFacetImpl()
     {
@@ -227,6 +276,7 @@ public class NugetGalleryFacetImplPutTest
 
     when(component.formatAttributes()).thenReturn(nugetAttributes);
 
+    when(component.name()).thenReturn("screwdriver");
     when(component.requireVersion()).thenReturn(version);
     when(nugetAttributes.require(eq(P_VERSION))).thenReturn(version);
     when(nugetAttributes.require(eq(P_IS_PRERELEASE), eq(Boolean.class))).thenReturn(isPrerelease);
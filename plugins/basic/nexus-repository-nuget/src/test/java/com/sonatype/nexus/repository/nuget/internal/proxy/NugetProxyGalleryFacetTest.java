@@ -0,0 +1,117 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package com.sonatype.nexus.repository.nuget.internal.proxy;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Map;
+
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.config.Configuration;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.Maps;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NugetProxyGalleryFacetTest
+    extends TestSupport
+{
+  @Mock
+  private NugetFeedFetcher fetcher;
+
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private Configuration configuration;
+
+  private final Map<String, Object> proxyAttributes = Maps.newHashMap();
+
+  private File workDir;
+
+  @Before
+  public void setUp() throws Exception {
+    workDir = util.createTempDir();
+    when(repository.getName()).thenReturn("nuget-proxy");
+    when(repository.getConfiguration()).thenReturn(configuration);
+    when(configuration.attributes(NugetProxyGalleryFacet.CONFIG_KEY))
+        .thenReturn(new NestedAttributesMap(NugetProxyGalleryFacet.CONFIG_KEY, proxyAttributes));
+  }
+
+  @Test
+  public void staleCountIsServedWhileRefreshing() throws Exception {
+    proxyAttributes.put("queryCacheItemMaxAgeSeconds", 0);
+    when(fetcher.getCount(eq(repository), any(URI.class))).thenReturn(5, 7);
+
+    final NugetProxyGalleryFacet facet = start();
+    try {
+      assertThat(facet.count("Search()/$count", Maps.<String, String>newHashMap()), is(5));
+      Thread.sleep(10);
+      assertThat(facet.count("Search()/$count", Maps.<String, String>newHashMap()), is(5));
+
+      verify(fetcher, timeout(5000).times(2)).getCount(eq(repository), any(URI.class));
+      int count = 0;
+      for (int i = 0; i < 100 && count != 7; i++) {
+        Thread.sleep(50);
+        count = facet.count("Search()/$count", Maps.<String, String>newHashMap());
+      }
+      assertThat(count, is(7));
+    }
+    finally {
+      facet.doStop();
+    }
+  }
+
+  @Test
+  public void countsSurviveRestart() throws Exception {
+    when(fetcher.getCount(eq(repository), any(URI.class))).thenReturn(5);
+
+    final NugetProxyGalleryFacet facet = start();
+    assertThat(facet.count("Search()/$count", Maps.<String, String>newHashMap()), is(5));
+    facet.doStop();
+
+    final NugetProxyGalleryFacet restarted = start();
+    try {
+      assertThat(restarted.count("Search()/$count", Maps.<String, String>newHashMap()), is(5));
+      verify(fetcher, times(1)).getCount(eq(repository), any(URI.class));
+    }
+    finally {
+      restarted.doStop();
+    }
+  }
+
+  private NugetProxyGalleryFacet start() throws Exception {
+    final NugetProxyGalleryFacet facet = new NugetProxyGalleryFacet(fetcher, workDir)
+    {
+      @Override
+      protected Repository getRepository() {
+        return repository;
+      }
+    };
+    facet.doConfigure();
+    facet.doStart();
+    return facet;
+  }
+}
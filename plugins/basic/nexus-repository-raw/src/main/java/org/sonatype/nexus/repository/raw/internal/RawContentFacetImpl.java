@@ -42,7 +42,6 @@ import org.joda.time.DateTime;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.common.hash.HashAlgorithm.MD5;
 import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
-import static org.sonatype.nexus.repository.storage.StorageFacet.P_ATTRIBUTES;
 import static org.sonatype.nexus.repository.storage.StorageFacet.P_PATH;
 
 /**
@@ -74,6 +73,12 @@ public class RawContentFacetImpl
     this.strictContentTypeValidation = checkNotNull(attributes.require("strictContentTypeValidation", Boolean.class));
   }
 
+  @Override
+  protected void doStart() throws Exception {
+    // lets storage backfill lookup keys of content stored before they were introduced
+    getStorage().registerLookupKeyAttributes(P_PATH, null);
+  }
+
   @Nullable
   @Override
   public RawContent get(final String path) {
@@ -100,7 +105,8 @@ public class RawContentFacetImpl
         // CREATE
         component = tx.createComponent(bucket, getRepository().getFormat())
             .group(getGroup(path))
-            .name(getName(path));
+            .name(getName(path))
+            .lookupKey(path);
 
         // Set attributes map to contain "raw" format-specific metadata (in this case, path)
         component.formatAttributes().set(P_PATH, path);
@@ -194,7 +200,7 @@ public class RawContentFacetImpl
   @Override
   public void updateLastUpdated(final String path, final DateTime lastUpdated) throws IOException {
     try (StorageTx tx = getStorage().openTx()) {
-      Component component = tx.findComponentWithProperty(P_PATH, path, tx.getBucket());
+      Component component = getComponent(tx, path, tx.getBucket());
 
       if (component == null) {
         log.debug("Updating lastUpdated time for nonexistant raw component {}", path);
@@ -211,10 +217,8 @@ public class RawContentFacetImpl
     return getRepository().facet(StorageFacet.class);
   }
 
-  // TODO: Consider a top-level indexed property (e.g. "locator") to make these common lookups fast
   private Component getComponent(StorageTx tx, String path, Bucket bucket) {
-    String property = String.format("%s.%s.%s", P_ATTRIBUTES, RawFormat.NAME, P_PATH);
-    return tx.findComponentWithProperty(property, path, bucket);
+    return tx.findComponentWithLookupKey(path, bucket);
   }
 
   private RawContent marshall(final Asset asset, final Blob blob) {
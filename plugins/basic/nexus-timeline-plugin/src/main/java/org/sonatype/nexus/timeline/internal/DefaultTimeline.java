@@ -17,7 +17,15 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -33,6 +41,12 @@ import org.sonatype.nexus.timeline.TimelineCallback;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 import org.sonatype.sisu.goodies.lifecycle.LifecycleSupport;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
@@ -40,6 +54,7 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OClass.INDEX_TYPE;
@@ -52,11 +67,17 @@ import org.joda.time.DateMidnight;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Days;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Implementation of {@link Timeline} backed by OrientDB.
- * 
+ *
+ * Added entries are queued and written by a single writer thread in transactions of up to {@code batchSize} entries,
+ * once that many are queued or at the latest every {@code flushInterval} milliseconds. When {@code capacity} entries
+ * are queued, entries are either dropped ({@code dropWhenFull}) or written by the adding thread itself, which slows
+ * producers down to the pace of the database. Reads and purges write out queued entries first.
+ *
  * @since 3.0
  */
 @Named
@@ -85,13 +106,81 @@ public class DefaultTimeline
 
   private static final String I_SUBTYPE = DB_CLASS + "." + P_SUBTYPE;
 
+  /**
+   * Queued entry, with the time it was queued at.
+   */
+  private static class PendingRecord
+  {
+    private final EntryRecord record;
+
+    private final long enqueued;
+
+    private PendingRecord(final EntryRecord record, final long enqueued) {
+      this.record = record;
+      this.enqueued = enqueued;
+    }
+  }
+
   private final DatabaseManager databaseManager;
 
+  private final int batchSize;
+
+  private final int capacity;
+
+  private final long flushInterval;
+
+  private final boolean dropWhenFull;
+
+  private final Queue<PendingRecord> queue = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger queueSize = new AtomicInteger();
+
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  private final Meter enqueued;
+
+  private final Meter dropped;
+
+  private final Histogram batchSizes;
+
+  private final Timer lag;
+
   private DatabasePool pool;
 
+  private volatile ScheduledExecutorService writer;
+
   @Inject
-  public DefaultTimeline(final EventBus eventBus, final DatabaseManager databaseManager) {
+  public DefaultTimeline(final EventBus eventBus,
+                         final DatabaseManager databaseManager,
+                         final @Named("${nexus.timeline.batchSize:-500}") int batchSize,
+                         final @Named("${nexus.timeline.capacity:-10000}") int capacity,
+                         final @Named("${nexus.timeline.flushInterval:-1000}") long flushInterval,
+                         final @Named("${nexus.timeline.dropWhenFull:-false}") boolean dropWhenFull)
+  {
     this.databaseManager = checkNotNull(databaseManager);
+    checkArgument(batchSize > 0, "Batch size must be positive");
+    checkArgument(capacity >= batchSize, "Capacity must not be smaller than batch size");
+    checkArgument(flushInterval > 0, "Flush interval must be positive");
+    this.batchSize = batchSize;
+    this.capacity = capacity;
+    this.flushInterval = flushInterval;
+    this.dropWhenFull = dropWhenFull;
+
+    MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
+    String queueDepthName = MetricRegistry.name(DefaultTimeline.class, "queueDepth");
+    metricRegistry.remove(queueDepthName);
+    metricRegistry.register(queueDepthName, new Gauge<Integer>()
+    {
+      @Override
+      public Integer getValue() {
+        return queueSize.get();
+      }
+    });
+    this.enqueued = metricRegistry.meter(MetricRegistry.name(DefaultTimeline.class, "enqueued"));
+    this.dropped = metricRegistry.meter(MetricRegistry.name(DefaultTimeline.class, "dropped"));
+    this.batchSizes = metricRegistry.histogram(MetricRegistry.name(DefaultTimeline.class, "batchSize"));
+    this.lag = metricRegistry.timer(MetricRegistry.name(DefaultTimeline.class, "lag"));
+
     eventBus.register(this);
   }
 
@@ -139,10 +228,25 @@ public class DefaultTimeline
     }
 
     this.pool = databaseManager.newPool(DB_NAME);
+
+    this.writer = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("timeline-writer").setDaemon(true).build());
+    writer.scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run() {
+        flushQuietly();
+      }
+    }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
   }
 
   @Override
   public void doStop() throws Exception {
+    writer.shutdown();
+    writer.awaitTermination(flushInterval * 5, TimeUnit.MILLISECONDS);
+    writer = null;
+    flushQuietly();
+
     pool.close();
     pool = null;
   }
@@ -161,7 +265,7 @@ public class DefaultTimeline
     if (!isStarted()) {
       return;
     }
-    addEntryRecord(Collections.singletonList(new EntryRecord(timestamp, type, subType, data)));
+    enqueue(Collections.singletonList(new EntryRecord(timestamp, type, subType, data)));
   }
 
   @Override
@@ -179,42 +283,116 @@ public class DefaultTimeline
         entries.add(new EntryRecord(record.getTimestamp(), record.getType(), record.getSubType(), record.getData()));
       }
     }
-    addEntryRecord(entries);
+    enqueue(entries);
   }
 
-  private void addEntryRecord(final List<EntryRecord> records) {
-    if (records.isEmpty()) {
-      return; // spare resources from getting DB for nothing
+  private void enqueue(final List<EntryRecord> records) {
+    for (EntryRecord record : records) {
+      if (queueSize.get() >= capacity) {
+        if (dropWhenFull) {
+          dropped.mark();
+          continue;
+        }
+        // writer cannot keep up, so make the producer write
+        log.debug("Timeline queue full ({} entries), writing on caller thread", queueSize.get());
+        flush();
+      }
+      queue.add(new PendingRecord(record, System.nanoTime()));
+      queueSize.incrementAndGet();
+      enqueued.mark();
     }
-    // this must be synced to prevent purge drop cluster being created
-    synchronized (this) {
-      try (ODatabaseDocumentTx db = openDb()) {
-        // 1st pass (no TX, DDL): add clusters needed by records
-        final Map<Long, String> timestampToClusterMap = Maps.newHashMap();
-        for (EntryRecord record : records) {
-          if (!timestampToClusterMap.containsKey(record.getTimestamp())) {
-            timestampToClusterMap.put(record.getTimestamp(), maybeAddNewCluster(db, record.getTimestamp()));
+
+    final ScheduledExecutorService writer = this.writer;
+    if (writer != null && queueSize.get() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+      try {
+        writer.execute(new Runnable()
+        {
+          @Override
+          public void run() {
+            flushScheduled.set(false);
+            flushQuietly();
           }
+        });
+      }
+      catch (RejectedExecutionException e) {
+        // stopping, queued entries are written out by doStop
+        flushScheduled.set(false);
+      }
+    }
+  }
+
+  /**
+   * Writes out the entries queued at the time of the call. Entries added meanwhile are left for a later flush, so a
+   * producer writing on its own thread is not held up by other producers.
+   */
+  @VisibleForTesting
+  void flush() {
+    // this must be synced to prevent purge drop cluster being created, and keeps a single writer
+    synchronized (this) {
+      int remaining = queueSize.get();
+      while (remaining > 0) {
+        final List<PendingRecord> batch = Lists.newArrayListWithCapacity(Math.min(batchSize, remaining));
+        PendingRecord pending;
+        while (batch.size() < batchSize && batch.size() < remaining && (pending = queue.poll()) != null) {
+          queueSize.decrementAndGet();
+          batch.add(pending);
         }
-        // 2nd pass (in TX, DML): insert records into their places.
-        db.begin();
-        try {
-          for (EntryRecord record : records) {
-            ODocument doc = db.newInstance(DB_CLASS);
-            doc.field(P_TIMESTAMP, record.getTimestamp());
-            doc.field(P_TYPE, record.getType());
-            doc.field(P_SUBTYPE, record.getSubType());
-            doc.field(P_DATA, record.getData());
-            doc.save(timestampToClusterMap.get(record.getTimestamp()));
-          }
-          db.commit();
+        if (batch.isEmpty()) {
+          return;
         }
-        catch (Exception e) {
-          db.rollback();
-          throw Throwables.propagate(e);
+        remaining -= batch.size();
+        addEntryRecord(batch);
+      }
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    }
+    catch (Exception e) {
+      log.warn("Failed to write timeline entries", e);
+    }
+  }
+
+  private void addEntryRecord(final List<PendingRecord> records) {
+    try (ODatabaseDocumentTx db = pool.acquire()) {
+      // 1st pass (no TX, DDL): add clusters needed by records
+      final Map<Long, String> timestampToClusterMap = Maps.newHashMap();
+      for (PendingRecord pending : records) {
+        final long timestamp = pending.record.getTimestamp();
+        if (!timestampToClusterMap.containsKey(timestamp)) {
+          timestampToClusterMap.put(timestamp, maybeAddNewCluster(db, timestamp));
         }
       }
+      // 2nd pass (in TX, DML): insert records into their places.
+      db.begin();
+      try {
+        for (PendingRecord pending : records) {
+          final EntryRecord record = pending.record;
+          ODocument doc = db.newInstance(DB_CLASS);
+          doc.field(P_TIMESTAMP, record.getTimestamp());
+          doc.field(P_TYPE, record.getType());
+          doc.field(P_SUBTYPE, record.getSubType());
+          doc.field(P_DATA, record.getData());
+          doc.save(timestampToClusterMap.get(record.getTimestamp()));
+        }
+        db.commit();
+      }
+      catch (Exception e) {
+        db.rollback();
+        throw e;
+      }
+    }
+    catch (Exception e) {
+      // records were taken off the queue already, so they are lost
+      dropped.mark(records.size());
+      log.warn("Failed to write {} timeline entries, dropping them", records.size(), e);
+      return;
     }
+    batchSizes.update(records.size());
+    // records are queued in order, so the first one waited longest
+    lag.update(System.nanoTime() - records.get(0).enqueued, TimeUnit.NANOSECONDS);
   }
 
   /**
@@ -249,6 +427,8 @@ public class DefaultTimeline
     if (!isStarted() || count == 0) {
       return;
     }
+    // make sure entries added so far are visible
+    flush();
     try (ODatabaseDocumentTx db = openDb()) {
       db.begin();
       try {
@@ -305,6 +485,7 @@ public class DefaultTimeline
     if (!isStarted()) {
       return;
     }
+    flush();
     try (ODatabaseDocumentTx db = openDb()) {
       final DateMidnight nowDm = new DateMidnight(DateTimeZone.UTC);
       final int prefixLen = DB_CLUSTER_PREFIX.length();
@@ -28,6 +28,9 @@ import org.sonatype.sisu.goodies.common.Time;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 import org.sonatype.sisu.litmus.testsupport.TestSupport;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableMap;
@@ -68,7 +71,7 @@ public class DefaultTimelineTest
     this.databaseManager = new MemoryDatabaseManager();
     databaseManager.start();
 
-    underTest = new DefaultTimeline(mock(EventBus.class), databaseManager);
+    underTest = new DefaultTimeline(mock(EventBus.class), databaseManager, 2, 4, 60000L, false);
     underTest.start();
     underTest.purgeOlderThan(0);
   }
@@ -181,6 +184,49 @@ public class DefaultTimelineTest
     assertThat(res.get(1).getData(), hasEntry("place", "2nd"));
   }
 
+  @Test
+  public void fullQueueIsWrittenByProducer() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      underTest.add(new EntryRecord(System.currentTimeMillis(), "TEST", "1", ImmutableMap.of("i", String.valueOf(i))));
+    }
+    underTest.flush();
+    try (ODatabaseDocumentTx db = underTest.openDb()) {
+      assertThat(db.countClass(DefaultTimeline.DB_CLASS), equalTo(10L));
+    }
+  }
+
+  @Test
+  public void fullQueueDropsEntries() throws Exception {
+    underTest.stop();
+    underTest = new DefaultTimeline(mock(EventBus.class), databaseManager, 2, 4, 60000L, true);
+    underTest.start();
+    final Meter dropped = SharedMetricRegistries.getOrCreate("nexus")
+        .meter(MetricRegistry.name(DefaultTimeline.class, "dropped"));
+    final long droppedBefore = dropped.getCount();
+    // single add call: the writer is only kicked after all entries are queued, so nothing drains in between
+    final EntryRecord[] records = new EntryRecord[10];
+    for (int i = 0; i < records.length; i++) {
+      records[i] = new EntryRecord(System.currentTimeMillis(), "TEST", "1", ImmutableMap.of("i", String.valueOf(i)));
+    }
+    underTest.add(records);
+    assertThat(dropped.getCount() - droppedBefore, equalTo(6L));
+    underTest.flush();
+    try (ODatabaseDocumentTx db = underTest.openDb()) {
+      assertThat(db.countClass(DefaultTimeline.DB_CLASS), equalTo(4L));
+    }
+  }
+
+  @Test
+  public void stopWritesQueuedEntries() throws Exception {
+    underTest.add(new EntryRecord(System.currentTimeMillis(), "TEST", "1", ImmutableMap.of("a", "a")));
+    underTest.stop();
+    underTest = new DefaultTimeline(mock(EventBus.class), databaseManager, 2, 4, 60000L, false);
+    underTest.start();
+    try (ODatabaseDocumentTx db = underTest.openDb()) {
+      assertThat(db.countClass(DefaultTimeline.DB_CLASS), equalTo(1L));
+    }
+  }
+
   @Test
   public void partitioningByDay() throws Exception {
     final long now = new DateMidnight(DateTimeZone.UTC).getMillis();
@@ -190,6 +236,7 @@ public class DefaultTimelineTest
     underTest.add(new EntryRecord(now - TimeUnit.DAYS.toMillis(1), "TEST", "2", ImmutableMap.of("day", "2")));
     underTest.add(new EntryRecord(now, "TEST", "1", ImmutableMap.of("day", "3")));
     underTest.add(new EntryRecord(now, "TEST", "2", ImmutableMap.of("day", "3")));
+    underTest.flush();
 
     List<String> partitionsPostAppend;
     List<String> partitionsPostPurge1;
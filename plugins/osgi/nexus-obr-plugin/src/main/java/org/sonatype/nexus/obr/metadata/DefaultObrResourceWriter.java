@@ -12,15 +12,19 @@
  */
 package org.sonatype.nexus.obr.metadata;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.URL;
+import java.util.Properties;
 
 import org.sonatype.nexus.mime.MimeSupport;
+import org.sonatype.nexus.obr.proxy.CacheableResource;
 import org.sonatype.nexus.obr.util.ObrUtils;
 import org.sonatype.nexus.proxy.IllegalOperationException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
@@ -56,6 +60,11 @@ public class DefaultObrResourceWriter
 
   private final UrlTransformer urlTransformer;
 
+  /**
+   * Cached bundle path to remote URL, stored alongside the OBR so bundle URLs can be resolved without parsing it.
+   */
+  private final Properties index = new Properties();
+
   private boolean isComplete = false;
 
   /**
@@ -97,6 +106,15 @@ public class DefaultObrResourceWriter
     }
 
     ResourceImpl.toXML(resource, urlTransformer).print(0, pw);
+
+    final Object remoteUrl = resource.getProperties().get(CacheableResource.REMOTE_URL);
+    if (remoteUrl != null) {
+      final String bundlePath = resource.getURL().getPath();
+      // lookups used to take the first matching resource, so keep doing that
+      if (!index.containsKey(bundlePath)) {
+        index.setProperty(bundlePath, remoteUrl.toString());
+      }
+    }
   }
 
   public Appendable append(final CharSequence csq) {
@@ -131,12 +149,32 @@ public class DefaultObrResourceWriter
       throw new StorageException("OBR metadata is not complete");
     }
 
-    final ResourceStoreRequest request = new ResourceStoreRequest(path);
-    final ContentLocator content = new FileContentLocator(file,
-        mimeSupport.guessMimeTypeFromPath(file.getAbsolutePath()));
+    store(path, file);
+
+    // write index after the OBR, so it never refers to bundles the stored OBR does not contain
+    final File indexFile = new File(file.getPath() + ".index");
+    try {
+      try (OutputStream os = new BufferedOutputStream(new FileOutputStream(indexFile))) {
+        index.store(os, null);
+      }
+      store(ObrUtils.getObrIndexPath(path), indexFile);
+    }
+    finally {
+      delete(indexFile);
+    }
+
+    delete(file);
+  }
+
+  private void store(final String itemPath, final File content)
+      throws StorageException
+  {
+    final ResourceStoreRequest request = new ResourceStoreRequest(itemPath);
+    final ContentLocator locator = new FileContentLocator(content,
+        mimeSupport.guessMimeTypeFromPath(content.getAbsolutePath()));
 
     try {
-      repository.storeItem(false, new DefaultStorageFileItem(repository, request, true, true, content));
+      repository.storeItem(false, new DefaultStorageFileItem(repository, request, true, true, locator));
     }
     catch (final IllegalOperationException e) {
       throw new StorageException(e);
@@ -144,7 +182,9 @@ public class DefaultObrResourceWriter
     catch (final UnsupportedStorageOperationException e) {
       throw new StorageException(e);
     }
+  }
 
+  private static void delete(final File file) {
     if (!file.delete()) {
       file.deleteOnExit(); // see if we can delete it later...
     }
@@ -14,6 +14,7 @@ package org.sonatype.nexus.obr.proxy;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Map;
 
 import javax.enterprise.inject.Typed;
 import javax.inject.Inject;
@@ -78,6 +79,11 @@ public class ObrRepository
 
   private final ObrMetadataSource obrMetadataSource;
 
+  /**
+   * Last loaded bundle index, reloaded whenever the index item changes.
+   */
+  private volatile BundleUrlIndex bundleUrlIndex;
+
   private final RepositoryKind obrRepositoryKind =
       new MutableProxyRepositoryKind(this, null, new DefaultRepositoryKind(ObrHostedRepository.class, null),
           new DefaultRepositoryKind(ObrProxyRepository.class, null));
@@ -370,12 +376,40 @@ public class ObrRepository
   }
 
   /**
-   * Scan through the OBR and attempt to match the cached location with a {@link Resource} entry.
+   * Looks up the remote URL of a cached bundle location in the bundle index kept alongside the OBR, falling back to
+   * scanning the OBR when it has no index yet.
    *
    * @param path cached bundle location
    * @return the remote bundle URL
    */
   private String getAbsoluteBundleUrl(final String path) {
+    final StorageFileItem indexItem = ObrUtils.getCachedItem(ObrUtils.createObrIndexUid(this));
+    if (indexItem == null) {
+      return scanForAbsoluteBundleUrl(path);
+    }
+
+    BundleUrlIndex index = bundleUrlIndex;
+    if (index == null || index.modified != indexItem.getModified() || index.length != indexItem.getLength()) {
+      try {
+        index = new BundleUrlIndex(indexItem.getModified(), indexItem.getLength(), ObrUtils.readObrIndex(indexItem));
+        bundleUrlIndex = index;
+      }
+      catch (final IOException e) {
+        log.warn("Problem reading OBR index from repository " + getId(), e);
+        return scanForAbsoluteBundleUrl(path);
+      }
+    }
+
+    return index.urls.get(path);
+  }
+
+  /**
+   * Scan through the OBR and attempt to match the cached location with a {@link Resource} entry.
+   *
+   * @param path cached bundle location
+   * @return the remote bundle URL
+   */
+  private String scanForAbsoluteBundleUrl(final String path) {
     ObrResourceReader reader = null;
 
     try {
@@ -425,4 +459,19 @@ public class ObrRepository
 
     return false;
   }
+
+  private static class BundleUrlIndex
+  {
+    private final long modified;
+
+    private final long length;
+
+    private final Map<String, String> urls;
+
+    private BundleUrlIndex(final long modified, final long length, final Map<String, String> urls) {
+      this.modified = modified;
+      this.length = length;
+      this.urls = urls;
+    }
+  }
 }
@@ -14,9 +14,13 @@ package org.sonatype.nexus.obr.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -65,6 +69,11 @@ public final class ObrUtils
    */
   private static final String OBR_PATH = META_PATH + "/obr.xml";
 
+  /**
+   * Suffix of the index of cached bundle paths to remote URLs kept next to OBR metadata.
+   */
+  private static final String OBR_INDEX_SUFFIX = ".index";
+
   /**
    * Ignore files with paths like "/.foo" as well as known text extensions.
    */
@@ -125,6 +134,47 @@ public final class ObrUtils
     return repository.createUid(OBR_PATH);
   }
 
+  /**
+   * Returns the location of the cached bundle index kept next to the given OBR metadata.
+   *
+   * @param metadataPath the OBR metadata path
+   * @return the index path
+   */
+  public static String getObrIndexPath(final String metadataPath) {
+    return metadataPath + OBR_INDEX_SUFFIX;
+  }
+
+  /**
+   * Creates a new UID that points to the cached bundle index of the OBR metadata for the given repository.
+   *
+   * @param repository the Nexus repository
+   * @return a new UID pointing to the cached bundle index
+   */
+  public static RepositoryItemUid createObrIndexUid(final Repository repository) {
+    return repository.createUid(getObrIndexPath(OBR_PATH));
+  }
+
+  /**
+   * Reads the cached bundle index written alongside OBR metadata, see {@link #getObrIndexPath(String)}.
+   *
+   * @param item the index item
+   * @return map of cached bundle path to remote bundle URL
+   */
+  public static Map<String, String> readObrIndex(final StorageFileItem item)
+      throws IOException
+  {
+    final Properties index = new Properties();
+    try (InputStream is = item.getInputStream()) {
+      index.load(is);
+    }
+
+    final Map<String, String> urls = new HashMap<String, String>(index.size() * 2);
+    for (final String path : index.stringPropertyNames()) {
+      urls.put(path, index.getProperty(path));
+    }
+    return urls;
+  }
+
   public static String[] splitObrSiteAndPath(final String url, final boolean useDefaultIfNotSet) {
     // is this a Nexus managed OBR?
     final int i = url.lastIndexOf(OBR_PATH);
@@ -17,11 +17,16 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.sonatype.nexus.obr.metadata.ObrResourceReader;
 import org.sonatype.nexus.obr.metadata.ObrResourceWriter;
 import org.sonatype.nexus.obr.metadata.ObrSite;
+import org.sonatype.nexus.obr.proxy.CacheableResource;
+import org.sonatype.nexus.obr.util.ObrUtils;
 import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
@@ -111,6 +116,38 @@ public class ObrResourceWriterTest
     assertEquals(Collections.emptyList(), urls);
   }
 
+  @Test
+  public void testIndexOfCachedBundles()
+      throws Exception
+  {
+    final ObrSite testSite = openObrSite(testRepository, "/obr/samples/osgi_alliance_obr.zip");
+
+    final RepositoryItemUid uid = testRepository.createUid("/obr/cached.xml");
+
+    final ObrResourceReader reader = obrMetadataSource.getReader(testSite);
+    final ObrResourceWriter writer = obrMetadataSource.getWriter(uid);
+
+    final Map<String, String> expected = new HashMap<String, String>();
+
+    Resource r;
+    while ((r = reader.readResource()) != null) {
+      final Resource cacheable = new CacheableResource(r);
+      if (!expected.containsKey(cacheable.getURL().getPath())) {
+        expected.put(cacheable.getURL().getPath(), r.getURL().toExternalForm());
+      }
+      writer.append(cacheable);
+    }
+
+    reader.close();
+    writer.complete();
+    writer.close();
+
+    final StorageFileItem indexItem =
+        ObrUtils.getCachedItem(testRepository.createUid(ObrUtils.getObrIndexPath(uid.getPath())));
+    assertNotNull(indexItem);
+    assertEquals(expected, ObrUtils.readObrIndex(indexItem));
+  }
+
   // NXCM-1360
   @Test
   public void testRoundTrippingWithLongPackageNames()
@@ -35,6 +35,20 @@ public interface P2RepositoryAggregator
 
   void removeP2Metadata(StorageItem item);
 
+  /**
+   * Applies all queued item changes of given repository to its P2 repository right away.
+   *
+   * @since 3.0
+   */
+  void flush(String repositoryId);
+
+  /**
+   * Applies all queued item changes of all repositories right away.
+   *
+   * @since 3.0
+   */
+  void flush();
+
   void scanAndRebuild(String repositoryId);
 
   void scanAndRebuild();
@@ -15,13 +15,22 @@ package org.sonatype.nexus.plugins.p2.repository.internal;
 import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.configuration.ApplicationDirectories;
 import org.sonatype.nexus.mime.MimeSupport;
 import org.sonatype.nexus.plugins.p2.repository.P2Constants;
 import org.sonatype.nexus.plugins.p2.repository.P2RepositoryAggregator;
@@ -40,15 +49,29 @@ import org.sonatype.p2.bridge.model.InstallableUnit;
 import org.sonatype.sisu.resource.scanner.helper.ListenerSupport;
 import org.sonatype.sisu.resource.scanner.scanners.SerialScanner;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.plugins.p2.repository.P2Constants.P2_REPOSITORY_ROOT_PATH;
 import static org.sonatype.nexus.plugins.p2.repository.internal.NexusUtils.*;
 import static org.sonatype.nexus.plugins.p2.repository.internal.P2ArtifactsEventsInspector.isP2ArtifactsXML;
 import static org.sonatype.nexus.plugins.p2.repository.internal.P2MetadataEventsInspector.isP2ContentXML;
 
+/**
+ * Aggregates p2Artifacts.xml/p2Content.xml items of a repository into a P2 repository.
+ *
+ * Item changes are queued per repository and merged in a single pass, holding the P2 repository lock once, after
+ * {@code nexus.p2.aggregator.quietPeriod} milliseconds without further changes or as soon as
+ * {@code nexus.p2.aggregator.batchSize} changes are queued.
+ */
 @Named
 @Singleton
 public class DefaultP2RepositoryAggregator
@@ -60,6 +83,100 @@ public class DefaultP2RepositoryAggregator
    */
   private static final String FEATURE_CLASSIFIER = P2ArtifactType.FEATURE.getClassifier();
 
+  private enum ChangeType
+  {
+    UPDATE_ARTIFACTS, REMOVE_ARTIFACTS, UPDATE_METADATA, REMOVE_METADATA;
+
+    boolean isArtifacts() {
+      return this == UPDATE_ARTIFACTS || this == REMOVE_ARTIFACTS;
+    }
+
+    boolean isRemove() {
+      return this == REMOVE_ARTIFACTS || this == REMOVE_METADATA;
+    }
+  }
+
+  /**
+   * Queued change of a p2Artifacts.xml/p2Content.xml item. Removals carry a snapshot of the removed item, as the item
+   * itself is gone by the time the change is applied.
+   */
+  private static class Change
+  {
+    private final ChangeType type;
+
+    private final String path;
+
+    @Nullable
+    private final File snapshot;
+
+    private Change(final ChangeType type, final String path, @Nullable final File snapshot) {
+      this.type = type;
+      this.path = path;
+      this.snapshot = snapshot;
+    }
+  }
+
+  /**
+   * Changes queued for one repository, in arrival order; guarded by itself.
+   */
+  private class PendingChanges
+  {
+    private final List<Change> changes = Lists.newArrayList();
+
+    /**
+     * Set once the configuration of the repository was removed, after which no changes are queued anymore.
+     */
+    private boolean removed;
+
+    /**
+     * Serializes flushes, so changes are applied in the order they were queued.
+     */
+    private final Object flushLock = new Object();
+
+    private ScheduledFuture<?> scheduledFlush;
+
+    private void add(final Change change) {
+      if (!change.type.isRemove()) {
+        // updates are read from storage when applied, so a pending update of the same item already covers this one
+        for (int i = changes.size() - 1; i >= 0; i--) {
+          final Change queued = changes.get(i);
+          if (queued.path.equals(change.path) && queued.type.isArtifacts() == change.type.isArtifacts()) {
+            if (queued.type == change.type) {
+              return;
+            }
+            break;
+          }
+        }
+      }
+      changes.add(change);
+      pendingCount.incrementAndGet();
+    }
+
+    private void schedule(final String repositoryId, final long delay) {
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+      }
+      scheduledFlush = flusher.schedule(new Runnable()
+      {
+        @Override
+        public void run() {
+          flushQuietly(repositoryId);
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private List<Change> drain() {
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+        scheduledFlush = null;
+      }
+      final List<Change> drained = Lists.newArrayList(changes);
+      changes.clear();
+      pendingCount.addAndGet(-drained.size());
+      return drained;
+    }
+  }
+
   @Inject
   private Logger logger;
 
@@ -73,17 +190,55 @@ public class DefaultP2RepositoryAggregator
 
   private final MetadataRepository metadataRepository;
 
+  private final ApplicationDirectories applicationDirectories;
+
+  private final long quietPeriod;
+
+  private final int batchSize;
+
+  private final ConcurrentMap<String, PendingChanges> pendingChanges = Maps.newConcurrentMap();
+
+  private final AtomicInteger pendingCount = new AtomicInteger();
+
+  private final ScheduledExecutorService flusher;
+
+  /**
+   * @param quietPeriod milliseconds without further changes after which queued changes of a repository are merged;
+   *                    zero or less applies every change right away
+   * @param batchSize   number of queued changes of a repository that are merged without waiting for the quiet period
+   */
   @Inject
   public DefaultP2RepositoryAggregator(final RepositoryRegistry repositories,
                                        final MimeSupport mimeSupport,
                                        final ArtifactRepository artifactRepository,
-                                       final MetadataRepository metadataRepository)
+                                       final MetadataRepository metadataRepository,
+                                       final ApplicationDirectories applicationDirectories,
+                                       final @Named("${nexus.p2.aggregator.quietPeriod:-2000}") long quietPeriod,
+                                       final @Named("${nexus.p2.aggregator.batchSize:-500}") int batchSize)
   {
     this.repositories = repositories;
     this.mimeSupport = mimeSupport;
     this.artifactRepository = artifactRepository;
     this.metadataRepository = metadataRepository;
-    configurations = new HashMap<String, P2RepositoryAggregatorConfiguration>();
+    this.applicationDirectories = checkNotNull(applicationDirectories);
+    checkArgument(batchSize > 0, "Batch size must be positive");
+    this.quietPeriod = quietPeriod;
+    this.batchSize = batchSize;
+    configurations = Maps.newConcurrentMap();
+
+    MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
+    String pendingChangesName = MetricRegistry.name(DefaultP2RepositoryAggregator.class, "pendingChanges");
+    metricRegistry.remove(pendingChangesName);
+    metricRegistry.register(pendingChangesName, new Gauge<Integer>()
+    {
+      @Override
+      public Integer getValue() {
+        return pendingCount.get();
+      }
+    });
+
+    this.flusher = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("p2-repository-aggregator").setDaemon(true).build());
   }
 
   @Override
@@ -119,6 +274,13 @@ public class DefaultP2RepositoryAggregator
 
   @Override
   public void removeConfiguration(final P2RepositoryAggregatorConfiguration configuration) {
+    final PendingChanges pending = pendingChanges.remove(configuration.repositoryId());
+    if (pending != null) {
+      synchronized (pending) {
+        pending.removed = true;
+        discard(pending.drain());
+      }
+    }
     try {
       final Repository repository = repositories.getRepository(configuration.repositoryId());
       final RepositoryItemUid p2RepoUid = repository.createUid(P2_REPOSITORY_ROOT_PATH);
@@ -144,99 +306,131 @@ public class DefaultP2RepositoryAggregator
 
   @Override
   public void disableAggregationFor(final P2RepositoryAggregatorConfiguration configuration) {
-    configurations.remove(checkNotNull(configuration).repositoryId());
+    flush(checkNotNull(configuration).repositoryId());
+    configurations.remove(configuration.repositoryId());
   }
 
   @Override
   public void updateP2Artifacts(final StorageItem item) {
-    final P2RepositoryAggregatorConfiguration configuration = getConfiguration(item.getRepositoryId());
-    if (configuration == null) {
-      return;
-    }
-    logger.debug("Updating P2 repository artifacts (update) for [{}:{}]", item.getRepositoryId(), item.getPath());
-    try {
-      final Repository repository = repositories.getRepository(configuration.repositoryId());
-      final RepositoryItemUid p2RepoUid = repository.createUid(P2_REPOSITORY_ROOT_PATH);
-      File destinationP2Repository = null;
-      try {
-        p2RepoUid.getLock().lock(Action.update);
+    enqueue(item, ChangeType.UPDATE_ARTIFACTS);
+  }
 
-        // copy repository artifacts to a temporary location
-        destinationP2Repository = createTemporaryP2Repository();
-        final File artifacts = getP2Artifacts(configuration, repository);
-        final File tempArtifacts = new File(destinationP2Repository, artifacts.getName());
-        FileUtils.copyFile(artifacts, tempArtifacts);
+  @Override
+  public void removeP2Artifacts(final StorageItem item) {
+    enqueue(item, ChangeType.REMOVE_ARTIFACTS);
+  }
+
+  @Override
+  public void updateP2Metadata(final StorageItem item) {
+    enqueue(item, ChangeType.UPDATE_METADATA);
+  }
 
-        updateP2Artifacts(repository, retrieveFile(repository, item.getPath()), destinationP2Repository);
+  @Override
+  public void removeP2Metadata(final StorageItem item) {
+    enqueue(item, ChangeType.REMOVE_METADATA);
+  }
 
-        // copy repository artifacts back to exposed location
-        FileUtils.copyFile(tempArtifacts, artifacts);
+  @Override
+  public void flush(final String repositoryId) {
+    final PendingChanges pending = pendingChanges.get(repositoryId);
+    if (pending == null) {
+      return;
+    }
+    synchronized (pending.flushLock) {
+      final List<Change> changes;
+      synchronized (pending) {
+        changes = pending.drain();
       }
-      finally {
-        p2RepoUid.getLock().unlock();
-        FileUtils.deleteDirectory(destinationP2Repository);
+      if (changes.isEmpty()) {
+        return;
       }
-    }
-    catch (final Exception e) {
-      logger.warn(
-          String.format("Could not update P2 repository [%s:%s] with [%s] due to [%s]",
-              configuration.repositoryId(), P2_REPOSITORY_ROOT_PATH, item.getPath(), e.getMessage()),
-          e);
+      final P2RepositoryAggregatorConfiguration configuration = getConfiguration(repositoryId);
+      if (configuration == null) {
+        discard(changes);
+        return;
+      }
+      applyChanges(configuration, changes);
     }
   }
 
   @Override
-  public void removeP2Artifacts(final StorageItem item) {
+  public void flush() {
+    for (final String repositoryId : pendingChanges.keySet()) {
+      flush(repositoryId);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    flusher.shutdown();
+    flush();
+  }
+
+  private void enqueue(final StorageItem item, final ChangeType type) {
     final P2RepositoryAggregatorConfiguration configuration = getConfiguration(item.getRepositoryId());
     if (configuration == null) {
       return;
     }
-    logger.debug("Updating P2 repository artifacts (remove) for [{}:{}]", item.getRepositoryId(), item.getPath());
-    try {
-      final Repository repository = repositories.getRepository(configuration.repositoryId());
-      final RepositoryItemUid p2RepoUid = repository.createUid(P2_REPOSITORY_ROOT_PATH);
-      File sourceP2Repository = null;
-      File destinationP2Repository = null;
-      try {
-        p2RepoUid.getLock().lock(Action.update);
-
-        // copy repository artifacts to a temporary location
-        destinationP2Repository = createTemporaryP2Repository();
-        final File artifacts = getP2Artifacts(configuration, repository);
-        final File tempArtifacts = new File(destinationP2Repository, artifacts.getName());
-        FileUtils.copyFile(artifacts, tempArtifacts);
+    logger.debug("Queueing P2 repository {} for [{}:{}]", type, item.getRepositoryId(), item.getPath());
 
-        // copy item artifacts to a temp location
-        sourceP2Repository = createTemporaryP2Repository();
-        FileUtils.copyFile(retrieveFile(repository, item.getPath()), new File(sourceP2Repository,
-            "artifacts.xml"));
+    File snapshot = null;
+    if (type.isRemove()) {
+      // the item is going away, so keep a copy of what it contributed until the change is applied
+      try {
+        final Repository repository = repositories.getRepository(configuration.repositoryId());
+        snapshot = File.createTempFile("p2-remove", ".xml", applicationDirectories.getTemporaryDirectory());
+        FileUtils.copyFile(retrieveFile(repository, item.getPath()), snapshot);
+      }
+      catch (final Exception e) {
+        FileUtils.deleteQuietly(snapshot);
+        logger.warn(
+            String.format("Could not update P2 repository [%s:%s] with [%s] due to [%s]",
+                configuration.repositoryId(), P2_REPOSITORY_ROOT_PATH, item.getPath(), e.getMessage()),
+            e);
+        return;
+      }
+    }
 
-        artifactRepository.remove(sourceP2Repository.toURI(), destinationP2Repository.toURI());
+    if (quietPeriod <= 0) {
+      applyChanges(configuration, Collections.singletonList(new Change(type, item.getPath(), snapshot)));
+      return;
+    }
 
-        // copy repository artifacts back to exposed location
-        FileUtils.copyFile(tempArtifacts, artifacts);
-      }
-      finally {
-        p2RepoUid.getLock().unlock();
-        FileUtils.deleteDirectory(sourceP2Repository);
-        FileUtils.deleteDirectory(destinationP2Repository);
+    final String repositoryId = configuration.repositoryId();
+    PendingChanges pending = pendingChanges.get(repositoryId);
+    if (pending == null) {
+      final PendingChanges created = new PendingChanges();
+      pending = pendingChanges.putIfAbsent(repositoryId, created);
+      if (pending == null) {
+        pending = created;
       }
     }
-    catch (final Exception e) {
-      logger.warn(
-          String.format("Could not update P2 repository [%s:%s] with [%s] due to [%s]",
-              configuration.repositoryId(), P2_REPOSITORY_ROOT_PATH, item.getPath(), e.getMessage()),
-          e);
+    synchronized (pending) {
+      if (pending.removed) {
+        // configuration was removed while this change was prepared, nobody would ever flush it
+        logger.debug("Dropping P2 repository {} for [{}:{}] of removed configuration", type, repositoryId,
+            item.getPath());
+        FileUtils.deleteQuietly(snapshot);
+        return;
+      }
+      pending.add(new Change(type, item.getPath(), snapshot));
+      // every change restarts the quiet period, unless enough changes are queued to merge them right away
+      pending.schedule(repositoryId, pending.changes.size() >= batchSize ? 0 : quietPeriod);
     }
   }
 
-  @Override
-  public void updateP2Metadata(final StorageItem item) {
-    final P2RepositoryAggregatorConfiguration configuration = getConfiguration(item.getRepositoryId());
-    if (configuration == null) {
-      return;
+  /**
+   * Applies given changes, in order, to the P2 repository of configured repository using a single temporary copy of
+   * artifacts.xml/content.xml, so the repository wide lock is taken and the XML files are rewritten once per batch.
+   */
+  private void applyChanges(final P2RepositoryAggregatorConfiguration configuration, final List<Change> changes) {
+    logger.debug("Updating P2 repository [{}] with {} changes", configuration.repositoryId(), changes.size());
+    boolean artifactsChanged = false;
+    boolean metadataChanged = false;
+    for (final Change change : changes) {
+      artifactsChanged |= change.type.isArtifacts();
+      metadataChanged |= !change.type.isArtifacts();
     }
-    logger.debug("Updating P2 repository metadata (update) for [{}:{}]", item.getRepositoryId(), item.getPath());
     try {
       final Repository repository = repositories.getRepository(configuration.repositoryId());
       final RepositoryItemUid p2RepoUid = repository.createUid(P2_REPOSITORY_ROOT_PATH);
@@ -244,16 +438,42 @@ public class DefaultP2RepositoryAggregator
       try {
         p2RepoUid.getLock().lock(Action.update);
 
-        // copy repository content to a temporary location
+        // copy repository artifacts/content to a temporary location
         destinationP2Repository = createTemporaryP2Repository();
-        final File content = getP2Content(configuration, repository);
-        final File tempContent = new File(destinationP2Repository, content.getName());
-        FileUtils.copyFile(content, tempContent);
+        File artifacts = null;
+        File tempArtifacts = null;
+        if (artifactsChanged) {
+          artifacts = getP2Artifacts(configuration, repository);
+          tempArtifacts = new File(destinationP2Repository, artifacts.getName());
+          FileUtils.copyFile(artifacts, tempArtifacts);
+        }
+        File content = null;
+        File tempContent = null;
+        if (metadataChanged) {
+          content = getP2Content(configuration, repository);
+          tempContent = new File(destinationP2Repository, content.getName());
+          FileUtils.copyFile(content, tempContent);
+        }
 
-        updateP2Metadata(repository, retrieveFile(repository, item.getPath()), destinationP2Repository);
+        for (final Change change : changes) {
+          try {
+            applyChange(repository, change, destinationP2Repository);
+          }
+          catch (final Exception e) {
+            logger.warn(
+                String.format("Could not update P2 repository [%s:%s] with [%s] due to [%s]",
+                    configuration.repositoryId(), P2_REPOSITORY_ROOT_PATH, change.path, e.getMessage()),
+                e);
+          }
+        }
 
-        // copy repository content back to exposed location
-        FileUtils.copyFile(tempContent, content);
+        // copy repository artifacts/content back to exposed location
+        if (artifactsChanged) {
+          FileUtils.copyFile(tempArtifacts, artifacts);
+        }
+        if (metadataChanged) {
+          FileUtils.copyFile(tempContent, content);
+        }
       }
       finally {
         p2RepoUid.getLock().unlock();
@@ -262,54 +482,58 @@ public class DefaultP2RepositoryAggregator
     }
     catch (final Exception e) {
       logger.warn(
-          String.format("Could not update P2 repository [%s:%s] with [%s] due to [%s]",
-              configuration.repositoryId(), P2_REPOSITORY_ROOT_PATH, item.getPath(), e.getMessage()),
+          String.format("Could not update P2 repository [%s:%s] with %s changes due to [%s]",
+              configuration.repositoryId(), P2_REPOSITORY_ROOT_PATH, changes.size(), e.getMessage()),
           e);
     }
+    finally {
+      discard(changes);
+    }
   }
 
-  @Override
-  public void removeP2Metadata(final StorageItem item) {
-    final P2RepositoryAggregatorConfiguration configuration = getConfiguration(item.getRepositoryId());
-    if (configuration == null) {
+  private void applyChange(final Repository repository, final Change change, final File destinationP2Repository)
+      throws Exception
+  {
+    if (!change.type.isRemove()) {
+      final File file = retrieveFile(repository, change.path);
+      if (change.type.isArtifacts()) {
+        updateP2Artifacts(repository, file, destinationP2Repository);
+      }
+      else {
+        updateP2Metadata(repository, file, destinationP2Repository);
+      }
       return;
     }
-    logger.debug("Updating P2 repository metadata (remove) for [{}:{}]", item.getRepositoryId(), item.getPath());
+    final File sourceP2Repository = createTemporaryP2Repository();
     try {
-      final Repository repository = repositories.getRepository(configuration.repositoryId());
-      final RepositoryItemUid p2RepoUid = repository.createUid(P2_REPOSITORY_ROOT_PATH);
-      File sourceP2Repository = null;
-      File destinationP2Repository = null;
-      try {
-        p2RepoUid.getLock().lock(Action.update);
-
-        // copy repository content to a temporary location
-        destinationP2Repository = createTemporaryP2Repository();
-        final File content = getP2Content(configuration, repository);
-        final File tempContent = new File(destinationP2Repository, content.getName());
-        FileUtils.copyFile(content, tempContent);
-
-        // copy item content to a temp location
-        sourceP2Repository = createTemporaryP2Repository();
-        FileUtils.copyFile(retrieveFile(repository, item.getPath()), new File(sourceP2Repository,
-            "content.xml"));
-
-        metadataRepository.remove(sourceP2Repository.toURI(), destinationP2Repository.toURI());
-
-        // copy repository content back to exposed location
-        FileUtils.copyFile(tempContent, content);
+      // copy removed item artifacts/content to a temp location
+      if (change.type.isArtifacts()) {
+        FileUtils.copyFile(change.snapshot, new File(sourceP2Repository, "artifacts.xml"));
+        artifactRepository.remove(sourceP2Repository.toURI(), destinationP2Repository.toURI());
       }
-      finally {
-        p2RepoUid.getLock().unlock();
-        FileUtils.deleteDirectory(sourceP2Repository);
-        FileUtils.deleteDirectory(destinationP2Repository);
+      else {
+        FileUtils.copyFile(change.snapshot, new File(sourceP2Repository, "content.xml"));
+        metadataRepository.remove(sourceP2Repository.toURI(), destinationP2Repository.toURI());
       }
     }
+    finally {
+      FileUtils.deleteDirectory(sourceP2Repository);
+    }
+  }
+
+  private void discard(final List<Change> changes) {
+    for (final Change change : changes) {
+      FileUtils.deleteQuietly(change.snapshot);
+    }
+  }
+
+  private void flushQuietly(final String repositoryId) {
+    try {
+      flush(repositoryId);
+    }
     catch (final Exception e) {
-      logger.warn(
-          String.format("Could not update P2 repository [%s:%s] with [%s] due to [%s]",
-              configuration.repositoryId(), P2_REPOSITORY_ROOT_PATH, item.getPath(), e.getMessage()),
-          e);
+      logger.warn(String.format("Could not update P2 repository [%s:%s] due to [%s]",
+          repositoryId, P2_REPOSITORY_ROOT_PATH, e.getMessage()), e);
     }
   }
 
@@ -317,6 +541,9 @@ public class DefaultP2RepositoryAggregator
   public void scanAndRebuild(final String repositoryId) {
     logger.debug("Rebuilding P2 repository for repository [{}]", repositoryId);
 
+    // removals are not picked up by the scan, so apply queued changes first
+    flush(repositoryId);
+
     final P2RepositoryAggregatorConfiguration configuration = getConfiguration(repositoryId);
     if (configuration == null) {
       logger.warn(
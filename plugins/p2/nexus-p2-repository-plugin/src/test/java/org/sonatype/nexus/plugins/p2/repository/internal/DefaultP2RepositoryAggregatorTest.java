@@ -0,0 +1,194 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.plugins.p2.repository.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+
+import org.sonatype.nexus.configuration.ApplicationDirectories;
+import org.sonatype.nexus.mime.MimeSupport;
+import org.sonatype.nexus.plugins.p2.repository.P2RepositoryAggregatorConfiguration;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.access.Action;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.RepositoryItemUidLock;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.storage.local.fs.DefaultFSLocalRepositoryStorage;
+import org.sonatype.p2.bridge.ArtifactRepository;
+import org.sonatype.p2.bridge.MetadataRepository;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.plugins.p2.repository.P2Constants.P2_REPOSITORY_ROOT_PATH;
+
+public class DefaultP2RepositoryAggregatorTest
+{
+
+  RepositoryRegistry repositories = mock(RepositoryRegistry.class);
+
+  MimeSupport mimeSupport = mock(MimeSupport.class);
+
+  ArtifactRepository artifactRepository = mock(ArtifactRepository.class);
+
+  MetadataRepository metadataRepository = mock(MetadataRepository.class);
+
+  ApplicationDirectories applicationDirectories = mock(ApplicationDirectories.class);
+
+  RepositoryItemUidLock p2RepoLock = mock(RepositoryItemUidLock.class);
+
+  @Mock
+  Logger logger;
+
+  @InjectMocks
+  DefaultP2RepositoryAggregator aggregator = new DefaultP2RepositoryAggregator(repositories, mimeSupport,
+      artifactRepository, metadataRepository, applicationDirectories, 60000, 3);
+
+  private File storage;
+
+  private File tmp;
+
+  private P2RepositoryAggregatorConfiguration config;
+
+  @Before
+  public void setup() throws Exception {
+    MockitoAnnotations.initMocks(this);
+    storage = NexusUtils.createTemporaryP2Repository();
+    tmp = NexusUtils.createTemporaryP2Repository();
+    when(applicationDirectories.getTemporaryDirectory()).thenReturn(tmp);
+    FileUtils.write(new File(storage, P2_REPOSITORY_ROOT_PATH + "/artifacts.xml"), "<repository/>");
+    FileUtils.write(new File(storage, P2_REPOSITORY_ROOT_PATH + "/content.xml"), "<repository/>");
+
+    DefaultFSLocalRepositoryStorage local = mock(DefaultFSLocalRepositoryStorage.class);
+    when(local.getFileFromBase(any(Repository.class), any(ResourceStoreRequest.class))).thenAnswer(new Answer<File>()
+    {
+      @Override
+      public File answer(final InvocationOnMock invocation) throws Throwable {
+        return new File(storage, ((ResourceStoreRequest) invocation.getArguments()[1]).getRequestPath());
+      }
+    });
+    RepositoryItemUid p2RepoUid = mock(RepositoryItemUid.class);
+    when(p2RepoUid.getLock()).thenReturn(p2RepoLock);
+    Repository repo = mock(Repository.class);
+    when(repo.getLocalStorage()).thenReturn(local);
+    when(repo.getId()).thenReturn("mockId");
+    when(repo.createUid(P2_REPOSITORY_ROOT_PATH)).thenReturn(p2RepoUid);
+    when(repositories.getRepository("mockId")).thenReturn(repo);
+
+    config = mock(P2RepositoryAggregatorConfiguration.class);
+    when(config.repositoryId()).thenReturn("mockId");
+    aggregator.enableAggregationFor(config);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    aggregator.shutdown();
+    FileUtils.deleteDirectory(storage);
+    FileUtils.deleteDirectory(tmp);
+  }
+
+  @Test
+  public void changesAreMergedInOnePassOnFlush() throws Exception {
+    aggregator.updateP2Artifacts(item("/a/p2Artifacts.xml"));
+    aggregator.updateP2Metadata(item("/a/p2Content.xml"));
+
+    verify(artifactRepository, never()).merge(any(URI.class), any(URI.class));
+    verify(p2RepoLock, never()).lock(any(Action.class));
+
+    aggregator.flush("mockId");
+
+    verify(artifactRepository).merge(any(URI.class), any(URI.class));
+    verify(metadataRepository).merge(any(URI.class), any(URI.class));
+    verify(p2RepoLock, times(1)).lock(Action.update);
+    verify(p2RepoLock, times(1)).unlock();
+  }
+
+  @Test
+  public void repeatedUpdatesOfSameItemAreCoalesced() throws Exception {
+    aggregator.updateP2Artifacts(item("/a/p2Artifacts.xml"));
+    aggregator.updateP2Artifacts(item("/a/p2Artifacts.xml"));
+    aggregator.flush();
+
+    verify(artifactRepository, times(1)).merge(any(URI.class), any(URI.class));
+  }
+
+  @Test
+  public void removalIsAppliedFromSnapshotAfterItemIsGone() throws Exception {
+    StorageItem item = item("/a/p2Artifacts.xml");
+    aggregator.removeP2Artifacts(item);
+    FileUtils.forceDelete(new File(storage, item.getPath()));
+    aggregator.flush("mockId");
+
+    verify(artifactRepository).remove(any(URI.class), any(URI.class));
+  }
+
+  @Test
+  public void reachingBatchSizeMergesWithoutWaitingForQuietPeriod() throws Exception {
+    aggregator.updateP2Artifacts(item("/a/p2Artifacts.xml"));
+    aggregator.updateP2Artifacts(item("/b/p2Artifacts.xml"));
+    aggregator.updateP2Artifacts(item("/c/p2Artifacts.xml"));
+
+    verify(artifactRepository, timeout(5000).times(3)).merge(any(URI.class), any(URI.class));
+    verify(p2RepoLock, times(1)).lock(Action.update);
+  }
+
+  @Test
+  public void removalSnapshotIsKeptInTemporaryDirectoryUntilApplied() throws Exception {
+    aggregator.removeP2Artifacts(item("/a/p2Artifacts.xml"));
+
+    assertThat(tmp.list().length, is(1));
+
+    aggregator.flush("mockId");
+
+    assertThat(tmp.list().length, is(0));
+  }
+
+  @Test
+  public void removingConfigurationDropsQueuedChangesAndTheirSnapshots() throws Exception {
+    aggregator.removeP2Artifacts(item("/a/p2Artifacts.xml"));
+    aggregator.removeConfiguration(config);
+    aggregator.flush("mockId");
+
+    verify(artifactRepository, never()).remove(any(URI.class), any(URI.class));
+    assertThat(tmp.list().length, is(0));
+  }
+
+  private StorageItem item(final String path) throws IOException {
+    FileUtils.write(new File(storage, path), "<repository/>");
+    StorageItem item = mock(StorageItem.class);
+    when(item.getPath()).thenReturn(path);
+    when(item.getRepositoryId()).thenReturn("mockId");
+    return item;
+  }
+
+}
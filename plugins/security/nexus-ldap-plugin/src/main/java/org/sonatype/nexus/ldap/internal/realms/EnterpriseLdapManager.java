@@ -17,6 +17,9 @@ import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -47,7 +50,14 @@ import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import org.apache.shiro.authc.AuthenticationException;
@@ -59,6 +69,14 @@ import static org.sonatype.nexus.ldap.model.LdapTrustStoreKey.ldapTrustStoreKey;
 
 // TODO: this really should be threaded so we make multiple parallel requests
 
+/**
+ * Default {@link LdapManager}, querying the configured LDAP servers in order.
+ *
+ * Users, including their group membership, are cached for {@code userCacheTtl} seconds, and users not found on any
+ * (reachable) server for {@code userCacheNegativeTtl} seconds. Users are cached as they authenticate, so subsequent
+ * authorization needs no lookup. Concurrent lookups of the same user are coalesced into one. The cache is cleared on
+ * {@link LdapClearCacheEvent}.
+ */
 @Named
 @Singleton
 public class EnterpriseLdapManager
@@ -79,13 +97,41 @@ public class EnterpriseLdapManager
 
   private List<LdapConnector> ldapConnectors = new ArrayList<LdapConnector>();
 
+  /**
+   * Cached lookup result, {@code user} is {@code null} if user was not found.
+   */
+  private static class CachedUser
+  {
+    private final LdapUser user;
+
+    private final long expires;
+
+    private CachedUser(final LdapUser user, final long expires) {
+      this.user = user;
+      this.expires = expires;
+    }
+  }
+
+  private final Cache<String, CachedUser> userCache;
+
+  private final long userCacheNegativeTtl;
+
+  private final Meter userCacheHits;
+
+  private final Meter userCacheMisses;
+
+  private final Timer userLookups;
+
   @Inject
   public EnterpriseLdapManager(final LdapAuthenticator ldapAuthenticator,
                                final LdapUserDAO ldapUserManager,
                                final LdapGroupDAO ldapGroupManager,
                                final EventBus eventBus,
                                final LdapConfigurationManager ldapConfigurationManager,
-                               final TrustStore trustStore)
+                               final TrustStore trustStore,
+                               final @Named("${nexus.ldap.userCacheTtl:-300}") int userCacheTtl,
+                               final @Named("${nexus.ldap.userCacheNegativeTtl:-60}") int userCacheNegativeTtl,
+                               final @Named("${nexus.ldap.userCacheSize:-10000}") int userCacheSize)
   {
     this.ldapAuthenticator = checkNotNull(ldapAuthenticator);
     this.ldapUserManager = checkNotNull(ldapUserManager);
@@ -94,6 +140,16 @@ public class EnterpriseLdapManager
     this.ldapConfigurationManager = checkNotNull(ldapConfigurationManager);
     this.trustStore = checkNotNull(trustStore);
 
+    this.userCache = CacheBuilder.newBuilder()
+        .expireAfterWrite(Math.max(0, userCacheTtl), TimeUnit.SECONDS)
+        .maximumSize(userCacheSize)
+        .build();
+    this.userCacheNegativeTtl = TimeUnit.SECONDS.toMillis(Math.min(userCacheTtl, userCacheNegativeTtl));
+    MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
+    this.userCacheHits = metricRegistry.meter(MetricRegistry.name(EnterpriseLdapManager.class, "userCache", "hits"));
+    this.userCacheMisses = metricRegistry.meter(MetricRegistry.name(EnterpriseLdapManager.class, "userCache", "misses"));
+    this.userLookups = metricRegistry.timer(MetricRegistry.name(EnterpriseLdapManager.class, "userLookups"));
+
     this.eventBus.register(this);
   }
 
@@ -135,6 +191,8 @@ public class EnterpriseLdapManager
               connector,
               ldapConfigurationManager.getLdapServerConfiguration(connector.getIdentifier()));
 
+          // user comes with group membership, so authorization right after does not need a lookup
+          userCache.put(userId, new CachedUser(ldapUser, Long.MAX_VALUE));
           return ldapUser;
         }
         catch (Exception e) {
@@ -205,7 +263,58 @@ public class EnterpriseLdapManager
   }
 
   @Override
-  public LdapUser getUser(String userId)
+  public LdapUser getUser(final String userId)
+      throws NoSuchLdapUserException, LdapDAOException
+  {
+    CachedUser cached = userCache.getIfPresent(userId);
+    if (cached != null && cached.expires < System.currentTimeMillis()) {
+      userCache.invalidate(userId);
+      cached = null;
+    }
+    if (cached != null) {
+      userCacheHits.mark();
+    }
+    else {
+      userCacheMisses.mark();
+      try {
+        // concurrent lookups of same user wait for the one loading it
+        cached = userCache.get(userId, new Callable<CachedUser>()
+        {
+          @Override
+          public CachedUser call() throws Exception {
+            try {
+              return new CachedUser(lookupUser(userId), Long.MAX_VALUE);
+            }
+            catch (NoSuchLdapUserException e) {
+              return new CachedUser(null, System.currentTimeMillis() + userCacheNegativeTtl);
+            }
+          }
+        });
+      }
+      catch (ExecutionException e) {
+        Throwables.propagateIfInstanceOf(e.getCause(), LdapDAOException.class);
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+    if (cached.user == null) {
+      throw new NoSuchLdapUserException(userId);
+    }
+    return cached.user;
+  }
+
+  private LdapUser lookupUser(final String userId)
+      throws NoSuchLdapUserException, LdapDAOException
+  {
+    final Timer.Context context = userLookups.time();
+    try {
+      return doLookupUser(userId);
+    }
+    finally {
+      context.stop();
+    }
+  }
+
+  private LdapUser doLookupUser(final String userId)
       throws NoSuchLdapUserException, LdapDAOException
   {
     LdapDAOException serverError = null;
@@ -380,6 +489,7 @@ public class EnterpriseLdapManager
   public void onEvent(final LdapClearCacheEvent evt) {
     // clear the connectors
     ldapConnectors.clear();
+    userCache.invalidateAll();
   }
 
   @Subscribe
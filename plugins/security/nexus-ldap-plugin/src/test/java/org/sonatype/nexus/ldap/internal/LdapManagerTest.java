@@ -24,6 +24,7 @@ import org.sonatype.nexus.ldap.internal.connector.dao.LdapUser;
 import org.sonatype.nexus.ldap.internal.connector.dao.NoLdapUserRolesFoundException;
 import org.sonatype.nexus.ldap.internal.connector.dao.NoSuchLdapGroupException;
 import org.sonatype.nexus.ldap.internal.connector.dao.NoSuchLdapUserException;
+import org.sonatype.nexus.ldap.internal.events.LdapClearCacheEvent;
 import org.sonatype.nexus.ldap.internal.persist.LdapConfigurationManager;
 import org.sonatype.nexus.ldap.internal.persist.entity.LdapConfiguration;
 import org.sonatype.nexus.ldap.internal.realms.EnterpriseLdapManager;
@@ -197,6 +198,37 @@ public class LdapManagerTest
     }
   }
 
+  @Test
+  public void testUserCache()
+      throws Exception
+  {
+    EnterpriseLdapManager ldapManager = (EnterpriseLdapManager) this.lookup(LdapManager.class);
+
+    // authentication brings the user with its membership
+    LdapUser authenticated = ldapManager.authenticateUser("brianf", "brianf123");
+    Assert.assertSame(authenticated, ldapManager.getUser("brianf"));
+    Assert.assertEquals(authenticated.getMembership(), ldapManager.getUserRoles("brianf"));
+
+    LdapUser toby = ldapManager.getUser("toby");
+    Assert.assertSame(toby, ldapManager.getUser("toby"));
+
+    // not found users are cached too
+    for (int i = 0; i < 2; i++) {
+      try {
+        ldapManager.getUser("junk");
+        Assert.fail("Expected NoSuchLdapUserException");
+      }
+      catch (NoSuchLdapUserException e) {
+        // expected
+      }
+    }
+
+    ldapManager.onEvent(new LdapClearCacheEvent(this));
+    LdapUser reloaded = ldapManager.getUser("toby");
+    Assert.assertNotSame(toby, reloaded);
+    Assert.assertEquals(toby.getMembership(), reloaded.getMembership());
+  }
+
   @Test
   public void testGetUser()
       throws Exception
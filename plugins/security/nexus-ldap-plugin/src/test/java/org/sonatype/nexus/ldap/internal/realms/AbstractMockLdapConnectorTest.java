@@ -14,6 +14,7 @@ package org.sonatype.nexus.ldap.internal.realms;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Properties;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -30,6 +31,13 @@ public abstract class AbstractMockLdapConnectorTest
 
   protected EnterpriseLdapManager ldapManager = null;
 
+  @Override
+  protected void customizeProperties(final Properties ctx) {
+    super.customizeProperties(ctx);
+    // connectors are swapped and stopped during tests, every lookup must reach them
+    ctx.put("nexus.ldap.userCacheTtl", "0");
+  }
+
   @Before
   public void prepareConnectors()
       throws Exception
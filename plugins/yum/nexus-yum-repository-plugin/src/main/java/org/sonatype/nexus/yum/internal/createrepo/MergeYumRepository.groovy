@@ -13,6 +13,9 @@
 package org.sonatype.nexus.yum.internal.createrepo
 
 import com.google.common.collect.Sets
+import com.google.common.hash.HashCode
+import com.google.common.hash.HashFunction
+import com.google.common.hash.Hashing
 import org.sonatype.nexus.yum.internal.RepoMD
 
 import javax.xml.stream.XMLInputFactory
@@ -22,15 +25,19 @@ import java.util.zip.GZIPInputStream
 
 /**
  * Merges yum repositories (similar to merge repo).
+ * Packages are streamed from member metadata straight to the merged metadata; only a compact hash of the ids of
+ * written packages is kept in memory to skip packages already merged from another repository.
  * @since 3.0
  */
 class MergeYumRepository
 extends YumRepositoryWriter
 {
 
-  private Set<String> writtenPrimary
-  private Set<String> writtenFiles
-  private Set<String> writtenOther
+  private static final HashFunction ID_HASH = Hashing.murmur3_128()
+
+  private Set<HashCode> writtenPrimary
+  private Set<HashCode> writtenFiles
+  private Set<HashCode> writtenOther
 
   MergeYumRepository(final File repoDir, final Integer timestamp = null) {
     super(repoDir, timestamp)
@@ -136,9 +143,8 @@ extends YumRepositoryWriter
       }
       else if (event == XMLStreamConstants.END_ELEMENT) {
         if (reader.localName == 'package') {
-          if (!writtenPrimary.contains(yumPackage.uniqueId)) {
+          if (writtenPrimary.add(idOf(yumPackage))) {
             writePrimary(yumPackage)
-            writtenPrimary.add(yumPackage.uniqueId)
           }
         }
         else if (reader.localName == 'name') {
@@ -239,9 +245,8 @@ extends YumRepositoryWriter
       }
       else if (event == XMLStreamConstants.END_ELEMENT) {
         if (reader.localName == 'package') {
-          if (!writtenFiles.contains(yumPackage.uniqueId)) {
+          if (writtenFiles.add(idOf(yumPackage))) {
             writeFileLists(yumPackage)
-            writtenFiles.add(yumPackage.uniqueId)
           }
         }
         else if (reader.localName == 'file') {
@@ -290,9 +295,8 @@ extends YumRepositoryWriter
       }
       else if (event == XMLStreamConstants.END_ELEMENT) {
         if (reader.localName == 'package') {
-          if (!writtenFiles.contains(yumPackage.uniqueId)) {
+          if (writtenOther.add(idOf(yumPackage))) {
             writeOther(yumPackage)
-            writtenFiles.add(yumPackage.uniqueId)
           }
         }
         else if (reader.localName == 'changelog') {
@@ -310,4 +314,8 @@ extends YumRepositoryWriter
     }
   }
 
+  private static HashCode idOf(final YumPackage yumPackage) {
+    return ID_HASH.hashUnencodedChars(yumPackage.uniqueId)
+  }
+
 }
@@ -274,6 +274,36 @@ public class YumPackageEntityAdapter
     return entity;
   }
 
+  /**
+   * Read location from document.
+   */
+  String readLocation(final ODocument document) {
+    return checkNotNull(document).field(P_LOCATION, OType.STRING);
+  }
+
+  /**
+   * Read stamp of the rpm the entity was parsed from; entities written without size/file time get a stamp that never
+   * matches an rpm.
+   */
+  YumPackageStamp readStamp(final ODocument document) {
+    checkNotNull(document);
+
+    Long size = document.field(P_SIZE_PACKAGE, OType.LONG);
+    Long timeFile = document.field(P_TIME_FILE, OType.LONG);
+    return new YumPackageStamp(size == null ? -1 : size, timeFile == null ? -1 : timeFile);
+  }
+
+  /**
+   * Get location, package size and file time of all documents for repository.
+   */
+  Iterable<ODocument> getStamps(final ODatabaseDocumentTx db, final String repositoryId) {
+    OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>(
+        "SELECT " + P_LOCATION + ", " + P_SIZE_PACKAGE + ", " + P_TIME_FILE + " FROM " + DB_CLASS
+            + " WHERE " + P_REPOSITORY_ID + " = ?"
+    );
+    return db.command(query).execute(repositoryId);
+  }
+
   /**
    * Get all documents for repository.
    */
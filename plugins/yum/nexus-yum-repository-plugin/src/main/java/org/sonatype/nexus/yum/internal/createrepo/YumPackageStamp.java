@@ -0,0 +1,75 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.createrepo;
+
+import java.io.File;
+
+/**
+ * Size and last modified time (in seconds) of the rpm a {@link YumPackage} was parsed from, used to tell whether the
+ * rpm changed since it was parsed.
+ *
+ * @since 3.0
+ */
+public class YumPackageStamp
+{
+
+  private final long size;
+
+  private final long timeFile;
+
+  public YumPackageStamp(final long size, final long timeFile) {
+    this.size = size;
+    this.timeFile = timeFile;
+  }
+
+  /**
+   * Stamp of given rpm file as it is now.
+   */
+  public static YumPackageStamp of(final File rpm) {
+    return new YumPackageStamp(rpm.length(), rpm.lastModified() / 1000);
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public long getTimeFile() {
+    return timeFile;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof YumPackageStamp)) {
+      return false;
+    }
+    YumPackageStamp that = (YumPackageStamp) o;
+    return size == that.size && timeFile == that.timeFile;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (int) (size ^ (size >>> 32)) + (int) (timeFile ^ (timeFile >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" +
+        "size=" + size +
+        ", timeFile=" + timeFile +
+        '}';
+  }
+
+}
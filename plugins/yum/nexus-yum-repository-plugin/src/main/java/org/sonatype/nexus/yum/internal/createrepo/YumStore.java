@@ -12,6 +12,8 @@
  */
 package org.sonatype.nexus.yum.internal.createrepo;
 
+import java.util.Map;
+
 /**
  * Yum package metadata store.
  *
@@ -30,6 +32,12 @@ public interface YumStore
    */
   Iterable<YumPackage> get();
 
+  /**
+   * Get size and file time of the rpms existing metadata was parsed from, keyed by location, without reading the
+   * metadata itself.
+   */
+  Map<String, YumPackageStamp> getStamps();
+
   /**
    * Delete all metadata for packages under specified location.
    * Will delete all metadata for packages location starting with specified location, to easy remove all metadata from
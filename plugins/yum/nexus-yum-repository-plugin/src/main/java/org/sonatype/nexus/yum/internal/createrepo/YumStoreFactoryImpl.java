@@ -13,6 +13,7 @@
 package org.sonatype.nexus.yum.internal.createrepo;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -26,6 +27,7 @@ import org.sonatype.nexus.proxy.events.NexusStoppingEvent;
 import org.sonatype.sisu.goodies.lifecycle.LifecycleSupport;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.eventbus.Subscribe;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.record.impl.ODocument;
@@ -113,6 +115,17 @@ public class YumStoreFactoryImpl
       }
     }
 
+    @Override
+    public Map<String, YumPackageStamp> getStamps() {
+      try (ODatabaseDocumentTx db = openDb()) {
+        Map<String, YumPackageStamp> stamps = Maps.newHashMap();
+        for (ODocument document : entityAdapter.getStamps(db, repositoryId)) {
+          stamps.put(entityAdapter.readLocation(document), entityAdapter.readStamp(document));
+        }
+        return stamps;
+      }
+    }
+
     @Override
     public void delete(final String location) {
       try (ODatabaseDocumentTx db = openDb()) {
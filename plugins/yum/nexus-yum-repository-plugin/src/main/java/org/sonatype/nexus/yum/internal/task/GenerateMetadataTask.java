@@ -16,17 +16,28 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.sonatype.nexus.common.io.DirSupport;
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.sonatype.nexus.proxy.access.Action;
 import org.sonatype.nexus.proxy.item.RepositoryItemUid;
@@ -50,12 +61,16 @@ import org.sonatype.nexus.yum.internal.YumRepositoryImpl;
 import org.sonatype.nexus.yum.internal.createrepo.CreateYumRepository;
 import org.sonatype.nexus.yum.internal.createrepo.YumPackage;
 import org.sonatype.nexus.yum.internal.createrepo.YumPackageParser;
+import org.sonatype.nexus.yum.internal.createrepo.YumPackageStamp;
 import org.sonatype.nexus.yum.internal.createrepo.YumStore;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -84,6 +99,9 @@ public class GenerateMetadataTask
 
   private static final Logger LOG = LoggerFactory.getLogger(GenerateMetadataTask.class);
 
+  private static final int PARSER_THREADS = SystemPropertiesHelper.getInteger(
+      "nexus.yum.parserThreads", Runtime.getRuntime().availableProcessors());
+
   public static final String PARAM_RPM_DIR = "rpmDir";
 
   public static final String PARAM_REPO_DIR = "repoDir";
@@ -244,12 +262,18 @@ public class GenerateMetadataTask
     return (segments.length >= 2) && version.equals(segments[segments.length - 2]);
   }
 
-  private void syncYumPackages(final YumStore yumStore) {
+  private void syncYumPackages(final YumStore yumStore)
+      throws Exception
+  {
     Set<File> files = null;
     File rpmDir = new File(getRpmDir());
+    Map<String, YumPackageStamp> stamps = yumStore.getStamps();
     if (shouldForceFullScan()) {
       files = scanner.scan(rpmDir);
-      yumStore.deleteAll();
+      // keep metadata of unchanged rpms, only drop the one of rpms that are gone
+      for (String location : removedLocations(rpmDir, files, stamps.keySet())) {
+        yumStore.delete(location);
+      }
     }
     else if (getAddedFiles() != null) {
       String[] addedFiles = getAddedFiles().split(File.pathSeparator);
@@ -259,18 +283,7 @@ public class GenerateMetadataTask
       }
     }
     if (files != null) {
-      for (File file : files) {
-        String location = RpmScanner.getRelativePath(rpmDir, file.getAbsoluteFile());
-        try {
-          YumPackage yumPackage = new YumPackageParser().parse(
-              new FileInputStream(file), location, file.lastModified()
-          );
-          yumStore.put(yumPackage);
-        }
-        catch (FileNotFoundException e) {
-          log.warn("Could not parse yum metadata for {}", location, e);
-        }
-      }
+      parseYumPackages(yumStore, rpmDir, files, stamps);
     }
 
     String removedPath = getRemovedFile();
@@ -282,6 +295,103 @@ public class GenerateMetadataTask
     }
   }
 
+  /**
+   * Returns the stored locations that are not among the scanned rpm files anymore.
+   */
+  @VisibleForTesting
+  static Set<String> removedLocations(final File rpmDir, final Set<File> files, final Set<String> storedLocations) {
+    Set<String> locations = Sets.newHashSet();
+    for (File file : files) {
+      locations.add(RpmScanner.getRelativePath(rpmDir, file.getAbsoluteFile()));
+    }
+    return Sets.newHashSet(Sets.difference(storedLocations, locations));
+  }
+
+  /**
+   * Parses rpms whose size or modification time changed since their metadata was stored, on a bounded pool of
+   * {@link #PARSER_THREADS} threads, and stores the results.
+   */
+  private void parseYumPackages(final YumStore yumStore, final File rpmDir, final Set<File> files,
+                                final Map<String, YumPackageStamp> stamps)
+      throws Exception
+  {
+    final long start = System.nanoTime();
+    int unchanged = 0;
+    int parsed = 0;
+    int pending = 0;
+    final ExecutorService executor = Executors.newFixedThreadPool(
+        PARSER_THREADS, new ThreadFactoryBuilder().setNameFormat("yum-rpm-parser-%d").setDaemon(true).build()
+    );
+    try {
+      final CompletionService<YumPackage> parser = new ExecutorCompletionService<>(executor);
+      for (final File file : files) {
+        final String location = RpmScanner.getRelativePath(rpmDir, file.getAbsoluteFile());
+        final YumPackageStamp stamp = YumPackageStamp.of(file);
+        if (stamp.equals(stamps.get(location))) {
+          unchanged++;
+          continue;
+        }
+        // bound the number of parsed packages waiting to be stored
+        if (pending >= PARSER_THREADS * 2) {
+          parsed += storeYumPackage(yumStore, parser.take());
+          pending--;
+        }
+        parser.submit(new Callable<YumPackage>()
+        {
+          @Override
+          public YumPackage call() throws Exception {
+            return parseYumPackage(file, location, stamp);
+          }
+        });
+        pending++;
+      }
+      while (pending > 0) {
+        parsed += storeYumPackage(yumStore, parser.take());
+        pending--;
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    log.info(
+        "Parsed {} rpms of repository '{}' in {} ms ({} rpms/s), {} unchanged rpms skipped",
+        parsed, getRepositoryId(), elapsed, elapsed == 0 ? parsed : parsed * 1000L / elapsed, unchanged
+    );
+  }
+
+  private YumPackage parseYumPackage(final File file, final String location, final YumPackageStamp stamp)
+      throws IOException
+  {
+    try (InputStream in = new FileInputStream(file)) {
+      return new YumPackageParser().parse(in, location, stamp.getTimeFile());
+    }
+    catch (FileNotFoundException e) {
+      log.warn("Could not parse yum metadata for {}", location, e);
+      return null;
+    }
+  }
+
+  private int storeYumPackage(final YumStore yumStore, final Future<YumPackage> parsed)
+      throws Exception
+  {
+    CancelableSupport.checkCancellation();
+    YumPackage yumPackage;
+    try {
+      yumPackage = parsed.get();
+    }
+    catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), Exception.class);
+      throw Throwables.propagate(e.getCause());
+    }
+    if (yumPackage == null) {
+      return 0;
+    }
+    yumStore.put(yumPackage);
+    return 1;
+  }
+
   protected void setDefaults()
       throws MalformedURLException, URISyntaxException
   {
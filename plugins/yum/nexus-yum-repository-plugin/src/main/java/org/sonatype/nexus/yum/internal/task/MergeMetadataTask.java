@@ -12,6 +12,7 @@
  */
 package org.sonatype.nexus.yum.internal.task;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
@@ -50,7 +51,12 @@ import org.sonatype.nexus.yum.internal.createrepo.MergeYumRepository;
 import org.sonatype.nexus.yum.internal.createrepo.YumPackage;
 import org.sonatype.nexus.yum.internal.createrepo.YumStore;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
@@ -69,6 +75,11 @@ public class MergeMetadataTask
   // TODO: is defined in DefaultFSPeer. Do we want to expose it over there?
   private static final String REPO_TMP_FOLDER = ".nexus/tmp";
 
+  /**
+   * Fingerprint of the member repomd.xml files the current group metadata was merged from.
+   */
+  private static final String MERGED_MEMBERS_FILE = ".nexus/yum/merged-members.sha1";
+
   private final YumRegistry yumRegistry;
 
   private GroupRepository groupRepository;
@@ -98,7 +109,16 @@ public class MergeMetadataTask
       try {
         groupRepoMdUid.getLock().lock(Action.update);
 
-        List<File> memberBaseDirs = getBaseDirsOfMemberRepositories();
+        Hasher membersHasher = Hashing.sha1().newHasher();
+        List<File> memberBaseDirs = getBaseDirsOfMemberRepositories(membersHasher);
+        String membersFingerprint = membersHasher.hash().toString();
+        File membersFingerprintFile = new File(repoBaseDir, MERGED_MEMBERS_FILE);
+        if (new File(repoBaseDir, PATH_OF_REPOMD_XML).isFile()
+            && membersFingerprint.equals(readFingerprint(membersFingerprintFile))) {
+          log.debug("Yum metadata of members of {} did not change, skipping merge", groupRepository.getId());
+          return new YumRepositoryImpl(repoBaseDir, groupRepository.getId(), null);
+        }
+
         try (MergeYumRepository mergeRepo = new MergeYumRepository(repoTmpRepodataDir)) {
           for (File memberBaseDir : memberBaseDirs) {
             mergeRepo.merge(memberBaseDir);
@@ -110,6 +130,7 @@ public class MergeMetadataTask
         // got here, not canceled, move results to proper place
         DirSupport.deleteIfExists(repoRepodataDir.toPath());
         DirSupport.moveIfExists(repoTmpRepodataDir.toPath(), repoRepodataDir.toPath());
+        writeFingerprint(membersFingerprintFile, membersFingerprint);
       }
       finally {
         groupRepoMdUid.getLock().unlock();
@@ -123,7 +144,11 @@ public class MergeMetadataTask
     return null;
   }
 
-  private List<File> getBaseDirsOfMemberRepositories()
+  /**
+   * Makes sure Yum metadata of members is available locally and returns their base dirs. Id and repomd.xml of each
+   * member with Yum metadata are fed to given hasher, as repomd.xml carries the checksums of all other metadata files.
+   */
+  private List<File> getBaseDirsOfMemberRepositories(final Hasher membersHasher)
       throws Exception
   {
     final List<File> baseDirs = new ArrayList<File>();
@@ -140,7 +165,13 @@ public class MergeMetadataTask
         // skipping as it looks like member is not an Yum repository
       }
       if (repomdItem != null && repomdItem instanceof StorageFileItem) {
+        final byte[] repomdContent;
         try (InputStream in = ((StorageFileItem) repomdItem).getInputStream()) {
+          repomdContent = ByteStreams.toByteArray(in);
+        }
+        membersHasher.putString(memberRepository.getId(), Charsets.UTF_8).putInt(repomdContent.length)
+            .putBytes(repomdContent);
+        try (InputStream in = new ByteArrayInputStream(repomdContent)) {
           final RepoMD repomd = new RepoMD(in);
           for (final String location : repomd.getLocations()) {
             String retrieveLocation = "/" + location;
@@ -157,6 +188,27 @@ public class MergeMetadataTask
     return baseDirs;
   }
 
+  private String readFingerprint(final File file) {
+    try {
+      return file.isFile() ? Files.toString(file, Charsets.UTF_8).trim() : null;
+    }
+    catch (IOException e) {
+      log.debug("Could not read {}", file, e);
+      return null;
+    }
+  }
+
+  private void writeFingerprint(final File file, final String fingerprint) {
+    try {
+      DirSupport.mkdir(file.getParentFile().toPath());
+      Files.write(fingerprint, file, Charsets.UTF_8);
+    }
+    catch (IOException e) {
+      // next run will merge again, which is harmless
+      log.warn("Could not write {}", file, e);
+    }
+  }
+
   private void deleteYumTempDirs()
       throws IOException
   {
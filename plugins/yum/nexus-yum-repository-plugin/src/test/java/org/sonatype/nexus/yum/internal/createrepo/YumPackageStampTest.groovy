@@ -0,0 +1,84 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.createrepo
+
+import com.orientechnologies.orient.core.record.impl.ODocument
+import org.junit.Before
+import org.junit.Test
+import org.sonatype.sisu.litmus.testsupport.TestSupport
+
+import static org.hamcrest.MatcherAssert.assertThat
+import static org.hamcrest.Matchers.equalTo
+import static org.hamcrest.Matchers.is
+import static org.hamcrest.Matchers.not
+
+/**
+ * {@link YumPackageStamp} UTs.
+ * @since 3.0
+ */
+class YumPackageStampTest
+extends TestSupport
+{
+
+  File rpm
+
+  YumPackageStamp stored
+
+  @Before
+  void 'create rpm'() {
+    rpm = new File(util.createTempDir('rpms'), 'test.rpm')
+    rpm.bytes = new byte[100]
+    rpm.lastModified = 1422616782000L
+    stored = new YumPackageStamp(100, 1422616782)
+  }
+
+  @Test
+  void 'unchanged rpm matches stored stamp'() {
+    assertThat(YumPackageStamp.of(rpm), is(equalTo(stored)))
+  }
+
+  @Test
+  void 'rpm with changed size does not match stored stamp'() {
+    rpm.bytes = new byte[101]
+    rpm.lastModified = 1422616782000L
+    assertThat(YumPackageStamp.of(rpm), is(not(equalTo(stored))))
+  }
+
+  @Test
+  void 'rpm with changed modification time does not match stored stamp'() {
+    rpm.lastModified = 1422616783000L
+    assertThat(YumPackageStamp.of(rpm), is(not(equalTo(stored))))
+  }
+
+  @Test
+  void 'rpm without stored stamp does not match'() {
+    assertThat(YumPackageStamp.of(rpm), is(not(equalTo(null))))
+  }
+
+  @Test
+  void 'read stamp of rpm larger than 2GB'() {
+    ODocument document = new ODocument()
+    document.field('sizePackage', 3L * 1024 * 1024 * 1024)
+    document.field('timeFile', 1422616782)
+    assertThat(
+        new YumPackageEntityAdapter().readStamp(document),
+        is(equalTo(new YumPackageStamp(3L * 1024 * 1024 * 1024, 1422616782)))
+    )
+  }
+
+  @Test
+  void 'read stamp of entity without size and file time never matches'() {
+    assertThat(new YumPackageEntityAdapter().readStamp(new ODocument()), is(not(equalTo(YumPackageStamp.of(rpm)))))
+  }
+
+}
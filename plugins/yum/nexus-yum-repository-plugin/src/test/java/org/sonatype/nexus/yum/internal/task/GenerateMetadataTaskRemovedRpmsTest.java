@@ -0,0 +1,63 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-2015 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.task;
+
+import java.io.File;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+/**
+ * Tests for detecting rpms removed since their metadata was stored, in {@link GenerateMetadataTask}.
+ */
+public class GenerateMetadataTaskRemovedRpmsTest
+    extends TestSupport
+{
+  private File rpmDir;
+
+  @Before
+  public void setUp() throws Exception {
+    rpmDir = util.createTempDir("rpms");
+  }
+
+  @Test
+  public void rpmsThatAreGoneAreRemoved() {
+    assertThat(
+        GenerateMetadataTask.removedLocations(
+            rpmDir,
+            ImmutableSet.of(new File(rpmDir, "a/a.rpm")),
+            ImmutableSet.of("a/a.rpm", "b/b.rpm", "c.rpm")
+        ),
+        containsInAnyOrder("b/b.rpm", "c.rpm")
+    );
+  }
+
+  @Test
+  public void nothingIsRemovedWhenAllRpmsArePresent() {
+    assertThat(
+        GenerateMetadataTask.removedLocations(
+            rpmDir,
+            ImmutableSet.of(new File(rpmDir, "a/a.rpm"), new File(rpmDir, "new.rpm")),
+            ImmutableSet.of("a/a.rpm")
+        ),
+        empty()
+    );
+  }
+}
@@ -12,27 +12,49 @@
  */
 package org.sonatype.nexus.yum.internal.task;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.RepositoryItemUidLock;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
 import org.sonatype.nexus.proxy.repository.GroupRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.scheduling.TaskConfiguration;
 import org.sonatype.nexus.scheduling.TaskInfo;
 import org.sonatype.nexus.scheduling.TaskInfo.CurrentState;
 import org.sonatype.nexus.scheduling.TaskInfo.State;
 import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.RepoMD;
 import org.sonatype.nexus.yum.internal.support.YumNexusTestSupport;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.yum.Yum.PATH_OF_REPODATA;
+import static org.sonatype.nexus.yum.Yum.PATH_OF_REPOMD_XML;
 
 public class MergeMetadataTaskIT
     extends YumNexusTestSupport
@@ -70,6 +92,131 @@ public class MergeMetadataTaskIT
     assertThat(task.isBlockedBy(createRunningTaskForGroups(GROUP_ID_2)).isEmpty(), is(true));
   }
 
+  @Test
+  public void secondRunWithUnchangedMembersSkipsMerge()
+      throws Exception
+  {
+    final File groupDir = randomDir();
+    final MergeMetadataTask task = mergeTask(groupDir,
+        member("member-1", copyToTempDir(util.resolveFile("src/test/ut-resources/mergerepo/repo1"))),
+        member("member-2", copyToTempDir(util.resolveFile("src/test/ut-resources/mergerepo/repo2"))));
+    task.execute();
+    final File marker = new File(groupDir, PATH_OF_REPODATA + "/marker");
+    Files.touch(marker);
+
+    task.execute();
+
+    assertThat(marker.exists(), is(true));
+  }
+
+  @Test
+  public void changedMemberRepomdForcesMerge()
+      throws Exception
+  {
+    final File groupDir = randomDir();
+    final File member1Dir = copyToTempDir(util.resolveFile("src/test/ut-resources/mergerepo/repo1"));
+    final MergeMetadataTask task = mergeTask(groupDir,
+        member("member-1", member1Dir),
+        member("member-2", copyToTempDir(util.resolveFile("src/test/ut-resources/mergerepo/repo2"))));
+    task.execute();
+    final File marker = new File(groupDir, PATH_OF_REPODATA + "/marker");
+    Files.touch(marker);
+
+    Files.append("\n", new File(member1Dir, PATH_OF_REPOMD_XML), Charsets.UTF_8);
+    task.execute();
+
+    assertThat(marker.exists(), is(false));
+    assertThat(new File(groupDir, PATH_OF_REPOMD_XML).isFile(), is(true));
+  }
+
+  @Test
+  public void otherMetadataIsDeduplicatedOnItsOwn()
+      throws Exception
+  {
+    final File groupDir = randomDir();
+    final File memberDir = util.resolveFile("src/test/ut-resources/mergerepo/repo1");
+    // same packages in both members
+    final MergeMetadataTask task = mergeTask(groupDir,
+        member("member-1", copyToTempDir(memberDir)),
+        member("member-2", copyToTempDir(memberDir)));
+    task.execute();
+
+    final int packages = countPackages(memberDir, "primary");
+    assertThat(packages, greaterThan(0));
+    assertThat(countPackages(groupDir, "primary"), is(packages));
+    assertThat(countPackages(groupDir, "filelists"), is(packages));
+    assertThat(countPackages(groupDir, "other"), is(packages));
+  }
+
+  private MergeMetadataTask mergeTask(final File groupDir, final Repository... members)
+      throws Exception
+  {
+    final RepositoryItemUid uid = mock(RepositoryItemUid.class);
+    when(uid.getLock()).thenReturn(mock(RepositoryItemUidLock.class));
+    final GroupRepository group = mock(GroupRepository.class);
+    when(group.getId()).thenReturn(GROUP_ID_1);
+    when(group.getLocalUrl()).thenReturn(groupDir.toURI().toURL().toString());
+    when(group.getMemberRepositories()).thenReturn(Arrays.asList(members));
+    when(group.createUid(anyString())).thenReturn(uid);
+    final RepositoryRegistry repoRegistry = mock(RepositoryRegistry.class);
+    when(repoRegistry.getRepositoryWithFacet(GROUP_ID_1, GroupRepository.class)).thenReturn(group);
+
+    final MergeMetadataTask task = new MergeMetadataTask(mock(YumRegistry.class));
+    TaskConfiguration taskConfiguration = new TaskConfiguration();
+    taskConfiguration.setId("foo");
+    taskConfiguration.setTypeId(MergeMetadataTask.class.getSimpleName());
+    taskConfiguration.setRepositoryId(GROUP_ID_1);
+    task.configure(taskConfiguration);
+    task.setRepositoryRegistry(repoRegistry);
+    return task;
+  }
+
+  /**
+   * Member serving the Yum metadata found in given dir.
+   */
+  private Repository member(final String id, final File baseDir)
+      throws Exception
+  {
+    final Repository member = mock(Repository.class);
+    when(member.getId()).thenReturn(id);
+    when(member.getLocalUrl()).thenReturn(baseDir.toURI().toURL().toString());
+    when(member.retrieveItem(any(ResourceStoreRequest.class))).thenAnswer(new Answer<StorageItem>()
+    {
+      @Override
+      public StorageItem answer(final InvocationOnMock invocation) throws Throwable {
+        final File file = new File(baseDir, ((ResourceStoreRequest) invocation.getArguments()[0]).getRequestPath());
+        final StorageFileItem item = mock(StorageFileItem.class);
+        when(item.getInputStream()).thenAnswer(new Answer<InputStream>()
+        {
+          @Override
+          public InputStream answer(final InvocationOnMock invocation) throws Throwable {
+            return new FileInputStream(file);
+          }
+        });
+        return item;
+      }
+    });
+    return member;
+  }
+
+  private int countPackages(final File baseDir, final String type)
+      throws Exception
+  {
+    final String location;
+    try (InputStream in = new FileInputStream(new File(baseDir, PATH_OF_REPOMD_XML))) {
+      location = new RepoMD(in).getLocation(type);
+    }
+    final String xml;
+    try (InputStream in = new GZIPInputStream(new FileInputStream(new File(baseDir, location)))) {
+      xml = CharStreams.toString(new InputStreamReader(in, Charsets.UTF_8));
+    }
+    int count = 0;
+    for (int i = xml.indexOf("<package "); i >= 0; i = xml.indexOf("<package ", i + 1)) {
+      count++;
+    }
+    return count;
+  }
+
   private RepositoryRegistry repoRegistry()
       throws Exception
   {